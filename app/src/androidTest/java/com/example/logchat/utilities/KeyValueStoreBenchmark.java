@@ -0,0 +1,158 @@
+package com.example.logchat.utilities;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.logchat.database.MessageDatabase;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the SharedPreferences and memory-mapped log backends of {@link PreferenceManager}
+ * on a device: cold load of a populated file, single-key apply, batched commit and reads.
+ * Results are logged under the tag {@code KeyValueStoreBenchmark} as median microseconds.
+ */
+@RunWith(AndroidJUnit4.class)
+public class KeyValueStoreBenchmark {
+    private static final String TAG = "KeyValueStoreBenchmark";
+    private static final int RUNS = 50;
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @Test
+    public void compareBackends() throws IOException {
+        String image = newImage();
+        File prefsDir = new File(context.getDataDir(), "shared_prefs");
+
+        SharedPreferences shared = context.getSharedPreferences("bench_source", Context.MODE_PRIVATE);
+        KeyValueStore sharedStore = new SharedPreferencesStore(shared);
+        populate(sharedStore, image);
+        File mappedFile = new File(context.getFilesDir(), "bench_source.kvlog");
+        mappedFile.delete();
+        MappedLogStore mappedStore = new MappedLogStore(mappedFile, MessageDatabase.getDiskExecutor());
+        populate(mappedStore, image);
+
+        // Cold load: open a copy of the populated file under a name this process has not seen yet
+        long[] sharedLoad = new long[RUNS];
+        long[] mappedLoad = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            String name = "bench_copy_" + System.nanoTime();
+            copy(new File(prefsDir, "bench_source.xml"), new File(prefsDir, name + ".xml"));
+            long start = System.nanoTime();
+            assertNotNull(context.getSharedPreferences(name, Context.MODE_PRIVATE).getString(Constants.KEY_USER_ID, null));
+            sharedLoad[i] = System.nanoTime() - start;
+            context.deleteSharedPreferences(name);
+
+            File copy = new File(context.getFilesDir(), name + ".kvlog");
+            copy(mappedFile, copy);
+            start = System.nanoTime();
+            assertNotNull(new MappedLogStore(copy, MessageDatabase.getDiskExecutor()).getString(Constants.KEY_USER_ID, null));
+            mappedLoad[i] = System.nanoTime() - start;
+            copy.delete();
+        }
+        report("cold load", sharedLoad, mappedLoad);
+
+        report("apply one key", measureApply(sharedStore), measureApply(mappedStore));
+        report("commit sign-in batch", measureCommit(sharedStore, image), measureCommit(mappedStore, image));
+        report("read session key", measureRead(sharedStore), measureRead(mappedStore));
+
+        context.deleteSharedPreferences("bench_source");
+        mappedFile.delete();
+    }
+
+    // Session fields, an encoded avatar and some unrelated keys
+    private static void populate(KeyValueStore store, String image) {
+        KeyValueStore.Editor editor = store.edit().clear();
+        writeSession(editor, image, 0);
+        for (int i = 0; i < 20; i++) {
+            editor.putString("setting" + i, "value" + i);
+        }
+        assertTrue(editor.commit());
+    }
+
+    private static void writeSession(KeyValueStore.Editor editor, String image, int run) {
+        editor.putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                .putString(Constants.KEY_USER_ID, "user" + run)
+                .putString(Constants.KEY_NAME, "Benchmark User")
+                .putString(Constants.KEY_IMAGE, image)
+                .putString(Constants.KEY_IMAGE_HASH, "hash" + run)
+                .putString(Constants.KEY_SESSION_TOKEN, run + ":signature");
+    }
+
+    private static long[] measureApply(KeyValueStore store) {
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            store.edit().putString(Constants.KEY_SYNCED_FCM_TOKEN, "token" + i).apply();
+            samples[i] = System.nanoTime() - start;
+        }
+        return samples;
+    }
+
+    private static long[] measureCommit(KeyValueStore store, String image) {
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            KeyValueStore.Editor editor = store.edit();
+            writeSession(editor, image, i);
+            long start = System.nanoTime();
+            assertTrue(editor.commit());
+            samples[i] = System.nanoTime() - start;
+        }
+        return samples;
+    }
+
+    private static long[] measureRead(KeyValueStore store) {
+        long[] samples = new long[RUNS];
+        for (int i = 0; i < RUNS; i++) {
+            long start = System.nanoTime();
+            assertNotNull(store.getString(Constants.KEY_USER_ID, null));
+            samples[i] = System.nanoTime() - start;
+        }
+        return samples;
+    }
+
+    private static void report(String operation, long[] shared, long[] mapped) {
+        Log.i(TAG, operation + ": SharedPreferences " + median(shared) / 1000 + " us, "
+                + "MappedLogStore " + median(mapped) / 1000 + " us");
+    }
+
+    private static long median(long[] samples) {
+        long[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // Roughly the size of a Base64-encoded profile thumbnail
+    private static String newImage() {
+        char[] chars = new char[40 * 1024];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('A' + i % 26);
+        }
+        return new String(chars);
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        try (InputStream input = new FileInputStream(from); OutputStream output = new FileOutputStream(to)) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                output.write(buffer, 0, read);
+            }
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.logchat;
+
+import android.app.Application;
+import android.os.Looper;
+
+import com.example.logchat.firebase.MessageOutbox;
+import com.example.logchat.firebase.PresenceTracker;
+import com.example.logchat.metrics.MetricsReporter;
+import com.example.logchat.utilities.BitmapCache;
+import com.example.logchat.utilities.Constants;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * Application class of LogChat.
+ * Holds process-wide hooks that are not tied to a single activity.
+ */
+public class LogChatApplication extends Application {
+
+    /**
+     * Points Firestore at the emulator if one is configured, starts tracking the foreground
+     * state of the process for presence, schedules the periodic metrics reports and resumes
+     * sending messages left over from a previous process.
+     */
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (!Constants.FIRESTORE_EMULATOR_HOST.isEmpty()) {
+            // Must happen before the instance is used anywhere else.
+            FirebaseFirestore.getInstance().useEmulator(Constants.FIRESTORE_EMULATOR_HOST, Constants.FIRESTORE_EMULATOR_PORT);
+        }
+        PresenceTracker.register(this);
+        MetricsReporter.getInstance(this).start();
+        // Whatever started the process, a screen or a push; waits until the main thread is idle
+        // so the first frame of a launched screen comes first.
+        Looper.myQueue().addIdleHandler(() -> {
+            MessageOutbox.getInstance(this).drain();
+            return false; // Once per process
+        });
+    }
+
+    /**
+     * Forwards memory pressure to the shared caches so they can release memory.
+     * @param level The memory trim level reported by the system.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        BitmapCache.getInstance().trimMemory(level);
+    }
+}
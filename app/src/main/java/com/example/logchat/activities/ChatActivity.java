@@ -1,116 +1,180 @@
 package com.example.logchat.activities;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.icu.text.SimpleDateFormat;
 import android.os.Bundle;
-import android.util.Base64;
 import android.view.View;
 import android.widget.Toast;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.logchat.adapters.ChatAdapter;
 import com.example.logchat.databinding.ActivityChatBinding;
+import com.example.logchat.firebase.MessageNotifier;
+import com.example.logchat.firebase.MessageOutbox;
+import com.example.logchat.firebase.MessageSender;
+import com.example.logchat.firebase.MessageSyncEngine;
+import com.example.logchat.firebase.PresenceMonitor;
+import com.example.logchat.listeners.MessageSyncListener;
+import com.example.logchat.listeners.PresenceListener;
 import com.example.logchat.models.ChatMessage;
 import com.example.logchat.models.User;
 import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ConversationUtils;
+import com.example.logchat.utilities.MessageListStore;
 import com.example.logchat.utilities.PreferenceManager;
-import com.google.firebase.firestore.DocumentChange;
-import com.google.firebase.firestore.EventListener;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.example.logchat.utilities.Session;
+import com.example.logchat.utilities.SortedMessageBuffer;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Locale;
 
 public class ChatActivity extends AppCompatActivity {
     private ActivityChatBinding binding; // Binding for XML layout views
     private User receiverUser; // Stores information about the recipient user
-    private List<ChatMessage> chatMessages; // List to hold chat messages
+    private MessageListStore messageListStore; // Applies message changes off the main thread
     private ChatAdapter chatAdapter; // Adapter for RecyclerView to display chat messages
     private PreferenceManager preferenceManager; // Utility to manage shared preferences
-    private FirebaseFirestore database; // Firebase Firestore instance for database operations
+    private Session session; // Signed-in user, read once in init
+    private MessageSender messageSender; // Commits sent messages and the conversation summary in batches
+    private MessageSyncEngine messageSyncEngine; // Syncs the local message store with Firestore
+    private boolean isLoadingOlder; // Whether an older page is currently being loaded
+    private boolean hasOlderMessages = true; // Whether older pages may still exist
 
     // Initialize essential components
     private void init() {
         preferenceManager = new PreferenceManager(getApplicationContext());
-        chatMessages = new ArrayList<>(); // Initialize the list for chat messages
+        session = preferenceManager.getSession(); // Read the signed-in user once
         chatAdapter = new ChatAdapter(
-                chatMessages,
-                getBitmapFromEncodedString(receiverUser.image), // Decode receiver's profile image
-                preferenceManager.getString(Constants.KEY_USER_ID) // Sender's ID
+                receiverUser.id, // Receiver's ID
+                receiverUser.imageHash // Receiver's image hash; the image is fetched and decoded lazily
         );
         binding.chatRecyclerView.setAdapter(chatAdapter); // Attach adapter to RecyclerView
-        database = FirebaseFirestore.getInstance(); // Initialize Firestore database
+        messageListStore = new MessageListStore(this::showSnapshot); // Publish sorted snapshots to the adapter
+        messageSender = new MessageSender(
+                getApplicationContext(),
+                session.userId,
+                session.name,
+                session.imageHash,
+                receiverUser.id,
+                receiverUser.name,
+                receiverUser.imageHash
+        );
     }
 
-    // Send a message to Firestore
+    // Record the typed message in the outbox and show it right away as pending
     private void sendMessages() {
-        HashMap<String, Object> message = new HashMap<>();
-        message.put(Constants.KEY_SENDER_ID, preferenceManager.getString(Constants.KEY_USER_ID)); // Sender's ID
-        message.put(Constants.KEY_RECEIVER_ID, receiverUser.id); // Receiver's ID
-        message.put(Constants.KEY_MESSAGE, binding.inputMessage.getText().toString()); // Message content
-        message.put(Constants.KEY_TIMESTAMP, new Date()); // Timestamp for the message
-
-        // Add the message to the chat collection in Firestore
-        database.collection(Constants.KEY_COLLECTION_CHAT).add(message);
+        ChatMessage pendingMessage = messageSender.send(binding.inputMessage.getText().toString());
+        messageListStore.add(Collections.singletonList(pendingMessage));
         binding.inputMessage.setText(null); // Clear the input field after sending
     }
 
-    // Listen for incoming messages from Firestore
+    // Replace pending messages of this conversation once the outbox has committed them
+    private final MessageOutbox.Listener outboxListener = messages -> {
+        List<ChatMessage> sent = new ArrayList<>();
+        for (ChatMessage chatMessage : messages) {
+            if (receiverUser.id.equals(chatMessage.receiverId)) {
+                sent.add(chatMessage);
+            }
+        }
+        if (!sent.isEmpty()) {
+            messageListStore.update(sent);
+        }
+    };
+
+    // Render the locally stored conversation, then sync only newer messages from Firestore
     private void listenMessage() {
-        // Query messages sent by the current user to the receiver
-        database.collection(Constants.KEY_COLLECTION_CHAT)
-                .whereEqualTo(Constants.KEY_SENDER_ID, preferenceManager.getString(Constants.KEY_USER_ID))
-                .whereEqualTo(Constants.KEY_RECEIVER_ID, receiverUser.id)
-                .addSnapshotListener(eventListener);
-
-        // Query messages sent by the receiver to the current user
-        database.collection(Constants.KEY_COLLECTION_CHAT)
-                .whereEqualTo(Constants.KEY_SENDER_ID, receiverUser.id)
-                .whereEqualTo(Constants.KEY_RECEIVER_ID, preferenceManager.getString(Constants.KEY_USER_ID))
-                .addSnapshotListener(eventListener);
+        messageSyncEngine = new MessageSyncEngine(
+                getApplicationContext(),
+                session.userId,
+                receiverUser.id,
+                Constants.MESSAGE_PAGE_SIZE
+        );
+        messageSyncEngine.start(this, messageSyncListener);
+    }
+
+    // Request the previous page when the user scrolls close to the oldest loaded message
+    private void setPagingListener() {
+        binding.chatRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                List<ChatMessage> chatMessages = chatAdapter.getCurrentList();
+                if (dy >= 0 || isLoadingOlder || !hasOlderMessages || chatMessages.isEmpty()) {
+                    return; // Only page while scrolling towards older messages
+                }
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager != null
+                        && layoutManager.findFirstVisibleItemPosition() <= Constants.MESSAGE_PREFETCH_DISTANCE) {
+                    isLoadingOlder = true;
+                    messageSyncEngine.loadOlder(chatMessages.get(0).timestamp);
+                }
+            }
+        });
     }
 
-    // Event listener to handle Firestore snapshot changes
-    private final EventListener<QuerySnapshot> eventListener = (value, error) -> {
-        if (error != null) {
+    // Listener for messages coming from the local store and from Firestore
+    private final MessageSyncListener messageSyncListener = new MessageSyncListener() {
+        @Override
+        public void onLocalMessagesLoaded(List<ChatMessage> messages) {
+            messageListStore.add(messages);
+        }
+
+        @Override
+        public void onNewMessages(List<ChatMessage> messages) {
+            messageListStore.update(messages); // Replaces the pending copy of a message sent from this device
+        }
+
+        @Override
+        public void onMessagesModified(List<ChatMessage> messages) {
+            messageListStore.update(messages);
+        }
+
+        @Override
+        public void onMessagesRemoved(List<ChatMessage> messages) {
+            messageListStore.remove(messages);
+        }
+
+        @Override
+        public void onOlderMessagesLoaded(List<ChatMessage> messages, boolean hasMore) {
+            isLoadingOlder = false;
+            hasOlderMessages = hasMore;
+            messageListStore.add(messages);
+        }
+
+        @Override
+        public void onSyncError(Exception exception) {
+            isLoadingOlder = false;
+            if (chatAdapter.getCurrentList().isEmpty()) {
+                binding.chatRecyclerView.setVisibility(View.GONE); // Hide RecyclerView on error
+            }
             binding.progressBar.setVisibility(View.GONE); // Hide progress bar on error
-            binding.chatRecyclerView.setVisibility(View.GONE); // Hide RecyclerView on error
-            return;
         }
-        if (value != null) {
-            int count = chatMessages.size(); // Track the current size of the chat list
-            for (DocumentChange documentChange : value.getDocumentChanges()) {
-                if (documentChange.getType() == DocumentChange.Type.ADDED) {
-                    ChatMessage chatMessage = new ChatMessage();
-                    chatMessage.senderId = documentChange.getDocument().getString(Constants.KEY_SENDER_ID); // Extract sender ID
-                    chatMessage.receiverId = documentChange.getDocument().getString(Constants.KEY_RECEIVER_ID); // Extract receiver ID
-                    chatMessage.message = documentChange.getDocument().getString(Constants.KEY_MESSAGE); // Extract message text
-                    chatMessage.dateTime = getReadableDateTime(documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP)); // Format timestamp
-                    chatMessage.dateObject = documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP); // Raw timestamp
-                    chatMessages.add(chatMessage); // Add message to the list
+    };
+
+    // Show the availability banner while the receiver is online
+    private final PresenceListener presenceListener = onlineUserIds ->
+            binding.textAvailability.setVisibility(onlineUserIds.contains(receiverUser.id) ? View.VISIBLE : View.GONE);
+
+    // Display a new snapshot; the diff runs in the background and only changed rows are updated
+    private void showSnapshot(List<ChatMessage> snapshot) {
+        List<ChatMessage> previous = chatAdapter.getCurrentList();
+        ChatMessage previousNewest = previous.isEmpty() ? null : previous.get(previous.size() - 1);
+        chatAdapter.submitList(snapshot, () -> {
+            if (!snapshot.isEmpty()) {
+                ChatMessage newest = snapshot.get(snapshot.size() - 1);
+                if (previousNewest == null) {
+                    binding.chatRecyclerView.scrollToPosition(snapshot.size() - 1); // Start at the newest message
+                } else if (SortedMessageBuffer.ORDER.compare(newest, previousNewest) > 0) {
+                    binding.chatRecyclerView.smoothScrollToPosition(snapshot.size() - 1); // Scroll to the newest message
                 }
             }
-            // Sort messages by timestamp for proper ordering
-            Collections.sort(chatMessages, (obj1, obj2) -> obj1.dateObject.compareTo(obj2.dateObject));
-            if (count == 0) {
-                chatAdapter.notifyDataSetChanged(); // Notify adapter for a full update
-            } else {
-                // Notify adapter for partial updates and scroll to the newest message
-                chatAdapter.notifyItemRangeInserted(count, chatMessages.size() - count);
-                binding.chatRecyclerView.smoothScrollToPosition(chatMessages.size() - 1);
-            }
             // Toggle visibility based on whether there are messages
-            binding.chatRecyclerView.setVisibility(chatMessages.isEmpty() ? View.GONE : View.VISIBLE);
+            binding.chatRecyclerView.setVisibility(snapshot.isEmpty() ? View.GONE : View.VISIBLE);
             binding.progressBar.setVisibility(View.GONE); // Hide progress bar once done
-        }
-    };
+        });
+    }
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -120,14 +184,46 @@ public class ChatActivity extends AppCompatActivity {
         loadReceiverDetails(); // Load details of the chat receiver
         setListeners(); // Set click listeners for buttons
         init(); // Initialize components
+        setPagingListener(); // Load older messages on scroll
         listenMessage(); // Start listening for chat messages
+        MessageOutbox.getInstance(getApplicationContext()).addListener(outboxListener); // Track sent messages
+        PresenceMonitor.getInstance().addListener(presenceListener); // Share the online users listener
         binding.chatRecyclerView.setVisibility(View.VISIBLE); // Ensure RecyclerView is visible
     }
 
-    // Decode a Base64 encoded string into a Bitmap
-    private Bitmap getBitmapFromEncodedString(String encodedImage) {
-        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // Suppress and clear push notifications of this conversation while it is on screen
+        MessageNotifier.getInstance(getApplicationContext())
+                .setActiveConversation(ConversationUtils.getConversationId(session.userId, receiverUser.id));
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        MessageNotifier.getInstance(getApplicationContext()).setActiveConversation(null);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        if (messageSender != null) {
+            messageSender.flush(); // Do not hold queued messages while the screen is hidden
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (messageSyncEngine != null) {
+            messageSyncEngine.stop(); // Detach Firestore listeners
+        }
+        MessageOutbox.getInstance(getApplicationContext()).removeListener(outboxListener);
+        PresenceMonitor.getInstance().removeListener(presenceListener);
+        if (messageListStore != null) {
+            messageListStore.release(); // Stop the diff worker
+        }
     }
 
     // Load details of the receiver from the Intent
@@ -143,11 +239,6 @@ public class ChatActivity extends AppCompatActivity {
         binding.layoutSend.setOnClickListener(v -> sendMessages()); // Send message when the send button is clicked
     }
 
-    // Format a Date object into a readable string
-    private String getReadableDateTime(Date date) {
-        return new SimpleDateFormat("MMMM dd, yyyy - hh:mm a", Locale.getDefault()).format(date);
-    }
-
     // Display an error message as a Toast
     private void showError(String message) {
         Toast.makeText(this, message, Toast.LENGTH_LONG).show();
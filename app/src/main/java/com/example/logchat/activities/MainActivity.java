@@ -1,68 +1,95 @@
 package com.example.logchat.activities;
 
+import android.Manifest;
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
 import android.os.Bundle;
-import android.util.Base64;
 import android.util.Log;
 import android.view.View;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.app.ActivityCompat;
+import androidx.core.content.ContextCompat;
 
+import com.example.logchat.adapters.RecentConversationsAdapter;
+import com.example.logchat.backend.BackendProvider;
+import com.example.logchat.backend.ChatBackend;
+import com.example.logchat.backend.ScopedSubscription;
+import com.example.logchat.database.MessageDatabase;
 import com.example.logchat.databinding.ActivityMainBinding;
-import com.example.logchat.models.ChatMessage;
+import com.example.logchat.firebase.PresenceTracker;
+import com.example.logchat.firebase.TokenSync;
+import com.example.logchat.listeners.ConversationListener;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.models.User;
 import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ConversationIndex;
+import com.example.logchat.utilities.ImageFileCache;
+import com.example.logchat.utilities.ImageLoader;
+import com.example.logchat.utilities.ImageRendition;
 import com.example.logchat.utilities.PreferenceManager;
-import com.google.firebase.firestore.DocumentChange;
-import com.google.firebase.firestore.DocumentReference;
-import com.google.firebase.firestore.EventListener;
-import com.google.firebase.firestore.FieldValue;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QuerySnapshot;
+import com.example.logchat.utilities.Session;
+import com.example.logchat.utilities.StartupScheduler;
 import com.google.firebase.messaging.FirebaseMessaging;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Main activity of the LogChat application.
  * Handles user interface initialization, user authentication, and real-time
- * updates for recent conversations using Firestore.
+ * updates for recent conversations from the chat backend.
  */
-public class MainActivity extends AppCompatActivity {
+public class MainActivity extends AppCompatActivity implements ConversationListener {
     private ActivityMainBinding binding; // View Binding for MainActivity layout
     private PreferenceManager preferenceManager; // Shared preferences for managing user data
-    private List<ChatMessage> conversations; // List to hold recent conversations
-    // private RecentConversationsAdapter conversationsAdapter; // Adapter for RecyclerView (commented out)
-    private FirebaseFirestore database; // Firestore database instance for data storage and retrieval
+    private ConversationIndex conversationIndex; // Recent conversations ordered newest first, indexed by ID
+    private RecentConversationsAdapter conversationsAdapter; // Adapter for the recent conversations RecyclerView
+    private ChatBackend backend; // Backend holding users, conversations and tokens
+    private boolean awaitingFullSet; // Whether the next delivery is the complete set of a new observation
+    private static final int REQUEST_NOTIFICATION_PERMISSION = 1;
+    private static final Timer CONVERSATION_SNAPSHOT_TIMER = Metrics.getInstance().timer("snapshot.conversations.apply");
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        StartupScheduler startupScheduler = new StartupScheduler("MainActivity"); // Traces time to first frame
         binding = ActivityMainBinding.inflate(getLayoutInflater()); // Inflate layout with binding
         setContentView(binding.getRoot()); // Set content view
 
-        try {
-            // Initialize Firestore database
-            database = FirebaseFirestore.getInstance();
-            if (database == null) {
-                Log.e("MainActivity", "Firestore is null.");
-            } else {
-                Log.d("MainActivity", "Firestore initialized successfully.");
-            }
-        } catch (Exception e) {
-            Log.e("MainActivity", "Error initializing Firestore: " + e.getMessage());
-        }
+        backend = BackendProvider.get(); // Firestore unless another backend was installed
 
         preferenceManager = new PreferenceManager(getApplicationContext()); // Initialize preference manager
-        // init(); // Initialize conversations (commented out)
+        init(); // Initialize conversations
         loadUserDetails(); // Load user details to display in the UI
-        getToken(); // Get FCM token for push notifications
         setListeners(); // Set up event listeners for UI interactions
+        loadLocalConversations(); // Show the stored summaries until Firestore answers
         listenConversations(); // Listen for real-time updates on recent conversations
+        // Work that is not needed for the first frame
+        startupScheduler.defer("migrateImage", this::migrateLegacyImage); // Shrink preferences written by older versions
+        startupScheduler.defer("syncToken", this::getToken); // Get FCM token for push notifications
+        startupScheduler.defer("notificationPermission", this::requestNotificationPermission);
+        startupScheduler.start(binding.getRoot());
+    }
+
+    // Initialize the recent conversations list
+    private void init() {
+        conversationIndex = new ConversationIndex();
+        conversationsAdapter = new RecentConversationsAdapter(conversationIndex.getConversations(), this);
+        binding.conversationRecyclerView.setAdapter(conversationsAdapter);
+    }
+
+    @Override
+    public void onConversationClicked(User user) {
+        Intent intent = new Intent(getApplicationContext(), ChatActivity.class);
+        intent.putExtra(Constants.KEY_USER, user); // Pass the other participant to the chat screen
+        startActivity(intent);
     }
 
     // Set up event listeners for user interactions
@@ -70,85 +97,172 @@ public class MainActivity extends AppCompatActivity {
         binding.imageSignOut.setOnClickListener(v -> signOut()); // Sign out when the sign-out button is clicked
         binding.fabNewChat.setOnClickListener(v ->
                 startActivity(new Intent(getApplicationContext(), userActivity.class))); // Start a new chat
+        if ((getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0) {
+            binding.textName.setOnLongClickListener(v -> { // Metrics screen, debug builds only
+                startActivity(new Intent(getApplicationContext(), MetricsActivity.class));
+                return true;
+            });
+        }
     }
 
     // Load user details (name and profile picture) from shared preferences
     private void loadUserDetails() {
-        String name = preferenceManager.getString(Constants.KEY_NAME);
-        String image = preferenceManager.getString(Constants.KEY_IMAGE);
+        Session session = preferenceManager.getSession();
+        String name = session.name;
 
         if (name != null) {
             binding.textName.setText(name); // Display user name
         }
 
-        if (image != null) {
-            byte[] bytes = Base64.decode(image, Base64.DEFAULT); // Decode profile image
-            Bitmap bitmap = BitmapFactory.decodeByteArray(bytes, 0, bytes.length);
-            binding.imageProfile.setImageBitmap(bitmap); // Set profile image in the UI
+        // Decode from the image file cache off the main thread, fetching the image if it is not on disk
+        ImageLoader.getInstance().loadProfileImage(binding.imageProfile,
+                session.userId,
+                session.imageHash,
+                ImageRendition.BUBBLE);
+    }
+
+    // Move a profile image saved in preferences by older versions into the image file cache
+    private void migrateLegacyImage() {
+        String image = preferenceManager.getString(Constants.KEY_IMAGE);
+        if (image == null) {
+            return;
         }
+        ImageFileCache fileCache = ImageFileCache.getInstance(getApplicationContext());
+        MessageDatabase.getDiskExecutor().execute(() -> {
+            String imageHash = fileCache.putEncoded(image);
+            if (imageHash != null) {
+                preferenceManager.edit()
+                        .remove(Constants.KEY_IMAGE)
+                        .putString(Constants.KEY_IMAGE_HASH, imageHash)
+                        .apply();
+            }
+        });
     }
 
-    // Get FCM token for push notifications
+    // Get FCM token for push notifications and write it only if it changed
     private void getToken() {
-        FirebaseMessaging.getInstance().getToken().addOnSuccessListener(this::updateToken); // Fetch and update token
+        FirebaseMessaging.getInstance().getToken()
+                .addOnSuccessListener(token -> TokenSync.sync(getApplicationContext(), token));
     }
 
-    // Update the FCM token in Firestore
-    private void updateToken(String token) {
-        String userId = preferenceManager.getString(Constants.KEY_USER_ID);
-        if (userId == null) {
-            showToast("User ID is null, unable to update token"); // Show error if user ID is missing
-            return;
+    // Ask for the permission to show message notifications, required from Android 13
+    private void requestNotificationPermission() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            ActivityCompat.requestPermissions(this,
+                    new String[]{Manifest.permission.POST_NOTIFICATIONS}, REQUEST_NOTIFICATION_PERMISSION);
         }
+    }
 
-        // Update the token in Firestore
-        DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_USERS)
-                .document(userId);
-        documentReference.update(Constants.KEY_FCM_TOKEN, token)
-                .addOnSuccessListener(unused -> showToast("Token Updated Successfully")) // Success message
-                .addOnFailureListener(e -> showToast("Unable To Update Token")); // Failure message
+    // Read the summaries stored by earlier sessions and pushes, off the main thread
+    private void loadLocalConversations() {
+        MessageDatabase messageDatabase = MessageDatabase.getInstance(getApplicationContext());
+        MessageDatabase.getDiskExecutor().execute(() -> {
+            List<Conversation> conversations = messageDatabase.getConversations(Constants.RECENT_CONVERSATION_LIMIT);
+            runOnUiThread(() -> showLocalConversations(conversations));
+        });
     }
 
-    // Listen for real-time updates to recent conversations
-    private void listenConversations() {
-        if (database == null) {
-            Log.e("MainActivity", "Firestore database is null. Skipping conversation listener setup.");
+    // Fill the list from local summaries unless the Firestore listener already did
+    private void showLocalConversations(List<Conversation> conversations) {
+        if (isDestroyed() || conversations.isEmpty() || !conversationIndex.getConversations().isEmpty()) {
             return;
         }
+        for (Conversation conversation : conversations) {
+            conversationIndex.upsert(conversation);
+        }
+        conversationsAdapter.notifyItemRangeInserted(0, conversationIndex.getConversations().size());
+        binding.conversationRecyclerView.setVisibility(View.VISIBLE);
+        binding.progressBar.setVisibility(View.GONE);
+    }
 
-        // Query Firestore for conversations where the user is the sender
-        database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
-                .whereEqualTo(Constants.KEY_SENDER_ID, preferenceManager.getString(Constants.KEY_USER_ID))
-                .addSnapshotListener(eventListener);
+    // Listen for real-time updates to recent conversations while this screen is started
+    private void listenConversations() {
+        // The newest conversations in which the user is either sender or receiver
+        String userId = preferenceManager.getSession().userId;
+        ScopedSubscription.bind(this, () -> {
+            awaitingFullSet = true; // Conversations may have been removed while the screen was stopped
+            return backend.observeConversations(userId, Constants.RECENT_CONVERSATION_LIMIT, conversationObserver);
+        });
     }
 
-    // Firestore event listener for conversation updates
-    private final EventListener<QuerySnapshot> eventListener = (value, error) -> {
-        if (error != null) {
-            Log.e("MainActivity", "Error in snapshot listener: " + error.getMessage());
-            return;
-        }
-        if (value != null) {
-            for (DocumentChange documentChange : value.getDocumentChanges()) {
-                if (documentChange.getType() == DocumentChange.Type.ADDED) {
-                    // Map Firestore document fields to ChatMessage object
-                    String senderId = documentChange.getDocument().getString(Constants.KEY_SENDER_ID);
-                    String receiverId = documentChange.getDocument().getString(Constants.KEY_RECEIVER_ID);
-
-                    ChatMessage chatMessage = new ChatMessage();
-                    ChatMessage.senderId = senderId;
-                    chatMessage.receiverId = receiverId;
-                    chatMessage.message = documentChange.getDocument().getString(Constants.KEY_LAST_MESSAGE); // Last message
-                    chatMessage.dateObject = documentChange.getDocument().getDate(Constants.KEY_TIMESTAMP); // Timestamp
-                    conversations.add(chatMessage); // Add to conversations list
+    // Observer of conversation updates; each change moves only its own row
+    private final ChatBackend.ConversationObserver conversationObserver = new ChatBackend.ConversationObserver() {
+        @Override
+        public void onConversationsChanged(List<Conversation> changed, List<String> removedIds) {
+            long start = Timer.start();
+            if (awaitingFullSet) {
+                awaitingFullSet = false;
+                removedIds = withMissing(changed, removedIds);
+            }
+            for (String conversationId : removedIds) {
+                int position = conversationIndex.remove(conversationId);
+                if (position >= 0) {
+                    conversationsAdapter.notifyItemRemoved(position);
                 }
             }
-            // Update RecyclerView to display conversations
-            // conversationsAdapter.notifyDataSetChanged(); // Uncomment if using an adapter
-            binding.conversationRecyclerView.smoothScrollToPosition(0); // Scroll to the top
+            boolean movedToTop = false;
+            for (Conversation conversation : changed) {
+                movedToTop |= upsertConversation(conversation);
+            }
+            persistConversations(changed, removedIds);
+            binding.conversationRecyclerView.setVisibility(
+                    conversationIndex.getConversations().isEmpty() ? View.GONE : View.VISIBLE);
+            binding.progressBar.setVisibility(View.GONE);
+            if (movedToTop) {
+                binding.conversationRecyclerView.smoothScrollToPosition(0); // Scroll to the newest conversation
+            }
+            CONVERSATION_SNAPSHOT_TIMER.stop(start);
+        }
+
+        @Override
+        public void onError(Exception exception) {
+            Log.e("MainActivity", "Error in conversations listener: " + exception.getMessage());
         }
     };
 
+    // Add the shown conversations that are absent from the complete set of a new observation
+    private List<String> withMissing(List<Conversation> currentSet, List<String> removedIds) {
+        Set<String> currentIds = new HashSet<>();
+        for (Conversation conversation : currentSet) {
+            currentIds.add(conversation.conversationId);
+        }
+        List<String> removed = new ArrayList<>(removedIds);
+        for (Conversation conversation : conversationIndex.getConversations()) {
+            if (!currentIds.contains(conversation.conversationId)) {
+                removed.add(conversation.conversationId);
+            }
+        }
+        return removed;
+    }
+
+    // Insert or move the row of a conversation; returns whether it is now the first row
+    private boolean upsertConversation(Conversation conversation) {
+        int[] move = conversationIndex.upsert(conversation);
+        if (move[0] < 0) {
+            conversationsAdapter.notifyItemInserted(move[1]);
+        } else {
+            if (move[0] != move[1]) {
+                conversationsAdapter.notifyItemMoved(move[0], move[1]);
+            }
+            conversationsAdapter.notifyItemChanged(move[1]);
+        }
+        return move[1] == 0;
+    }
+
+    // Mirror summary changes into the local database for the next start and for pushes
+    private void persistConversations(List<Conversation> changed, List<String> removed) {
+        if (changed.isEmpty() && removed.isEmpty()) {
+            return;
+        }
+        MessageDatabase messageDatabase = MessageDatabase.getInstance(getApplicationContext());
+        MessageDatabase.getDiskExecutor().execute(() -> {
+            messageDatabase.upsertConversations(changed);
+            messageDatabase.deleteConversations(removed);
+        });
+    }
+
     // Sign out the user and clear their session
     private void signOut() {
         String userId = preferenceManager.getString(Constants.KEY_USER_ID);
@@ -158,18 +272,28 @@ public class MainActivity extends AppCompatActivity {
             return;
         }
 
-        // Remove FCM token and update Firestore
-        DocumentReference documentReference = database.collection(Constants.KEY_COLLECTION_USERS)
-                .document(userId);
-        HashMap<String, Object> updates = new HashMap<>();
-        updates.put(Constants.KEY_FCM_TOKEN, FieldValue.delete()); // Remove token
-        documentReference.update(updates)
-                .addOnSuccessListener(unused -> {
-                    preferenceManager.clear(); // Clear shared preferences
-                    startActivity(new Intent(getApplicationContext(), SignInActivity.class)); // Navigate to sign-in screen
-                    finish(); // Close the current activity
-                })
-                .addOnFailureListener(e -> showToast("Unable To Sign Out")); // Show error message
+        // Remove the FCM token so this device no longer receives the user's pushes
+        backend.deleteToken(userId, new ChatBackend.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                PresenceTracker.getInstance().markOffline(); // Stop showing the user as online
+                preferenceManager.clear(); // Clear shared preferences
+                clearLocalMessages(); // Drop the previous user's stored conversations
+                startActivity(new Intent(getApplicationContext(), SignInActivity.class)); // Navigate to sign-in screen
+                finish(); // Close the current activity
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                showToast("Unable To Sign Out"); // Show error message
+            }
+        });
+    }
+
+    // Remove locally stored messages in the background
+    private void clearLocalMessages() {
+        MessageDatabase messageDatabase = MessageDatabase.getInstance(getApplicationContext());
+        MessageDatabase.getDiskExecutor().execute(messageDatabase::clear);
     }
 
     // Display a Toast message
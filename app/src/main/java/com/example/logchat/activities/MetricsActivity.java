@@ -0,0 +1,51 @@
+package com.example.logchat.activities;
+
+import android.os.Bundle;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import com.example.logchat.databinding.ActivityMetricsBinding;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.MetricsReporter;
+
+/**
+ * Debug screen showing the current {@link Metrics} report, the same text the periodic
+ * dumps write to logcat and the metrics file. Opened by long-pressing the user name on the
+ * main screen of a debuggable build.
+ */
+public class MetricsActivity extends AppCompatActivity {
+    private ActivityMetricsBinding binding; // View binding for accessing layout components
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        binding = ActivityMetricsBinding.inflate(getLayoutInflater()); // Initialize view binding
+        setContentView(binding.getRoot()); // Set the content view
+        setListeners(); // Set up UI event listeners
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showReport(); // Show what was recorded while the screen was away
+    }
+
+    /**
+     * Sets up listeners for the back, refresh and reset buttons.
+     */
+    private void setListeners() {
+        binding.imageBack.setOnClickListener(v -> onBackPressed()); // Go back to the previous screen
+        binding.buttonRefresh.setOnClickListener(v -> showReport());
+        binding.buttonReset.setOnClickListener(v -> {
+            Metrics.getInstance().reset(); // Start a fresh measurement, e.g. before a test scenario
+            showReport();
+        });
+    }
+
+    /**
+     * Displays the current report.
+     */
+    private void showReport() {
+        binding.textReport.setText(MetricsReporter.getInstance(getApplicationContext()).buildReport());
+    }
+}
@@ -6,10 +6,13 @@ import android.util.Patterns;
 import android.view.View;
 import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
+import com.example.logchat.database.MessageDatabase;
 import com.example.logchat.databinding.ActivitySignInBinding;
+import com.example.logchat.firebase.CredentialStore;
 import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ImageFileCache;
 import com.example.logchat.utilities.PreferenceManager;
-import com.google.firebase.firestore.DocumentSnapshot;
+import com.example.logchat.utilities.SessionManager;
 import com.google.firebase.firestore.FirebaseFirestore;
 
 /**
@@ -31,6 +34,11 @@ public class SignInActivity extends AppCompatActivity {
         setContentView(binding.getRoot());
         // Initialize the preference manager for shared preferences
         preferenceManager = new PreferenceManager(getApplicationContext());
+        if (SessionManager.isValid(preferenceManager)) {
+            // Resume the signed session locally without contacting Firestore
+            openMainActivity();
+            return;
+        }
         // Set up click listeners for UI interactions
         setListeners();
     }
@@ -58,38 +66,55 @@ public class SignInActivity extends AppCompatActivity {
         Toast.makeText(getApplicationContext(), message, Toast.LENGTH_SHORT).show();
     }
     /**
-     * Initiates the sign-in process by querying Firebase Firestore with user credentials.
-     * On successful sign-in, user data is saved in shared preferences, and the main activity is launched.
+     * Initiates the sign-in process with a direct lookup of the email's credential record.
+     * On successful sign-in, user data and a signed session are saved in shared preferences,
+     * and the main activity is launched.
      */
     private void SignIn() {
         loading(true);
         // Get an instance of Firebase Firestore
         FirebaseFirestore database = FirebaseFirestore.getInstance();
-        // Query Firestore for user with matching email and password
-        database.collection(Constants.KEY_COLLECTION_USERS)
-                .whereEqualTo(Constants.KEY_EMAIL, binding.inputEmail.getText().toString())
-                .whereEqualTo(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString())
-                .get()
-                .addOnCompleteListener(task -> {
-                    if (task.isSuccessful() && task.getResult() != null && task.getResult().getDocuments().size() > 0) {
-                        // Retrieve user document and save preferences
-                        DocumentSnapshot documentSnapshot = task.getResult().getDocuments().get(0);
-                        preferenceManager.putBoolean(Constants.KEY_IS_SIGNED_IN, true);
-                        preferenceManager.putString(Constants.KEY_USER_ID, documentSnapshot.getId());
-                        preferenceManager.putString(Constants.KEY_NAME, documentSnapshot.getString(Constants.KEY_NAME));
-                        preferenceManager.putString(Constants.KEY_IMAGE, documentSnapshot.getString(Constants.KEY_IMAGE));
-                        // Navigate to the MainActivity
-                        Intent intent = new Intent(getApplicationContext(), MainActivity.class);
-                        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                        startActivity(intent);
-
-                        showToast("Signed in successfully!");
-                    } else {
+        CredentialStore.signIn(database,
+                binding.inputEmail.getText().toString(),
+                binding.inputPassword.getText().toString(),
+                user -> {
+                    if (user == null) {
                         loading(false);
                         showToast("Unable to Sign In");
+                        return;
                     }
+                    // Save the signed-in user in preferences with a single write
+                    PreferenceManager.Batch batch = preferenceManager.edit()
+                            .putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                            .putString(Constants.KEY_USER_ID, user.id)
+                            .putString(Constants.KEY_NAME, user.name)
+                            .putString(Constants.KEY_IMAGE_HASH, user.imageHash);
+                    SessionManager.start(batch, user.id); // Lets the next cold start skip sign-in
+                    batch.apply();
+                    storeImage(user.image); // Only known for migrated accounts
+                    showToast("Signed in successfully!");
+                    openMainActivity();
                 });
     }
+    /**
+     * Keeps the profile image in the image file cache, so preferences only hold its hash.
+     * @param encodedImage The Base64-encoded image, may be {@code null}.
+     */
+    private void storeImage(String encodedImage) {
+        if (encodedImage == null) {
+            return;
+        }
+        ImageFileCache fileCache = ImageFileCache.getInstance(getApplicationContext());
+        MessageDatabase.getDiskExecutor().execute(() -> fileCache.putEncoded(encodedImage));
+    }
+    /**
+     * Launches the main activity and clears the back stack.
+     */
+    private void openMainActivity() {
+        Intent intent = new Intent(getApplicationContext(), MainActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        startActivity(intent);
+    }
     /**
      * Toggles the visibility of the sign-in button and loading indicator.
      * @param isLoading Whether to show the loading indicator or the sign-in button.
@@ -1,25 +1,29 @@
 package com.example.logchat.activities;
 
 import android.content.Intent;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
 import android.os.Bundle;
 import android.provider.MediaStore;
-import android.util.Base64;
 import android.util.Patterns;
 import android.view.View;
 import android.widget.Toast;
 import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.appcompat.app.AppCompatActivity;
+import com.example.logchat.database.MessageDatabase;
 import com.example.logchat.databinding.ActivitySignUpBinding;
+import com.example.logchat.firebase.CredentialStore;
+import com.example.logchat.firebase.ProfileImageFetcher;
+import com.example.logchat.firebase.UserDirectory;
+import com.example.logchat.utilities.AvatarEncoder;
 import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ImageFileCache;
+import com.example.logchat.utilities.ImageRendition;
 import com.example.logchat.utilities.PreferenceManager;
+import com.example.logchat.utilities.SessionManager;
+import com.google.firebase.firestore.DocumentReference;
 import com.google.firebase.firestore.FirebaseFirestore;
-import java.io.ByteArrayOutputStream;
-import java.io.FileNotFoundException;
-import java.io.InputStream;
+import com.google.firebase.firestore.FirebaseFirestoreException;
 import java.util.HashMap;
 /**
  * Activity for user sign-up functionality.
@@ -27,7 +31,8 @@ import java.util.HashMap;
 public class SignUpActivity extends AppCompatActivity {
     private ActivitySignUpBinding binding;
     private PreferenceManager preferenceManager;
-    private String encodeImage;
+    private AvatarEncoder.EncodedAvatar avatar; // Renditions of the picked photo
+    private boolean encodingImage; // Whether a picked photo is still being encoded
     /**
      * Initializes the activity and sets up UI elements and listeners.
      *
@@ -69,6 +74,7 @@ public class SignUpActivity extends AppCompatActivity {
     /**
      * Handles the sign-up process by validating input, storing user data in Firestore,
      * and saving preferences locally upon successful sign-up.
+     * The password is only stored as a salted hash in the email's credential record.
      */
     private void SignUp() {
         // Show the loading state to indicate progress.
@@ -79,73 +85,111 @@ public class SignUpActivity extends AppCompatActivity {
         HashMap<String, String> user = new HashMap<>();
         user.put(Constants.KEY_FIRST_NAME, binding.inputFirstName.getText().toString().trim()); // Store user's first name.
         user.put(Constants.KEY_LAST_NAME, binding.inputLastName.getText().toString().trim()); // Store user's last name.
+        user.put(Constants.KEY_NAME, user.get(Constants.KEY_FIRST_NAME) + " " + user.get(Constants.KEY_LAST_NAME)); // Store display name.
         user.put(Constants.KEY_EMAIL, binding.inputEmail.getText().toString().trim()); // Store user's email.
-        user.put(Constants.KEY_PASSWORD, binding.inputPassword.getText().toString().trim()); // Store user's password.
-        user.put(Constants.KEY_IMAGE, encodeImage); // Store encoded image of the user.
+        user.put(Constants.KEY_IMAGE, avatar.getEncoded(ImageRendition.FULL)); // Store the full rendition of the user's image.
+        String password = binding.inputPassword.getText().toString().trim();
 
-        // Add the user data to the Firestore 'users' collection.
-        database.collection(Constants.KEY_COLLECTION_USERS)
-                .add(user)
-                .addOnSuccessListener(documentReference -> {
-                    // Save user sign-in state and details to shared preferences.
-                    preferenceManager.putBoolean(Constants.KEY_IS_SIGNED_IN, true); // Indicate the user is signed in.
-                    preferenceManager.putString(Constants.KEY_USER_ID, documentReference.getId()); // Save Firestore document ID.
-                    preferenceManager.putString(Constants.KEY_FIRST_NAME, binding.inputFirstName.getText().toString().trim());
-                    preferenceManager.putString(Constants.KEY_LAST_NAME, binding.inputLastName.getText().toString().trim());
-                    preferenceManager.putString(Constants.KEY_IMAGE, encodeImage); // Save user profile image.
-
-                    // Show a success message.
-                    showToast("Sign up successful!");
-                    // Navigate to the MainActivity and clear the back stack.
-                    Intent intent = new Intent(getApplicationContext(), MainActivity.class);
-                    intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
-                    startActivity(intent);
-                })
-                .addOnFailureListener(exception -> {
-                    // Stop the loading state and display the error message.
-                    loading(false);
-                    showToast(exception.getMessage()); // Show error message to the user.
-                });
+        DocumentReference credentialReference = CredentialStore.getRecord(database, user.get(Constants.KEY_EMAIL));
+        credentialReference.get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                loading(false);
+                showToast("Unable to Sign Up");
+            } else if (task.getResult().exists()) {
+                loading(false);
+                showToast("This email is already registered");
+            } else {
+                createAccount(database, credentialReference, user, password); // Checked again when written
+            }
+        });
     }
     /**
-     * Encodes a given bitmap image into a Base64 string.
-     * @param bitmap The Bitmap to be encoded.
-     * @return A Base64 encoded string representation of the bitmap.
+     * Writes the user document, its image renditions, its directory record and its credential
+     * record in one transaction, which fails if another sign-up has claimed the email since it
+     * was checked.
+     * @param database            The Firestore instance.
+     * @param credentialReference The credential record of the user's email.
+     * @param user                The fields of the user document.
+     * @param password            The password, hashed in the background before the write.
      */
-    private String encodeImage(Bitmap bitmap) {
-        int previewWidth = 150; // Target width for the preview image.
-        int previewHeight = bitmap.getHeight() * previewWidth / bitmap.getWidth(); // Maintain aspect ratio.
-        // Create a scaled-down version of the bitmap for preview purposes.
-        Bitmap previewBitmap = Bitmap.createScaledBitmap(bitmap, previewWidth, previewHeight, false);
-        // Compress the preview bitmap into a JPEG format with 50% quality.
-        ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-        previewBitmap.compress(Bitmap.CompressFormat.JPEG, 50, byteArrayOutputStream);
-        // Convert the compressed image data into a byte array and encode it into Base64.
-        byte[] bytes = byteArrayOutputStream.toByteArray();
-        return Base64.encodeToString(bytes, Base64.DEFAULT);
+    private void createAccount(FirebaseFirestore database, DocumentReference credentialReference,
+                               HashMap<String, String> user, String password) {
+        DocumentReference userReference = database.collection(Constants.KEY_COLLECTION_USERS).document();
+        AvatarEncoder.EncodedAvatar avatar = this.avatar;
+        String imageHash = avatar.getImageHash();
+        HashMap<String, Object> directoryRecord = UserDirectory.createRecord(user.get(Constants.KEY_NAME),
+                user.get(Constants.KEY_EMAIL), imageHash, avatar.getEncoded(ImageRendition.THUMBNAIL));
+        HashMap<String, Object> bubbleImage = new HashMap<>();
+        bubbleImage.put(Constants.KEY_IMAGE, avatar.getEncoded(ImageRendition.BUBBLE));
+        CredentialStore.createRecord(userReference.getId(), user.get(Constants.KEY_NAME), imageHash, password, credentialRecord -> {
+            database.runTransaction(transaction -> {
+                // Read inside the transaction so a concurrent claim of the email makes Firestore retry.
+                if (transaction.get(credentialReference).exists()) {
+                    throw new FirebaseFirestoreException("This email is already registered",
+                            FirebaseFirestoreException.Code.ALREADY_EXISTS);
+                }
+                transaction.set(userReference, user);
+                transaction.set(ProfileImageFetcher.getDocument(database, userReference.getId(), ImageRendition.BUBBLE), bubbleImage);
+                transaction.set(UserDirectory.getRecord(database, userReference.getId()), directoryRecord);
+                transaction.set(credentialReference, credentialRecord);
+                return null;
+            })
+                    .addOnSuccessListener(unused -> {
+                        // Save user sign-in state and details to shared preferences in one write.
+                        PreferenceManager.Batch batch = preferenceManager.edit()
+                                .putBoolean(Constants.KEY_IS_SIGNED_IN, true) // Indicate the user is signed in.
+                                .putString(Constants.KEY_USER_ID, userReference.getId()) // Save Firestore document ID.
+                                .putString(Constants.KEY_FIRST_NAME, user.get(Constants.KEY_FIRST_NAME))
+                                .putString(Constants.KEY_LAST_NAME, user.get(Constants.KEY_LAST_NAME))
+                                .putString(Constants.KEY_NAME, user.get(Constants.KEY_NAME)) // Save display name.
+                                .putString(Constants.KEY_IMAGE_HASH, imageHash); // Save image hash for conversation summaries.
+                        SessionManager.start(batch, userReference.getId()); // Lets the next cold start skip sign-in
+                        batch.apply();
+                        // Keep the renditions as files; preferences only hold the hash.
+                        ImageFileCache fileCache = ImageFileCache.getInstance(getApplicationContext());
+                        MessageDatabase.getDiskExecutor().execute(() -> {
+                            for (ImageRendition rendition : ImageRendition.values()) {
+                                fileCache.put(ImageFileCache.getKey(imageHash, rendition), avatar.getBytes(rendition));
+                            }
+                        });
+
+                        // Show a success message.
+                        showToast("Sign up successful!");
+                        // Navigate to the MainActivity and clear the back stack.
+                        Intent intent = new Intent(getApplicationContext(), MainActivity.class);
+                        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
+                        startActivity(intent);
+                    })
+                    .addOnFailureListener(exception -> {
+                        // Stop the loading state and display the error message.
+                        loading(false);
+                        showToast(exception.getMessage()); // Show error message to the user.
+                    });
+        });
     }
     /**
      * ActivityResultLauncher for picking an image from the device gallery.
-     * On successful image selection, the image is displayed, and its Base64 encoding is stored.
+     * The picked photo is decoded and encoded into all renditions in the background; the
+     * bubble-size rendition is shown once it is ready.
      */
     private final ActivityResultLauncher<Intent> pickImage = registerForActivityResult(
             new ActivityResultContracts.StartActivityForResult(),
             result -> {
-                if (result.getResultCode() == RESULT_OK) { // Ensure the result is successful.
+                if (result.getResultCode() == RESULT_OK && result.getData() != null) { // Ensure the result is successful.
                     Uri imageUri = result.getData().getData(); // Retrieve the URI of the selected image.
-                    try {
-                        // Open an input stream to the selected image and decode it into a bitmap.
-                        InputStream inputStream = getContentResolver().openInputStream(imageUri);
-                        Bitmap bitmap = BitmapFactory.decodeStream(inputStream);
+                    encodingImage = true;
+                    AvatarEncoder.encode(getContentResolver(), imageUri, encodedAvatar -> {
+                        encodingImage = false;
+                        if (encodedAvatar == null) {
+                            showToast("Unable to read the selected image");
+                            return;
+                        }
+                        avatar = encodedAvatar;
                         // Display the selected image in the profile ImageView.
-                        binding.imageProfile.setImageBitmap(bitmap);
+                        binding.imageProfile.setImageBitmap(encodedAvatar.preview);
                         // Hide the "Add Image" text since an image is now selected.
                         binding.textAddImage.setVisibility(View.GONE);
-                        // Encode the selected image and store it as a Base64 string.
-                        encodeImage = encodeImage(bitmap);
-                    } catch (FileNotFoundException e) {
-                        e.printStackTrace(); // Log the exception if the image file is not found.
-                    }
+                    });
                 }
             });
     /**
@@ -153,7 +197,10 @@ public class SignUpActivity extends AppCompatActivity {
      * @return {@code true} if all sign-up details are valid; {@code false} otherwise.
      */
     private Boolean isValidateSignUpDetails() {
-        if (encodeImage == null) {
+        if (encodingImage) {
+            showToast("Please Wait While Your Image Is Processed");
+            return false;
+        } else if (avatar == null) {
             showToast("Please Select Your Image");
             return false;
         } else if (binding.inputFirstName.getText().toString().trim().isEmpty()) {
@@ -4,16 +4,21 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.view.View;
 
+import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.logchat.adapters.UsersAdapter;
+import com.example.logchat.backend.BackendProvider;
+import com.example.logchat.backend.ChatBackend;
 import com.example.logchat.databinding.ActivityUsersBinding;
+import com.example.logchat.firebase.PresenceMonitor;
+import com.example.logchat.listeners.PresenceListener;
 import com.example.logchat.listeners.UserListener;
 import com.example.logchat.models.User;
 import com.example.logchat.utilities.Constants;
 import com.example.logchat.utilities.PreferenceManager;
-import com.google.firebase.firestore.FirebaseFirestore;
-import com.google.firebase.firestore.QueryDocumentSnapshot;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -21,6 +26,13 @@ import java.util.List;
 public class userActivity extends AppCompatActivity implements UserListener {
     private ActivityUsersBinding binding; // View binding for accessing layout components
     private PreferenceManager preferenceManager; // Shared preferences for managing user session data
+    private final List<User> users = new ArrayList<>(); // Users loaded so far, in name order
+    private UsersAdapter usersAdapter; // Adapter that appends pages as they arrive
+    private User lastUser; // Cursor: the last loaded directory record, including the current user
+    private boolean isLoading; // Whether a page request is in flight
+    private boolean hasMoreUsers = true; // Whether more directory pages may exist
+    private final PresenceListener presenceListener = onlineUserIds ->
+            usersAdapter.setOnlineUserIds(onlineUserIds); // Moves the online indicators
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -29,7 +41,15 @@ public class userActivity extends AppCompatActivity implements UserListener {
         setContentView(binding.getRoot()); // Set the content view
         preferenceManager = new PreferenceManager(getApplicationContext()); // Initialize the preference manager
         setListeners(); // Set up UI event listeners
-        getUsers(); // Fetch the list of users
+        setUpUserList(); // Attach the paged user list
+        getUsers(); // Fetch the first page of users
+        PresenceMonitor.getInstance().addListener(presenceListener); // Share the online users listener
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        PresenceMonitor.getInstance().removeListener(presenceListener);
     }
 
     /**
@@ -40,41 +60,82 @@ public class userActivity extends AppCompatActivity implements UserListener {
     }
 
     /**
-     * Fetches the list of users from Firestore and displays them.
+     * Attaches an initially empty adapter that grows page by page as the list is scrolled.
+     */
+    private void setUpUserList() {
+        usersAdapter = new UsersAdapter(users, this); // Initialize the adapter
+        binding.usersRecyclerView.setAdapter(usersAdapter); // Attach the adapter to the RecyclerView
+        binding.usersRecyclerView.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+                if (layoutManager != null
+                        && layoutManager.findLastVisibleItemPosition() >= users.size() - Constants.USER_PREFETCH_DISTANCE) {
+                    getUsers(); // Prefetch the next page before the end of the list is reached
+                }
+            }
+        });
+    }
+
+    /**
+     * Fetches the next page of the lightweight user directory from the backend, ordered by name,
+     * and appends it to the list.
+     * Profile images are not part of the directory; rows fetch them when displayed.
      */
     private void getUsers() {
-        loading(true); // Show progress bar while fetching users
-        FirebaseFirestore database = FirebaseFirestore.getInstance(); // Get Firestore instance
-        database.collection(Constants.KEY_COLLECTION_USERS) // Access the "users" collection in Firestore
-                .get()
-                .addOnCompleteListener(task -> { // Handle the result of the query
-                    loading(false); // Hide progress bar after query completes
-                    String currentUserId = preferenceManager.getString(Constants.KEY_USER_ID); // Get current user's ID
-                    if (task.isSuccessful() && task.getResult() != null) {
-                        List<User> users = new ArrayList<>(); // Initialize list to store user data
-                        for (QueryDocumentSnapshot queryDocumentSnapshot : task.getResult()) {
-                            if (currentUserId.equals(queryDocumentSnapshot.getId())) {
-                                continue; // Skip the current user's data
-                            }
-                            User user = new User(); // Create a new User object
-                            user.name = queryDocumentSnapshot.getString(Constants.KEY_NAME); // Set user's name
-                            user.email = queryDocumentSnapshot.getString(Constants.KEY_EMAIL); // Set user's email
-                            user.image = queryDocumentSnapshot.getString(Constants.KEY_IMAGE); // Set user's profile image
-                            user.token = queryDocumentSnapshot.getString(Constants.KEY_FCM_TOKEN); // Set user's FCM token
-                            user.id = queryDocumentSnapshot.getId(); // Set user's Firestore document ID
-                            users.add(user); // Add the user to the list
-                        }
-                        if (users.size() > 0) {
-                            UsersAdapter usersAdapter = new UsersAdapter(users, this); // Initialize the adapter
-                            binding.usersRecyclerView.setAdapter(usersAdapter); // Attach the adapter to the RecyclerView
-                            binding.usersRecyclerView.setVisibility(View.VISIBLE); // Make the RecyclerView visible
-                        } else {
-                            showErrorMessage(); // Show error if no users are found
-                        }
-                    } else {
-                        showErrorMessage(); // Show error if the query fails
-                    }
-                });
+        if (isLoading || !hasMoreUsers) {
+            return; // A page is already on its way or the directory is exhausted
+        }
+        isLoading = true;
+        if (users.isEmpty()) {
+            loading(true); // Show progress bar only until the first page arrives
+        }
+        BackendProvider.get().getUsers(lastUser, Constants.USER_PAGE_SIZE, new ChatBackend.Callback<List<User>>() {
+            @Override
+            public void onSuccess(List<User> page) {
+                isLoading = false;
+                loading(false); // Hide progress bar after query completes
+                showPage(page);
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                isLoading = false;
+                loading(false);
+                if (users.isEmpty()) {
+                    showErrorMessage(); // Show error if the first query fails
+                }
+            }
+        });
+    }
+
+    /**
+     * Appends a page of the directory to the list, skipping the current user.
+     *
+     * @param page The users of the page, in name order
+     */
+    private void showPage(List<User> page) {
+        String currentUserId = preferenceManager.getSession().userId; // Get current user's ID
+        hasMoreUsers = page.size() == Constants.USER_PAGE_SIZE;
+        if (!page.isEmpty()) {
+            lastUser = page.get(page.size() - 1);
+        }
+        int start = users.size();
+        for (User user : page) {
+            if (!currentUserId.equals(user.id)) {
+                users.add(user); // Skip the current user's data
+            }
+        }
+        if (users.size() > start) {
+            usersAdapter.notifyItemRangeInserted(start, users.size() - start); // Append the new page
+            binding.usersRecyclerView.setVisibility(View.VISIBLE); // Make the RecyclerView visible
+        } else if (users.isEmpty()) {
+            if (hasMoreUsers) {
+                getUsers(); // The page only contained the current user
+            } else {
+                showErrorMessage(); // Show error if no users are found
+            }
+        }
     }
 
     /**
@@ -1,34 +1,82 @@
 package com.example.logchat.adapters;
 
-import android.graphics.Bitmap;
 import android.view.LayoutInflater;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.logchat.R;
 import com.example.logchat.databinding.ItemContainerReceivedMessageBinding;
 import com.example.logchat.databinding.ItemContainerSentMessageBinding;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
 import com.example.logchat.models.ChatMessage;
+import com.example.logchat.utilities.DateFormatter;
+import com.example.logchat.utilities.ImageLoader;
+import com.example.logchat.utilities.ImageRendition;
 
 import java.util.List;
+import java.util.Objects;
 
 /**
  * Adapter for managing and displaying chat messages in a RecyclerView.
  * Handles both sent and received messages with distinct view types.
+ *
+ * The adapter displays immutable snapshots submitted through {@link #submitList(List, Runnable)}.
+ * The difference to the previous snapshot is computed on a background thread and only the
+ * changed rows are inserted, moved, rebound or removed.
  */
 public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
-    private final List<ChatMessage> chatMessages; // List of chat messages to display
-    private final Bitmap receiverProfileImage; // Profile image of the receiver
-    private final String sendId; // ID of the current user (sender)
+    // Messages are the same item if they share a document ID, and unchanged if their content and time match
+    private static final DiffUtil.ItemCallback<ChatMessage> DIFF_CALLBACK = new DiffUtil.ItemCallback<ChatMessage>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull ChatMessage oldItem, @NonNull ChatMessage newItem) {
+            return oldItem.id == newItem.id && Objects.equals(oldItem.documentId, newItem.documentId);
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull ChatMessage oldItem, @NonNull ChatMessage newItem) {
+            return oldItem.timestamp == newItem.timestamp
+                    && oldItem.sent == newItem.sent
+                    && oldItem.pending == newItem.pending
+                    && Objects.equals(oldItem.message, newItem.message);
+        }
+    };
+
+    private final AsyncListDiffer<ChatMessage> differ = new AsyncListDiffer<>(this, DIFF_CALLBACK); // Diffs snapshots off the main thread
+    private final String receiverId; // ID of the receiver, used as the image cache key
+    private final String receiverImageHash; // Content hash of the receiver's profile image
     public static final int VIEW_TYPE_SENT = 1; // Constant for sent message view type
     public static final int VIEW_TYPE_RECEIVED = 2; // Constant for received message view type
+    private static final float PENDING_ALPHA = 0.6f; // Opacity of messages that have not reached the server
+    private static final Timer BIND_TIMER = Metrics.getInstance().timer("bind.chat");
 
     // Constructor for the ChatAdapter
-    public ChatAdapter(List<ChatMessage> chatMessages, Bitmap receiverProfileImage, String sendId) {
-        this.chatMessages = chatMessages;
-        this.receiverProfileImage = receiverProfileImage;
-        this.sendId = sendId;
+    public ChatAdapter(String receiverId, String receiverImageHash) {
+        this.receiverId = receiverId;
+        this.receiverImageHash = receiverImageHash;
+        setHasStableIds(true); // Messages carry stable IDs, so rows keep their identity across updates
+    }
+
+    /**
+     * Displays a new snapshot of the conversation.
+     * Must be called on the main thread; the list must not be modified afterwards.
+     * @param messages       The complete message list in chronological order.
+     * @param commitCallback Runs once the snapshot is displayed, may be {@code null}.
+     */
+    public void submitList(List<ChatMessage> messages, Runnable commitCallback) {
+        differ.submitList(messages, commitCallback);
+    }
+
+    /**
+     * Returns the snapshot that is currently displayed.
+     * @return The displayed messages in chronological order.
+     */
+    public List<ChatMessage> getCurrentList() {
+        return differ.getCurrentList();
     }
 
     @NonNull
@@ -57,27 +105,40 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
 
     @Override
     public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+        long start = Timer.start();
         // Determine the view type and bind data accordingly
+        ChatMessage chatMessage = differ.getCurrentList().get(position);
         if (getItemViewType(position) == VIEW_TYPE_SENT) {
-            ((SentMessageViewHolder) holder).setData(chatMessages.get(position));
+            ((SentMessageViewHolder) holder).setData(chatMessage);
         } else {
-            ((ReceivedMessageViewHolder) holder).setData(chatMessages.get(position), receiverProfileImage);
+            ((ReceivedMessageViewHolder) holder).setData(chatMessage, receiverId, receiverImageHash);
+        }
+        BIND_TIMER.stop(start);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull RecyclerView.ViewHolder holder) {
+        super.onViewRecycled(holder);
+        if (holder instanceof ReceivedMessageViewHolder) {
+            // Drop the pending avatar decode of a recycled row
+            ImageLoader.getInstance().cancel(((ReceivedMessageViewHolder) holder).binding.imageProfile);
         }
     }
 
     @Override
     public int getItemCount() {
-        return chatMessages.size(); // Return the number of messages in the list
+        return differ.getCurrentList().size(); // Return the number of messages in the list
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return differ.getCurrentList().get(position).id; // Stable ID derived from the document ID
     }
 
     @Override
     public int getItemViewType(int position) {
-        // Determine the view type based on whether the message was sent or received
-        if (chatMessages.get(position).senderId.equals(sendId)) {
-            return VIEW_TYPE_SENT;
-        } else {
-            return VIEW_TYPE_RECEIVED;
-        }
+        // The direction is precomputed when the message is created
+        return differ.getCurrentList().get(position).sent ? VIEW_TYPE_SENT : VIEW_TYPE_RECEIVED;
     }
 
     // ViewHolder class for sent messages
@@ -89,10 +150,15 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
             binding = itemContainerSentMessageBinding;
         }
 
-        // Bind data to the sent message view
+        // Bind data to the sent message view; messages still in the outbox are dimmed
         void setData(ChatMessage chatMessage) {
             binding.textMessage.setText(chatMessage.message); // Set message text
-            binding.textDateTime.setText(chatMessage.dateTime); // Set message timestamp
+            binding.textMessage.setAlpha(chatMessage.pending ? PENDING_ALPHA : 1f);
+            if (chatMessage.pending) {
+                binding.textDateTime.setText(R.string.message_pending);
+            } else {
+                binding.textDateTime.setText(DateFormatter.format(chatMessage.timestamp)); // Format timestamp lazily at bind time
+            }
         }
     }
 
@@ -106,15 +172,12 @@ public class ChatAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> {
         }
 
         // Bind data to the received message view
-        void setData(ChatMessage chatMessage, Bitmap receiverProfileImage) {
+        void setData(ChatMessage chatMessage, String receiverId, String receiverImageHash) {
             binding.textMessage.setText(chatMessage.message); // Set message text
-            binding.textDateTime.setText(chatMessage.dateTime); // Set message timestamp
-            if (receiverProfileImage != null) {
-                binding.imageProfile.setImageBitmap(receiverProfileImage); // Set profile image
-            } else {
-                // Handle case where receiver profile image is null (e.g., set a placeholder image)
-                binding.imageProfile.setImageResource(android.R.drawable.ic_menu_report_image);
-            }
+            binding.textDateTime.setText(DateFormatter.format(chatMessage.timestamp)); // Format timestamp lazily at bind time
+            // Load the profile image off the main thread; a missing image falls back to a placeholder
+            ImageLoader.getInstance().loadProfileImage(binding.imageProfile, receiverId, receiverImageHash,
+                    ImageRendition.BUBBLE);
         }
     }
 }
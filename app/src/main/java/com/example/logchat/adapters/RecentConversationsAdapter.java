@@ -0,0 +1,90 @@
+package com.example.logchat.adapters;
+
+import android.view.LayoutInflater;
+import android.view.ViewGroup;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.logchat.databinding.ItemContainerRecentConversationBinding;
+import com.example.logchat.listeners.ConversationListener;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.utilities.ImageLoader;
+import com.example.logchat.utilities.ImageRendition;
+
+import java.util.List;
+
+/**
+ * Adapter class for displaying the recent conversations of the signed-in user.
+ * Each row shows the other participant and the latest message of the conversation.
+ */
+public class RecentConversationsAdapter extends RecyclerView.Adapter<RecentConversationsAdapter.ConversationViewHolder> {
+
+    private static final Timer BIND_TIMER = Metrics.getInstance().timer("bind.conversations");
+    private final List<Conversation> conversations; // Conversations to display, newest first
+    private final ConversationListener conversationListener; // Listener for conversation click events
+
+    // Constructor for initializing the adapter
+    public RecentConversationsAdapter(List<Conversation> conversations, ConversationListener conversationListener) {
+        this.conversations = conversations;
+        this.conversationListener = conversationListener;
+    }
+
+    @NonNull
+    @Override
+    public ConversationViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        // Inflate the layout for conversation items using ViewBinding
+        return new ConversationViewHolder(
+                ItemContainerRecentConversationBinding.inflate(
+                        LayoutInflater.from(parent.getContext()),
+                        parent,
+                        false
+                )
+        );
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ConversationViewHolder holder, int position) {
+        long start = Timer.start();
+        holder.setData(conversations.get(position));
+        BIND_TIMER.stop(start);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull ConversationViewHolder holder) {
+        super.onViewRecycled(holder);
+        ImageLoader.getInstance().cancel(holder.binding.imageProfile); // Drop the pending image decode
+    }
+
+    @Override
+    public int getItemCount() {
+        return conversations.size(); // Return the number of conversations
+    }
+
+    /**
+     * ViewHolder class for managing conversation item views.
+     */
+    class ConversationViewHolder extends RecyclerView.ViewHolder {
+        ItemContainerRecentConversationBinding binding; // Binding for conversation item layout
+
+        ConversationViewHolder(ItemContainerRecentConversationBinding itemContainerRecentConversationBinding) {
+            super(itemContainerRecentConversationBinding.getRoot());
+            binding = itemContainerRecentConversationBinding;
+        }
+
+        /**
+         * Binds conversation data to the respective UI elements in the layout.
+         *
+         * @param conversation The conversation to display
+         */
+        void setData(Conversation conversation) {
+            binding.textName.setText(conversation.name); // Set the other participant's name
+            binding.textRecentMessage.setText(conversation.lastMessage); // Set the latest message
+            ImageLoader.getInstance().loadProfileImage(binding.imageProfile, conversation.userId, conversation.imageHash,
+                    ImageRendition.THUMBNAIL); // Fetch and decode the profile image lazily
+            binding.getRoot().setOnClickListener(v -> conversationListener.onConversationClicked(conversation.toUser())); // Open the chat
+        }
+    }
+}
@@ -1,9 +1,7 @@
 package com.example.logchat.adapters;
 
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
-import android.util.Base64;
 import android.view.LayoutInflater;
+import android.view.View;
 import android.view.ViewGroup;
 
 import androidx.annotation.NonNull;
@@ -11,9 +9,15 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.logchat.databinding.ItemContainerUserBinding;
 import com.example.logchat.listeners.UserListener;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
 import com.example.logchat.models.User;
+import com.example.logchat.utilities.ImageLoader;
+import com.example.logchat.utilities.ImageRendition;
 
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Adapter class for displaying a list of users in a RecyclerView.
@@ -23,6 +27,9 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
 
     private final List<User> users; // List of users to display
     private final UserListener userListener; // Listener for user click events
+    private static final Object PAYLOAD_PRESENCE = new Object(); // Rebinds only the online indicator
+    private static final Timer BIND_TIMER = Metrics.getInstance().timer("bind.users");
+    private Set<String> onlineUserIds = Collections.emptySet(); // Users currently shown as online
 
     // Constructor for initializing the adapter
     public UsersAdapter(List<User> users, UserListener userListener) {
@@ -41,8 +48,41 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
 
     @Override
     public void onBindViewHolder(@NonNull UsersAdapter.UserViewHolder holder, int position) {
+        long start = Timer.start();
         // Bind data to the ViewHolder for the current position
         holder.setUserData(users.get(position));
+        BIND_TIMER.stop(start);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull UsersAdapter.UserViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(PAYLOAD_PRESENCE)) {
+            holder.setPresence(users.get(position)); // Leave the name and the image untouched
+        } else {
+            super.onBindViewHolder(holder, position, payloads);
+        }
+    }
+
+    /**
+     * Updates the online indicators, rebinding only the rows whose state changed.
+     *
+     * @param onlineUserIds The IDs of the users that are online
+     */
+    public void setOnlineUserIds(Set<String> onlineUserIds) {
+        Set<String> previous = this.onlineUserIds;
+        this.onlineUserIds = onlineUserIds;
+        for (int i = 0; i < users.size(); i++) {
+            String userId = users.get(i).id;
+            if (previous.contains(userId) != onlineUserIds.contains(userId)) {
+                notifyItemChanged(i, PAYLOAD_PRESENCE);
+            }
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull UsersAdapter.UserViewHolder holder) {
+        super.onViewRecycled(holder);
+        ImageLoader.getInstance().cancel(holder.binding.imageProfile); // Drop the pending image decode
     }
 
     @Override
@@ -69,19 +109,24 @@ public class UsersAdapter extends RecyclerView.Adapter<UsersAdapter.UserViewHold
         void setUserData(User user) {
             binding.textName.setText(user.name); // Set user's name
             binding.textEmail.setText(user.email); // Set user's email
-            binding.imageProfile.setImageBitmap(getUserImage(user.image)); // Set user's profile image
+            if (user.image != null) {
+                // The directory page already carried the thumbnail
+                ImageLoader.getInstance().load(binding.imageProfile, user.id, user.image);
+            } else {
+                ImageLoader.getInstance().loadProfileImage(binding.imageProfile, user.id, user.imageHash,
+                        ImageRendition.THUMBNAIL); // Fetch and decode the profile image lazily
+            }
+            setPresence(user);
             binding.getRoot().setOnClickListener(v -> userListener.onUserClicked(user)); // Handle user click
         }
-    }
 
-    /**
-     * Decodes a Base64-encoded string into a Bitmap for displaying user profile images.
-     *
-     * @param encodedImage The Base64-encoded string representing the image
-     * @return The decoded Bitmap
-     */
-    private Bitmap getUserImage(String encodedImage) {
-        byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT); // Decode Base64 string
-        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length); // Convert to Bitmap
+        /**
+         * Shows the online indicator if the user is online.
+         *
+         * @param user The user displayed by this row
+         */
+        void setPresence(User user) {
+            binding.viewOnline.setVisibility(onlineUserIds.contains(user.id) ? View.VISIBLE : View.GONE);
+        }
     }
 }
@@ -0,0 +1,42 @@
+package com.example.logchat.backend;
+
+import com.example.logchat.firebase.FirestoreChatBackend;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+/**
+ * Holds the {@link ChatBackend} used by the app.
+ *
+ * The app uses {@link FirestoreChatBackend} on the default Firestore instance, which talks
+ * to the emulator when {@code Constants.FIRESTORE_EMULATOR_HOST} is set. Tests and profiling
+ * builds can install another backend, e.g. an {@link InMemoryChatBackend}, before the first
+ * screen starts.
+ */
+public class BackendProvider {
+    private static volatile ChatBackend backend;
+
+    private BackendProvider() {
+    }
+
+    /**
+     * Returns the backend, creating the Firestore backend on first use.
+     * @return The process-wide {@link ChatBackend}.
+     */
+    public static ChatBackend get() {
+        if (backend == null) {
+            synchronized (BackendProvider.class) {
+                if (backend == null) {
+                    backend = new FirestoreChatBackend(FirebaseFirestore.getInstance());
+                }
+            }
+        }
+        return backend;
+    }
+
+    /**
+     * Replaces the backend.
+     * @param chatBackend The backend to use from now on.
+     */
+    public static void set(ChatBackend chatBackend) {
+        backend = chatBackend;
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.logchat.backend;
+
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+
+import java.util.List;
+
+/**
+ * Remote data access of the chat: the user directory, messages, conversation summaries
+ * and push tokens.
+ *
+ * The interface only uses the app's own models, so the code above it can run against
+ * {@link FirestoreChatBackend} in the app, against the Firestore emulator, or against
+ * {@link InMemoryChatBackend} on a plain JVM for tests and profiling. Callbacks and
+ * observers are invoked on the thread chosen by the implementation; the Firestore
+ * implementation uses the main thread.
+ */
+public interface ChatBackend {
+
+    /**
+     * Receives the result of a one-shot operation.
+     * @param <T> The type of the result.
+     */
+    interface Callback<T> {
+        /**
+         * Called when the operation succeeded.
+         * @param result The result, {@code null} for writes.
+         */
+        void onSuccess(T result);
+
+        /**
+         * Called when the operation failed.
+         * @param exception The cause of the failure.
+         */
+        void onFailure(Exception exception);
+    }
+
+    /**
+     * Handle of a running observation.
+     */
+    interface Subscription {
+        /**
+         * Stops the observation. Further changes are not delivered.
+         */
+        void remove();
+    }
+
+    /**
+     * Receives changes to the messages of a conversation.
+     */
+    interface MessageObserver {
+        /**
+         * Called with each batch of changes. The first call carries all messages that match
+         * the observation as added.
+         * @param added    Messages that are new to the observer.
+         * @param modified Messages whose content or metadata changed.
+         * @param removed  Messages that were deleted.
+         */
+        void onMessagesChanged(List<ChatMessage> added, List<ChatMessage> modified, List<ChatMessage> removed);
+
+        /**
+         * Called when the observation failed and stopped.
+         * @param exception The cause of the failure.
+         */
+        void onError(Exception exception);
+    }
+
+    /**
+     * Receives changes to the recent conversations of a user.
+     */
+    interface ConversationObserver {
+        /**
+         * Called with each batch of changes. The first call carries the complete current set of
+         * matching conversations; a receiver that kept conversations from an earlier observation
+         * should drop those missing from it, since their removal is not reported.
+         * @param changed    Conversations that are new or have a new last message.
+         * @param removedIds IDs of conversations that left the observed range.
+         */
+        void onConversationsChanged(List<Conversation> changed, List<String> removedIds);
+
+        /**
+         * Called when the observation failed and stopped.
+         * @param exception The cause of the failure.
+         */
+        void onError(Exception exception);
+    }
+
+    /**
+     * Reads a page of the user directory in name order.
+     * @param after    The last user of the previous page, or {@code null} for the first page.
+     * @param limit    The maximum number of users.
+     * @param callback Receives the users; fewer than {@code limit} means the directory is exhausted.
+     */
+    void getUsers(User after, int limit, Callback<List<User>> callback);
+
+    /**
+     * Stores the push token of a user.
+     * @param userId   The ID of the user.
+     * @param token    The FCM registration token.
+     * @param callback Notified when the write completed.
+     */
+    void updateToken(String userId, String token, Callback<Void> callback);
+
+    /**
+     * Removes the push token of a user, e.g. on sign-out.
+     * @param userId   The ID of the user.
+     * @param callback Notified when the write completed.
+     */
+    void deleteToken(String userId, Callback<Void> callback);
+
+    /**
+     * Generates the ID of a new message without a round trip.
+     * @return A unique message ID.
+     */
+    String newMessageId();
+
+    /**
+     * Writes messages together with the latest summary of each conversation they belong to,
+     * atomically. Entries marked with {@link OutgoingMessage#keepSummary} are written without
+     * touching the summary, so an entry that is sent late never replaces the last message of a
+     * conversation. Writing a message ID again overwrites it, so retries never duplicate.
+     * The server stamps every written message with its own time, see {@link ChatMessage#serverTimestamp}.
+     * @param messages The messages to write, in send order.
+     * @param callback Notified when the write completed.
+     */
+    void sendMessages(List<OutgoingMessage> messages, Callback<Void> callback);
+
+    /**
+     * Reads the newest messages of a conversation that are older than a timestamp.
+     * @param userId          The ID of the signed-in user.
+     * @param otherUserId     The ID of the other participant.
+     * @param beforeTimestamp Only messages older than this epoch time are returned; {@code 0} for no bound.
+     * @param limit           The maximum number of messages.
+     * @param callback        Receives the messages in chronological order; fewer than
+     *                        {@code limit} means there are no older messages.
+     */
+    void getMessagesBefore(String userId, String otherUserId, long beforeTimestamp, int limit,
+                           Callback<List<ChatMessage>> callback);
+
+    /**
+     * Observes the messages of a conversation that the server stored after a point in time.
+     * The server time is assigned when a write arrives, so a message sent offline or from a
+     * device with a wrong clock is still observed even if its send time is older than the bound.
+     * Observed messages carry their {@link ChatMessage#serverTimestamp}.
+     * @param userId               The ID of the signed-in user.
+     * @param otherUserId          The ID of the other participant.
+     * @param afterServerTimestamp Only messages stored after this server time, in epoch milliseconds, are observed.
+     * @param observer             Receives the changes.
+     * @return The subscription of the observation.
+     */
+    Subscription observeMessages(String userId, String otherUserId, long afterServerTimestamp, MessageObserver observer);
+
+    /**
+     * Observes the most recent conversations of a user, newest first.
+     * @param userId   The ID of the signed-in user.
+     * @param limit    The maximum number of conversations.
+     * @param observer Receives the changes.
+     * @return The subscription of the observation.
+     */
+    Subscription observeConversations(String userId, int limit, ConversationObserver observer);
+}
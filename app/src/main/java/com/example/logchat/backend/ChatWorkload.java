@@ -0,0 +1,120 @@
+package com.example.logchat.backend;
+
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic users and messages for replaying load against a
+ * {@link ChatBackend}, e.g. an {@link InMemoryChatBackend} in tests and benchmarks.
+ *
+ * Messages mostly arrive in timestamp order with a small share of late ones, like two
+ * devices sending concurrently, so sorting and insertion paths are exercised realistically.
+ */
+public class ChatWorkload {
+    private static final String[] WORDS = {
+            "hey", "are", "you", "coming", "to", "class", "today", "I", "finished", "the", "lab",
+            "report", "see", "library", "after", "lunch", "thanks", "ok", "sounds", "good", "later"
+    };
+    private static final long START_TIMESTAMP = 1700000000000L;
+    private static final long MESSAGE_INTERVAL_MS = 1000;
+    private static final int LATE_PERCENT = 5; // Share of messages written out of order
+    private static final long MAX_LATENESS_MS = 30000;
+
+    private ChatWorkload() {
+    }
+
+    /**
+     * Creates users with zero-padded IDs and names, e.g. {@code user-0007}.
+     * @param count The number of users.
+     * @return The users, in ID order.
+     */
+    public static List<User> createUsers(int count) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User user = new User();
+            user.id = String.format(Locale.US, "user-%04d", i);
+            user.name = String.format(Locale.US, "User %04d", i);
+            user.email = user.id + "@example.com";
+            users.add(user);
+        }
+        return users;
+    }
+
+    /**
+     * Creates messages between random pairs of users.
+     * @param users The participants; at least two.
+     * @param count The number of messages.
+     * @param seed  The random seed; equal seeds give equal workloads.
+     * @return The messages in send order.
+     */
+    public static List<OutgoingMessage> createMessages(List<User> users, int count, long seed) {
+        Random random = new Random(seed);
+        List<OutgoingMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            User sender = users.get(random.nextInt(users.size()));
+            User receiver = users.get(random.nextInt(users.size() - 1));
+            if (receiver == sender) {
+                receiver = users.get(users.size() - 1); // Never a conversation with oneself
+            }
+            long timestamp = START_TIMESTAMP + i * MESSAGE_INTERVAL_MS;
+            if (random.nextInt(100) < LATE_PERCENT) {
+                timestamp -= random.nextInt((int) MAX_LATENESS_MS);
+            }
+            messages.add(createMessage(String.format(Locale.US, "w%07d", i), sender, receiver, text(random), timestamp));
+        }
+        return messages;
+    }
+
+    /**
+     * Creates messages of one conversation, alternating between the two participants.
+     * @param first  One participant.
+     * @param second The other participant.
+     * @param count  The number of messages.
+     * @param seed   The random seed; equal seeds give equal workloads.
+     * @return The messages in send order.
+     */
+    public static List<OutgoingMessage> createConversation(User first, User second, int count, long seed) {
+        Random random = new Random(seed);
+        List<OutgoingMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            long timestamp = START_TIMESTAMP + i * MESSAGE_INTERVAL_MS;
+            if (random.nextInt(100) < LATE_PERCENT) {
+                timestamp -= random.nextInt((int) MAX_LATENESS_MS);
+            }
+            boolean fromFirst = random.nextBoolean();
+            messages.add(createMessage(String.format(Locale.US, "c%07d", i),
+                    fromFirst ? first : second, fromFirst ? second : first, text(random), timestamp));
+        }
+        return messages;
+    }
+
+    // Build an outgoing message with the summary fields of both participants
+    private static OutgoingMessage createMessage(String documentId, User sender, User receiver, String text, long timestamp) {
+        OutgoingMessage outgoingMessage = new OutgoingMessage();
+        outgoingMessage.message = new ChatMessage(documentId, sender.id, receiver.id, text, timestamp, sender.id);
+        outgoingMessage.senderName = sender.name;
+        outgoingMessage.senderImageHash = sender.imageHash;
+        outgoingMessage.receiverName = receiver.name;
+        outgoingMessage.receiverImageHash = receiver.imageHash;
+        return outgoingMessage;
+    }
+
+    // A message of 1 to 20 random words
+    private static String text(Random random) {
+        int words = 1 + random.nextInt(20);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+}
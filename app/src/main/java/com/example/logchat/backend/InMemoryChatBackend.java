@@ -0,0 +1,430 @@
+package com.example.logchat.backend;
+
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+import com.example.logchat.utilities.ConversationUtils;
+import com.example.logchat.utilities.SortedMessageBuffer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * {@link ChatBackend} that keeps all data in memory, for tests and for profiling the client
+ * on a plain JVM without a live backend.
+ *
+ * Messages are kept per conversation in a {@link SortedMessageBuffer}, so appending a live
+ * message is O(1), out-of-order writes cost a binary search, and page and range reads are
+ * binary searches over the sorted list. The directory is a sorted list paged by binary
+ * search as well. Like Firestore, every batch is stamped with a server time that never goes
+ * backwards, and observations filter on it; opening one scans the conversation once. Every
+ * read maps the stored message into a fresh instance seen from the reading user, so mapping
+ * costs show up in profiles.
+ *
+ * All methods are thread-safe. Callbacks and observers run on the executor passed to the
+ * constructor, outside the internal lock; the default runs them on the calling thread.
+ */
+public class InMemoryChatBackend implements ChatBackend {
+
+    // Directory order, by name and then by ID like the Firestore query
+    private static final Comparator<User> USER_ORDER = (obj1, obj2) -> {
+        int result = compareNullable(obj1.name, obj2.name);
+        return result != 0 ? result : compareNullable(obj1.id, obj2.id);
+    };
+
+    // Recent conversations, newest first
+    private static final Comparator<Conversation> CONVERSATION_ORDER = (obj1, obj2) -> {
+        int result = Long.compare(obj2.timestamp, obj1.timestamp);
+        return result != 0 ? result : obj1.conversationId.compareTo(obj2.conversationId);
+    };
+
+    private final Executor callbackExecutor;
+    private final Object lock = new Object();
+    private final AtomicLong nextMessageId = new AtomicLong();
+    private final List<User> users = new ArrayList<>(); // Sorted by USER_ORDER
+    private final Map<String, String> tokens = new HashMap<>();
+    private final Map<String, SortedMessageBuffer> messages = new HashMap<>(); // Per conversation ID
+    private final Map<String, OutgoingMessage> summaries = new HashMap<>(); // Last written message per conversation ID
+    private final List<MessageObservation> messageObservations = new ArrayList<>();
+    private final List<ConversationObservation> conversationObservations = new ArrayList<>();
+    private long serverClock; // Server time of the last written batch
+
+    /**
+     * Creates a backend that calls callbacks and observers on the calling thread.
+     */
+    public InMemoryChatBackend() {
+        this(Runnable::run);
+    }
+
+    /**
+     * Creates a backend that calls callbacks and observers on an executor, e.g. the main thread.
+     * @param callbackExecutor The executor of callbacks and observers.
+     */
+    public InMemoryChatBackend(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Adds users to the directory.
+     * @param newUsers The users; their ID and name must be set.
+     */
+    public void addUsers(Collection<User> newUsers) {
+        synchronized (lock) {
+            users.addAll(newUsers);
+            Collections.sort(users, USER_ORDER);
+        }
+    }
+
+    /**
+     * Writes a workload of messages in batches, as the outbox would.
+     * @param workload  The messages in send order.
+     * @param batchSize The number of messages per batch.
+     */
+    public void replay(List<OutgoingMessage> workload, int batchSize) {
+        for (int start = 0; start < workload.size(); start += batchSize) {
+            List<Runnable> notifications = new ArrayList<>();
+            synchronized (lock) {
+                write(workload.subList(start, Math.min(start + batchSize, workload.size())), notifications);
+            }
+            dispatch(notifications);
+        }
+    }
+
+    /**
+     * Returns the stored push token of a user.
+     * @param userId The ID of the user.
+     * @return The token, or {@code null} if none is stored.
+     */
+    public String getToken(String userId) {
+        synchronized (lock) {
+            return tokens.get(userId);
+        }
+    }
+
+    /**
+     * Returns the number of stored messages.
+     * @return The message count over all conversations.
+     */
+    public int getMessageCount() {
+        synchronized (lock) {
+            int count = 0;
+            for (SortedMessageBuffer buffer : messages.values()) {
+                count += buffer.size();
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public void getUsers(User after, int limit, Callback<List<User>> callback) {
+        List<User> page;
+        synchronized (lock) {
+            int start = 0;
+            if (after != null) {
+                int low = 0;
+                int high = users.size();
+                while (low < high) { // First user ordered after the cursor
+                    int middle = (low + high) >>> 1;
+                    if (USER_ORDER.compare(users.get(middle), after) <= 0) {
+                        low = middle + 1;
+                    } else {
+                        high = middle;
+                    }
+                }
+                start = low;
+            }
+            page = new ArrayList<>(users.subList(start, Math.min(start + limit, users.size())));
+        }
+        callbackExecutor.execute(() -> callback.onSuccess(page));
+    }
+
+    @Override
+    public void updateToken(String userId, String token, Callback<Void> callback) {
+        synchronized (lock) {
+            tokens.put(userId, token);
+        }
+        callbackExecutor.execute(() -> callback.onSuccess(null));
+    }
+
+    @Override
+    public void deleteToken(String userId, Callback<Void> callback) {
+        synchronized (lock) {
+            tokens.remove(userId);
+        }
+        callbackExecutor.execute(() -> callback.onSuccess(null));
+    }
+
+    @Override
+    public String newMessageId() {
+        return "m" + nextMessageId.incrementAndGet();
+    }
+
+    @Override
+    public void sendMessages(List<OutgoingMessage> outgoingMessages, Callback<Void> callback) {
+        List<Runnable> notifications = new ArrayList<>();
+        synchronized (lock) {
+            write(outgoingMessages, notifications);
+        }
+        dispatch(notifications);
+        callbackExecutor.execute(() -> callback.onSuccess(null));
+    }
+
+    @Override
+    public void getMessagesBefore(String userId, String otherUserId, long beforeTimestamp, int limit,
+                                  Callback<List<ChatMessage>> callback) {
+        List<ChatMessage> page = new ArrayList<>();
+        synchronized (lock) {
+            SortedMessageBuffer buffer = messages.get(ConversationUtils.getConversationId(userId, otherUserId));
+            if (buffer != null) {
+                List<ChatMessage> stored = buffer.getMessages();
+                int end = beforeTimestamp > 0 ? firstAfter(stored, beforeTimestamp - 1) : stored.size();
+                for (int i = Math.max(0, end - limit); i < end; i++) {
+                    page.add(view(stored.get(i), userId));
+                }
+            }
+        }
+        callbackExecutor.execute(() -> callback.onSuccess(page));
+    }
+
+    @Override
+    public Subscription observeMessages(String userId, String otherUserId, long afterServerTimestamp, MessageObserver observer) {
+        MessageObservation observation = new MessageObservation(
+                ConversationUtils.getConversationId(userId, otherUserId), userId, afterServerTimestamp, observer);
+        List<ChatMessage> initial = new ArrayList<>();
+        synchronized (lock) {
+            SortedMessageBuffer buffer = messages.get(observation.conversationId);
+            if (buffer != null) {
+                for (ChatMessage stored : buffer.getMessages()) { // Server time does not follow the send order
+                    if (stored.serverTimestamp > afterServerTimestamp) {
+                        initial.add(view(stored, userId));
+                    }
+                }
+            }
+            messageObservations.add(observation);
+        }
+        if (!initial.isEmpty()) {
+            callbackExecutor.execute(() -> observation.deliver(initial, Collections.emptyList()));
+        }
+        return () -> {
+            synchronized (lock) {
+                observation.removed = true;
+                messageObservations.remove(observation);
+            }
+        };
+    }
+
+    @Override
+    public Subscription observeConversations(String userId, int limit, ConversationObserver observer) {
+        ConversationObservation observation = new ConversationObservation(userId, limit, observer);
+        List<Conversation> initial;
+        synchronized (lock) {
+            for (OutgoingMessage summary : summaries.values()) {
+                Conversation conversation = toConversation(summary, userId);
+                if (conversation != null) {
+                    observation.place(conversation);
+                }
+            }
+            initial = new ArrayList<>(observation.ordered);
+            conversationObservations.add(observation);
+        }
+        callbackExecutor.execute(() -> observation.deliver(initial, Collections.emptyList()));
+        return () -> {
+            synchronized (lock) {
+                observation.removed = true;
+                conversationObservations.remove(observation);
+            }
+        };
+    }
+
+    // Store a batch of messages and summaries and queue the resulting notifications; holds the lock
+    private void write(List<OutgoingMessage> batch, List<Runnable> notifications) {
+        Map<MessageObservation, List<ChatMessage>> added = new HashMap<>();
+        Map<MessageObservation, List<ChatMessage>> modified = new HashMap<>();
+        Map<String, OutgoingMessage> latestPerConversation = new HashMap<>();
+        long serverTimestamp = Math.max(serverClock + 1, System.currentTimeMillis()); // One commit time per batch
+        serverClock = serverTimestamp;
+        for (OutgoingMessage outgoingMessage : batch) {
+            ChatMessage chatMessage = outgoingMessage.message;
+            String conversationId = ConversationUtils.getConversationId(chatMessage.senderId, chatMessage.receiverId);
+            SortedMessageBuffer buffer = messages.get(conversationId);
+            if (buffer == null) {
+                buffer = new SortedMessageBuffer();
+                messages.put(conversationId, buffer);
+            }
+            // Stored as confirmed by the server; "sent" is decided per reader.
+            ChatMessage stored = new ChatMessage(chatMessage.documentId, chatMessage.senderId, chatMessage.receiverId,
+                    chatMessage.message, chatMessage.timestamp, serverTimestamp, null, false);
+            boolean existed = buffer.insert(stored) < 0;
+            if (existed) {
+                buffer.update(stored); // Overwritten, like a retried Firestore write
+            }
+            for (MessageObservation observation : messageObservations) {
+                if (observation.conversationId.equals(conversationId) && stored.serverTimestamp > observation.afterServerTimestamp) {
+                    Map<MessageObservation, List<ChatMessage>> target = existed ? modified : added;
+                    List<ChatMessage> list = target.get(observation);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        target.put(observation, list);
+                    }
+                    list.add(view(stored, observation.userId));
+                }
+            }
+            if (!outgoingMessage.keepSummary) {
+                latestPerConversation.put(conversationId, outgoingMessage);
+            }
+        }
+        for (MessageObservation observation : messageObservations) {
+            List<ChatMessage> addedMessages = added.get(observation);
+            List<ChatMessage> modifiedMessages = modified.get(observation);
+            if (addedMessages != null || modifiedMessages != null) {
+                notifications.add(() -> observation.deliver(
+                        addedMessages != null ? addedMessages : Collections.emptyList(),
+                        modifiedMessages != null ? modifiedMessages : Collections.emptyList()));
+            }
+        }
+        summaries.putAll(latestPerConversation);
+        for (ConversationObservation observation : conversationObservations) {
+            List<Conversation> changed = new ArrayList<>();
+            List<String> removedIds = new ArrayList<>();
+            for (OutgoingMessage summary : latestPerConversation.values()) {
+                Conversation conversation = toConversation(summary, observation.userId);
+                if (conversation != null) {
+                    observation.apply(conversation, changed, removedIds);
+                }
+            }
+            if (!changed.isEmpty() || !removedIds.isEmpty()) {
+                notifications.add(() -> observation.deliver(changed, removedIds));
+            }
+        }
+    }
+
+    // Run queued notifications on the callback executor
+    private void dispatch(List<Runnable> notifications) {
+        for (Runnable notification : notifications) {
+            callbackExecutor.execute(notification);
+        }
+    }
+
+    // Map a stored message into a fresh instance seen from a user
+    private static ChatMessage view(ChatMessage stored, String userId) {
+        return new ChatMessage(stored.documentId, stored.senderId, stored.receiverId, stored.message,
+                stored.timestamp, stored.serverTimestamp, userId, false);
+    }
+
+    // Map the last message of a conversation into its summary seen from a user, or null if the user does not take part
+    private static Conversation toConversation(OutgoingMessage summary, String userId) {
+        ChatMessage chatMessage = summary.message;
+        boolean sentByMe = userId.equals(chatMessage.senderId);
+        if (!sentByMe && !userId.equals(chatMessage.receiverId)) {
+            return null;
+        }
+        Conversation conversation = new Conversation();
+        conversation.conversationId = ConversationUtils.getConversationId(chatMessage.senderId, chatMessage.receiverId);
+        conversation.userId = sentByMe ? chatMessage.receiverId : chatMessage.senderId;
+        conversation.name = sentByMe ? summary.receiverName : summary.senderName;
+        conversation.imageHash = sentByMe ? summary.receiverImageHash : summary.senderImageHash;
+        conversation.lastMessage = chatMessage.message;
+        conversation.timestamp = chatMessage.timestamp;
+        return conversation;
+    }
+
+    // First position whose message is newer than the timestamp
+    private static int firstAfter(List<ChatMessage> stored, long timestamp) {
+        int low = 0;
+        int high = stored.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (stored.get(middle).timestamp <= timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Compare two strings, ordering null first
+    private static int compareNullable(String first, String second) {
+        if (first == null || second == null) {
+            return first == null ? (second == null ? 0 : -1) : 1;
+        }
+        return first.compareTo(second);
+    }
+
+    // One observer of the messages of a conversation
+    private static final class MessageObservation {
+        final String conversationId;
+        final String userId;
+        final long afterServerTimestamp;
+        final MessageObserver observer;
+        volatile boolean removed;
+
+        MessageObservation(String conversationId, String userId, long afterServerTimestamp, MessageObserver observer) {
+            this.conversationId = conversationId;
+            this.userId = userId;
+            this.afterServerTimestamp = afterServerTimestamp;
+            this.observer = observer;
+        }
+
+        void deliver(List<ChatMessage> added, List<ChatMessage> modified) {
+            if (!removed) {
+                observer.onMessagesChanged(added, modified, Collections.emptyList());
+            }
+        }
+    }
+
+    // One observer of the recent conversations of a user, with the conversations it currently holds
+    private static final class ConversationObservation {
+        final String userId;
+        final int limit;
+        final ConversationObserver observer;
+        final TreeSet<Conversation> ordered = new TreeSet<>(CONVERSATION_ORDER);
+        final Map<String, Conversation> byId = new HashMap<>();
+        volatile boolean removed;
+
+        ConversationObservation(String userId, int limit, ConversationObserver observer) {
+            this.userId = userId;
+            this.limit = limit;
+            this.observer = observer;
+        }
+
+        // Place a conversation in order; returns the conversation that fell out of the limit, if any
+        Conversation place(Conversation conversation) {
+            Conversation previous = byId.put(conversation.conversationId, conversation);
+            if (previous != null) {
+                ordered.remove(previous);
+            }
+            ordered.add(conversation);
+            if (ordered.size() <= limit) {
+                return null;
+            }
+            Conversation evicted = ordered.pollLast();
+            byId.remove(evicted.conversationId);
+            return evicted;
+        }
+
+        // Place a changed conversation and record the changes to deliver
+        void apply(Conversation conversation, List<Conversation> changed, List<String> removedIds) {
+            Conversation evicted = place(conversation);
+            changed.add(conversation);
+            if (evicted != null && !changed.remove(evicted)) {
+                removedIds.add(evicted.conversationId); // Delivered before, now out of range
+            }
+        }
+
+        void deliver(List<Conversation> changed, List<String> removedIds) {
+            if (!removed) {
+                observer.onConversationsChanged(changed, removedIds);
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.logchat.backend;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.Lifecycle;
+import androidx.lifecycle.LifecycleEventObserver;
+import androidx.lifecycle.LifecycleOwner;
+
+import java.util.function.Supplier;
+
+/**
+ * Runs a {@link ChatBackend} observation only while a screen is started.
+ *
+ * The observation is opened on {@code ON_START}, removed on {@code ON_STOP} and not opened
+ * again after {@code ON_DESTROY}. With the Firestore backend, stopping only detaches the
+ * screen from a shared listener, which is kept alive for a short grace period, so coming
+ * back quickly to the same query replays the last snapshot instead of reading the result set
+ * again. The query is built anew on every start, so it can follow state such as a sync cursor.
+ */
+public final class ScopedSubscription implements LifecycleEventObserver, ChatBackend.Subscription {
+    private final LifecycleOwner owner;
+    private final Supplier<ChatBackend.Subscription> subscribe;
+    private ChatBackend.Subscription current; // Open observation while the owner is started
+    private boolean removed; // Whether the subscription ended
+
+    /**
+     * Binds an observation to the lifecycle of a screen. If the screen is already started,
+     * the observation is opened right away.
+     * @param owner     The screen whose lifecycle scopes the observation.
+     * @param subscribe Opens the observation; called on every start.
+     * @return The subscription, which can be removed before the owner is destroyed.
+     */
+    public static ScopedSubscription bind(LifecycleOwner owner, Supplier<ChatBackend.Subscription> subscribe) {
+        ScopedSubscription subscription = new ScopedSubscription(owner, subscribe);
+        owner.getLifecycle().addObserver(subscription);
+        return subscription;
+    }
+
+    private ScopedSubscription(LifecycleOwner owner, Supplier<ChatBackend.Subscription> subscribe) {
+        this.owner = owner;
+        this.subscribe = subscribe;
+    }
+
+    @Override
+    public void onStateChanged(@NonNull LifecycleOwner source, @NonNull Lifecycle.Event event) {
+        if (event == Lifecycle.Event.ON_START && current == null && !removed) {
+            current = subscribe.get();
+        } else if (event == Lifecycle.Event.ON_STOP) {
+            close();
+        } else if (event == Lifecycle.Event.ON_DESTROY) {
+            remove();
+        }
+    }
+
+    /**
+     * Closes the observation and ends the subscription.
+     */
+    @Override
+    public void remove() {
+        if (removed) {
+            return;
+        }
+        removed = true;
+        owner.getLifecycle().removeObserver(this);
+        close();
+    }
+
+    // Close the open observation, if any
+    private void close() {
+        if (current != null) {
+            current.remove();
+            current = null;
+        }
+    }
+}
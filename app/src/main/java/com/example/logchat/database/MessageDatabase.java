@@ -0,0 +1,482 @@
+package com.example.logchat.database;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.models.OutgoingMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * On-device SQLite store for chat messages.
+ * Messages are kept per conversation so a chat can be rendered from disk before
+ * any network round trip, and a per-conversation sync cursor records the newest
+ * server timestamp already persisted.
+ *
+ * Outgoing messages are appended to an outbox table in the same transaction that stores
+ * them as pending messages, so a sent message survives process death until it reaches
+ * Firestore.
+ *
+ * The recent-conversation summaries are mirrored locally as well, so the home screen and
+ * incoming push messages can update them without a Firestore query.
+ *
+ * All methods perform disk I/O and must be called off the main thread, preferably on
+ * {@link #getDiskExecutor()}.
+ */
+public class MessageDatabase extends SQLiteOpenHelper {
+    private static final String DATABASE_NAME = "chatMessages.db";
+    private static final int DATABASE_VERSION = 4;
+
+    private static final String TABLE_MESSAGES = "messages";
+    private static final String TABLE_SYNC_STATE = "sync_state";
+    private static final String TABLE_OUTBOX = "outbox";
+    private static final String TABLE_CONVERSATIONS = "conversations";
+
+    private static final String COLUMN_DOCUMENT_ID = "document_id";
+    private static final String COLUMN_CONVERSATION_ID = "conversation_id";
+    private static final String COLUMN_SENDER_ID = "sender_id";
+    private static final String COLUMN_RECEIVER_ID = "receiver_id";
+    private static final String COLUMN_MESSAGE = "message";
+    private static final String COLUMN_TIMESTAMP = "timestamp";
+    private static final String COLUMN_CURSOR = "cursor";
+    private static final String COLUMN_PENDING = "pending";
+    private static final String COLUMN_SEQUENCE = "sequence";
+    private static final String COLUMN_SENDER_NAME = "sender_name";
+    private static final String COLUMN_SENDER_IMAGE_HASH = "sender_image_hash";
+    private static final String COLUMN_RECEIVER_NAME = "receiver_name";
+    private static final String COLUMN_RECEIVER_IMAGE_HASH = "receiver_image_hash";
+    private static final String COLUMN_USER_ID = "user_id";
+    private static final String COLUMN_NAME = "name";
+    private static final String COLUMN_IMAGE_HASH = "image_hash";
+    private static final String COLUMN_LAST_MESSAGE = "last_message";
+
+    // A single worker keeps all reads and writes of the store ordered.
+    private static final ExecutorService diskExecutor = Executors.newSingleThreadExecutor();
+
+    private static volatile MessageDatabase instance;
+
+    /**
+     * Returns the process-wide database instance, creating it on first use.
+     * @param context Any context; the application context is retained.
+     * @return The shared {@link MessageDatabase}.
+     */
+    public static MessageDatabase getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MessageDatabase.class) {
+                if (instance == null) {
+                    instance = new MessageDatabase(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Returns the worker on which database calls are made, so that writes from the sync
+     * engine and the outbox are applied in the order they were issued.
+     * @return The shared single-thread disk executor.
+     */
+    public static Executor getDiskExecutor() {
+        return diskExecutor;
+    }
+
+    private MessageDatabase(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_MESSAGES + " ("
+                + COLUMN_DOCUMENT_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_CONVERSATION_ID + " TEXT NOT NULL, "
+                + COLUMN_SENDER_ID + " TEXT, "
+                + COLUMN_RECEIVER_ID + " TEXT, "
+                + COLUMN_MESSAGE + " TEXT, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL, "
+                + COLUMN_PENDING + " INTEGER NOT NULL DEFAULT 0)");
+        // Chat screens always read one conversation in timestamp order.
+        db.execSQL("CREATE INDEX index_messages_conversation_timestamp ON " + TABLE_MESSAGES
+                + " (" + COLUMN_CONVERSATION_ID + ", " + COLUMN_TIMESTAMP + ")");
+        db.execSQL("CREATE TABLE " + TABLE_SYNC_STATE + " ("
+                + COLUMN_CONVERSATION_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_CURSOR + " INTEGER NOT NULL)");
+        // Append-only log of outgoing messages, drained in sequence order.
+        db.execSQL("CREATE TABLE " + TABLE_OUTBOX + " ("
+                + COLUMN_SEQUENCE + " INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + COLUMN_DOCUMENT_ID + " TEXT NOT NULL, "
+                + COLUMN_SENDER_ID + " TEXT NOT NULL, "
+                + COLUMN_SENDER_NAME + " TEXT, "
+                + COLUMN_SENDER_IMAGE_HASH + " TEXT, "
+                + COLUMN_RECEIVER_ID + " TEXT NOT NULL, "
+                + COLUMN_RECEIVER_NAME + " TEXT, "
+                + COLUMN_RECEIVER_IMAGE_HASH + " TEXT, "
+                + COLUMN_MESSAGE + " TEXT, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL)");
+        createConversationsTable(db);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        if (oldVersion < 2) {
+            // Messages and cursors are a cache of Firestore data, so they can simply be rebuilt.
+            // Version 1 had no outbox, so no unsent messages are lost.
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_MESSAGES);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNC_STATE);
+            db.execSQL("DROP TABLE IF EXISTS " + TABLE_OUTBOX);
+            onCreate(db);
+            return;
+        }
+        if (oldVersion < 3) {
+            createConversationsTable(db); // Keeps the outbox of version 2
+        }
+        if (oldVersion < 4) {
+            // Cursors up to version 3 were send times, which a late or skewed message can fall behind.
+            // Without one, each conversation resyncs from its newest page.
+            db.execSQL("DELETE FROM " + TABLE_SYNC_STATE);
+        }
+    }
+
+    // Local copy of the recent-conversation summaries, newest first
+    private static void createConversationsTable(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_CONVERSATIONS + " ("
+                + COLUMN_CONVERSATION_ID + " TEXT PRIMARY KEY, "
+                + COLUMN_USER_ID + " TEXT NOT NULL, "
+                + COLUMN_NAME + " TEXT, "
+                + COLUMN_IMAGE_HASH + " TEXT, "
+                + COLUMN_LAST_MESSAGE + " TEXT, "
+                + COLUMN_TIMESTAMP + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX index_conversations_timestamp ON " + TABLE_CONVERSATIONS
+                + " (" + COLUMN_TIMESTAMP + ")");
+    }
+
+    /**
+     * Reads the newest stored messages of a conversation.
+     * @param conversationId The conversation to read.
+     * @param currentUserId  The ID of the signed-in user, used to mark sent messages.
+     * @param limit          The maximum number of messages to return.
+     * @return Up to {@code limit} messages, oldest first.
+     */
+    public List<ChatMessage> getLatestMessages(String conversationId, String currentUserId, int limit) {
+        return queryPage(COLUMN_CONVERSATION_ID + " = ?", new String[]{conversationId}, currentUserId, limit);
+    }
+
+    /**
+     * Reads the stored messages of a conversation that precede a timestamp.
+     * @param conversationId  The conversation to read.
+     * @param beforeTimestamp Only messages strictly older than this epoch-millisecond value are returned.
+     * @param currentUserId   The ID of the signed-in user, used to mark sent messages.
+     * @param limit           The maximum number of messages to return.
+     * @return Up to {@code limit} messages directly preceding the timestamp, oldest first.
+     */
+    public List<ChatMessage> getMessagesBefore(String conversationId, long beforeTimestamp, String currentUserId, int limit) {
+        return queryPage(
+                COLUMN_CONVERSATION_ID + " = ? AND " + COLUMN_TIMESTAMP + " < ?",
+                new String[]{conversationId, String.valueOf(beforeTimestamp)},
+                currentUserId,
+                limit
+        );
+    }
+
+    // Read the newest rows matching the selection and return them in ascending order
+    private List<ChatMessage> queryPage(String selection, String[] selectionArgs, String currentUserId, int limit) {
+        List<ChatMessage> messages = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(
+                TABLE_MESSAGES,
+                new String[]{COLUMN_DOCUMENT_ID, COLUMN_SENDER_ID, COLUMN_RECEIVER_ID, COLUMN_MESSAGE, COLUMN_TIMESTAMP, COLUMN_PENDING},
+                selection,
+                selectionArgs,
+                null, null,
+                COLUMN_TIMESTAMP + " DESC",
+                String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                messages.add(new ChatMessage(
+                        cursor.getString(0),
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(3),
+                        cursor.getLong(4),
+                        currentUserId,
+                        cursor.getInt(5) != 0
+                ));
+            }
+        }
+        Collections.reverse(messages);
+        return messages;
+    }
+
+    /**
+     * Stores messages of a conversation, replacing rows with the same document ID.
+     * @param conversationId The conversation the messages belong to.
+     * @param messages       The messages to store.
+     */
+    public void insertMessages(String conversationId, List<ChatMessage> messages) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction(); // One transaction per batch instead of one per row.
+        try {
+            ContentValues values = new ContentValues();
+            for (ChatMessage chatMessage : messages) {
+                values.clear();
+                values.put(COLUMN_DOCUMENT_ID, chatMessage.documentId);
+                values.put(COLUMN_CONVERSATION_ID, conversationId);
+                values.put(COLUMN_SENDER_ID, chatMessage.senderId);
+                values.put(COLUMN_RECEIVER_ID, chatMessage.receiverId);
+                values.put(COLUMN_MESSAGE, chatMessage.message);
+                values.put(COLUMN_TIMESTAMP, chatMessage.timestamp);
+                values.put(COLUMN_PENDING, chatMessage.pending ? 1 : 0);
+                db.insertWithOnConflict(TABLE_MESSAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes stored messages by document ID.
+     * @param messages The messages to delete.
+     */
+    public void deleteMessages(List<ChatMessage> messages) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (ChatMessage chatMessage : messages) {
+                db.delete(TABLE_MESSAGES, COLUMN_DOCUMENT_ID + " = ?", new String[]{chatMessage.documentId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Returns the newest server timestamp already persisted for a conversation.
+     * @param conversationId The conversation to look up.
+     * @return The cursor in epoch milliseconds, or {@code 0} if the conversation was never synced.
+     */
+    public long getSyncCursor(String conversationId) {
+        try (Cursor cursor = getReadableDatabase().query(
+                TABLE_SYNC_STATE,
+                new String[]{COLUMN_CURSOR},
+                COLUMN_CONVERSATION_ID + " = ?",
+                new String[]{conversationId},
+                null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : 0L;
+        }
+    }
+
+    /**
+     * Advances the sync cursor of a conversation. The cursor never moves backwards.
+     * @param conversationId The conversation to update.
+     * @param timestamp      The newest persisted server timestamp in epoch milliseconds.
+     */
+    public void updateSyncCursor(String conversationId, long timestamp) {
+        if (timestamp <= getSyncCursor(conversationId)) {
+            return;
+        }
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_CONVERSATION_ID, conversationId);
+        values.put(COLUMN_CURSOR, timestamp);
+        getWritableDatabase().insertWithOnConflict(TABLE_SYNC_STATE, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    /**
+     * Appends a message to the outbox and stores it as a pending message of its conversation.
+     * @param conversationId  The conversation the message belongs to.
+     * @param outgoingMessage The message to send.
+     */
+    public void enqueueOutgoing(String conversationId, OutgoingMessage outgoingMessage) {
+        ChatMessage chatMessage = outgoingMessage.message;
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction(); // The message is either both shown and queued, or neither.
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_DOCUMENT_ID, chatMessage.documentId);
+            values.put(COLUMN_CONVERSATION_ID, conversationId);
+            values.put(COLUMN_SENDER_ID, chatMessage.senderId);
+            values.put(COLUMN_RECEIVER_ID, chatMessage.receiverId);
+            values.put(COLUMN_MESSAGE, chatMessage.message);
+            values.put(COLUMN_TIMESTAMP, chatMessage.timestamp);
+            values.put(COLUMN_PENDING, 1);
+            db.insertWithOnConflict(TABLE_MESSAGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+
+            values.clear();
+            values.put(COLUMN_DOCUMENT_ID, chatMessage.documentId);
+            values.put(COLUMN_SENDER_ID, chatMessage.senderId);
+            values.put(COLUMN_SENDER_NAME, outgoingMessage.senderName);
+            values.put(COLUMN_SENDER_IMAGE_HASH, outgoingMessage.senderImageHash);
+            values.put(COLUMN_RECEIVER_ID, chatMessage.receiverId);
+            values.put(COLUMN_RECEIVER_NAME, outgoingMessage.receiverName);
+            values.put(COLUMN_RECEIVER_IMAGE_HASH, outgoingMessage.receiverImageHash);
+            values.put(COLUMN_MESSAGE, chatMessage.message);
+            values.put(COLUMN_TIMESTAMP, chatMessage.timestamp);
+            outgoingMessage.sequence = db.insertOrThrow(TABLE_OUTBOX, null, values);
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Reads the oldest entries of the outbox.
+     * @param limit The maximum number of entries to return.
+     * @return Up to {@code limit} entries in the order they were sent.
+     */
+    public List<OutgoingMessage> getOutbox(int limit) {
+        List<OutgoingMessage> outgoingMessages = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(
+                TABLE_OUTBOX,
+                new String[]{COLUMN_SEQUENCE, COLUMN_DOCUMENT_ID, COLUMN_SENDER_ID, COLUMN_SENDER_NAME,
+                        COLUMN_SENDER_IMAGE_HASH, COLUMN_RECEIVER_ID, COLUMN_RECEIVER_NAME,
+                        COLUMN_RECEIVER_IMAGE_HASH, COLUMN_MESSAGE, COLUMN_TIMESTAMP},
+                null, null, null, null,
+                COLUMN_SEQUENCE + " ASC",
+                String.valueOf(limit))) {
+            while (cursor.moveToNext()) {
+                OutgoingMessage outgoingMessage = new OutgoingMessage();
+                outgoingMessage.sequence = cursor.getLong(0);
+                outgoingMessage.senderName = cursor.getString(3);
+                outgoingMessage.senderImageHash = cursor.getString(4);
+                outgoingMessage.receiverName = cursor.getString(6);
+                outgoingMessage.receiverImageHash = cursor.getString(7);
+                outgoingMessage.message = new ChatMessage(
+                        cursor.getString(1),
+                        cursor.getString(2),
+                        cursor.getString(5),
+                        cursor.getString(8),
+                        cursor.getLong(9),
+                        cursor.getString(2), // Outbox entries are always sent by the signed-in user
+                        true
+                );
+                outgoingMessages.add(outgoingMessage);
+            }
+        }
+        return outgoingMessages;
+    }
+
+    /**
+     * Removes entries from the outbox once Firestore has accepted them and clears the
+     * pending flag of the stored messages.
+     * @param outgoingMessages The entries that were committed.
+     */
+    public void markSent(List<OutgoingMessage> outgoingMessages) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            values.put(COLUMN_PENDING, 0);
+            for (OutgoingMessage outgoingMessage : outgoingMessages) {
+                db.delete(TABLE_OUTBOX, COLUMN_SEQUENCE + " = ?",
+                        new String[]{String.valueOf(outgoingMessage.sequence)});
+                db.update(TABLE_MESSAGES, values, COLUMN_DOCUMENT_ID + " = ?",
+                        new String[]{outgoingMessage.message.documentId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Stores conversation summaries, keeping a stored summary that is newer than the given one.
+     * @param conversations The summaries, seen from the signed-in user.
+     */
+    public void upsertConversations(List<Conversation> conversations) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            ContentValues values = new ContentValues();
+            for (Conversation conversation : conversations) {
+                if (getConversationTimestamp(db, conversation.conversationId) > conversation.timestamp) {
+                    continue; // A push or snapshot delivered out of order
+                }
+                values.clear();
+                values.put(COLUMN_CONVERSATION_ID, conversation.conversationId);
+                values.put(COLUMN_USER_ID, conversation.userId);
+                values.put(COLUMN_NAME, conversation.name);
+                values.put(COLUMN_IMAGE_HASH, conversation.imageHash);
+                values.put(COLUMN_LAST_MESSAGE, conversation.lastMessage);
+                values.put(COLUMN_TIMESTAMP, conversation.timestamp);
+                db.insertWithOnConflict(TABLE_CONVERSATIONS, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Deletes stored conversation summaries.
+     * @param conversationIds The IDs of the conversations to delete.
+     */
+    public void deleteConversations(List<String> conversationIds) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String conversationId : conversationIds) {
+                db.delete(TABLE_CONVERSATIONS, COLUMN_CONVERSATION_ID + " = ?", new String[]{conversationId});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Reads the most recent stored conversation summaries.
+     * @param limit The maximum number of summaries.
+     * @return The summaries, newest first.
+     */
+    public List<Conversation> getConversations(int limit) {
+        List<Conversation> conversations = new ArrayList<>();
+        try (Cursor cursor = getReadableDatabase().query(TABLE_CONVERSATIONS, null, null, null, null, null,
+                COLUMN_TIMESTAMP + " DESC", String.valueOf(limit))) {
+            int conversationIdIndex = cursor.getColumnIndexOrThrow(COLUMN_CONVERSATION_ID);
+            int userIdIndex = cursor.getColumnIndexOrThrow(COLUMN_USER_ID);
+            int nameIndex = cursor.getColumnIndexOrThrow(COLUMN_NAME);
+            int imageHashIndex = cursor.getColumnIndexOrThrow(COLUMN_IMAGE_HASH);
+            int lastMessageIndex = cursor.getColumnIndexOrThrow(COLUMN_LAST_MESSAGE);
+            int timestampIndex = cursor.getColumnIndexOrThrow(COLUMN_TIMESTAMP);
+            while (cursor.moveToNext()) {
+                Conversation conversation = new Conversation();
+                conversation.conversationId = cursor.getString(conversationIdIndex);
+                conversation.userId = cursor.getString(userIdIndex);
+                conversation.name = cursor.getString(nameIndex);
+                conversation.imageHash = cursor.getString(imageHashIndex);
+                conversation.lastMessage = cursor.getString(lastMessageIndex);
+                conversation.timestamp = cursor.getLong(timestampIndex);
+                conversations.add(conversation);
+            }
+        }
+        return conversations;
+    }
+
+    // Timestamp of a stored summary, or -1 if there is none
+    private static long getConversationTimestamp(SQLiteDatabase db, String conversationId) {
+        try (Cursor cursor = db.query(TABLE_CONVERSATIONS, new String[]{COLUMN_TIMESTAMP},
+                COLUMN_CONVERSATION_ID + " = ?", new String[]{conversationId}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        }
+    }
+
+    /**
+     * Removes every stored message, cursor, conversation summary and unsent outbox entry,
+     * e.g. when the user signs out.
+     */
+    public void clear() {
+        SQLiteDatabase db = getWritableDatabase();
+        db.delete(TABLE_MESSAGES, null, null);
+        db.delete(TABLE_SYNC_STATE, null, null);
+        db.delete(TABLE_OUTBOX, null, null);
+        db.delete(TABLE_CONVERSATIONS, null, null);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.logchat.firebase;
+
+import com.example.logchat.models.Conversation;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ConversationUtils;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.Query;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+
+/**
+ * Reads and writes the denormalized conversation summaries shown on the home screen.
+ *
+ * Each pair of users has exactly one document in {@link Constants#KEY_COLLECTION_CONVERSATIONS},
+ * keyed by {@link ConversationUtils#getConversationId(String, String)} and overwritten in
+ * the same batch as every send, unless the outbox finds a newer message of the conversation
+ * stored locally. A {@link Constants#KEY_PARTICIPANTS} array holds both user
+ * IDs so a single query returns the conversations in which the user is either sender or
+ * receiver.
+ * The query orders by timestamp and therefore needs a composite index on
+ * (participants array-contains, timestamp descending).
+ */
+public class ConversationSummaries {
+
+    private ConversationSummaries() {
+    }
+
+    /**
+     * Builds the summary of a conversation after a message was sent.
+     * @param senderId          The ID of the sender.
+     * @param senderName        The name of the sender.
+     * @param senderImageHash   Content hash of the sender's profile image, may be {@code null}.
+     * @param receiverId        The ID of the receiver.
+     * @param receiverName      The name of the receiver.
+     * @param receiverImageHash Content hash of the receiver's profile image, may be {@code null}.
+     * @param message           The content of the message.
+     * @param timestamp         The time the message was sent.
+     * @return The fields of the summary document.
+     */
+    public static HashMap<String, Object> createSummary(String senderId, String senderName, String senderImageHash,
+                                                        String receiverId, String receiverName, String receiverImageHash,
+                                                        String message, Date timestamp) {
+        HashMap<String, Object> summary = new HashMap<>();
+        summary.put(Constants.KEY_PARTICIPANTS, Arrays.asList(senderId, receiverId));
+        summary.put(Constants.KEY_SENDER_ID, senderId);
+        summary.put(Constants.KEY_SENDER_NAME, senderName);
+        summary.put(Constants.KEY_SENDER_IMAGE_HASH, senderImageHash);
+        summary.put(Constants.KEY_RECEIVER_ID, receiverId);
+        summary.put(Constants.KEY_RECEIVER_NAME, receiverName);
+        summary.put(Constants.KEY_RECEIVER_IMAGE_HASH, receiverImageHash);
+        summary.put(Constants.KEY_LAST_MESSAGE, message);
+        summary.put(Constants.KEY_TIMESTAMP, timestamp);
+        return summary;
+    }
+
+    /**
+     * Returns the summary document of the conversation between two users.
+     * @param database     The Firestore instance.
+     * @param firstUserId  The ID of one participant.
+     * @param secondUserId The ID of the other participant.
+     * @return The reference of the summary document.
+     */
+    public static DocumentReference getSummary(FirebaseFirestore database, String firstUserId, String secondUserId) {
+        return database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .document(ConversationUtils.getConversationId(firstUserId, secondUserId));
+    }
+
+    /**
+     * Builds the query for the most recent conversations of a user, newest first.
+     * @param database The Firestore instance.
+     * @param userId   The ID of the signed-in user.
+     * @param limit    The maximum number of conversations.
+     * @return The query covering both the sender and the receiver role.
+     */
+    public static Query recent(FirebaseFirestore database, String userId, int limit) {
+        return database.collection(Constants.KEY_COLLECTION_CONVERSATIONS)
+                .whereArrayContains(Constants.KEY_PARTICIPANTS, userId)
+                .orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING)
+                .limit(limit);
+    }
+
+    /**
+     * Maps a summary document to a conversation seen from the signed-in user.
+     * @param document      The summary document.
+     * @param currentUserId The ID of the signed-in user.
+     * @return The conversation, or {@code null} if the document has no timestamp yet.
+     */
+    public static Conversation fromDocument(DocumentSnapshot document, String currentUserId) {
+        Date timestamp = document.getDate(Constants.KEY_TIMESTAMP);
+        if (timestamp == null) {
+            return null;
+        }
+        boolean sentByMe = currentUserId.equals(document.getString(Constants.KEY_SENDER_ID));
+        Conversation conversation = new Conversation();
+        conversation.conversationId = document.getId();
+        conversation.userId = document.getString(sentByMe ? Constants.KEY_RECEIVER_ID : Constants.KEY_SENDER_ID);
+        conversation.name = document.getString(sentByMe ? Constants.KEY_RECEIVER_NAME : Constants.KEY_SENDER_NAME);
+        conversation.imageHash = document.getString(sentByMe ? Constants.KEY_RECEIVER_IMAGE_HASH : Constants.KEY_SENDER_IMAGE_HASH);
+        conversation.lastMessage = document.getString(Constants.KEY_LAST_MESSAGE);
+        conversation.timestamp = timestamp.getTime();
+        return conversation;
+    }
+}
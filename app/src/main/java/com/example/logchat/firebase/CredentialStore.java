@@ -0,0 +1,200 @@
+package com.example.logchat.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
+import com.example.logchat.models.User;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.HashUtils;
+import com.example.logchat.utilities.PasswordHasher;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Email-keyed credential records used for sign-in.
+ *
+ * Every account has one document in {@link Constants#KEY_COLLECTION_CREDENTIALS} whose ID is
+ * derived from the normalized email, holding the user ID, the display name, the image hash
+ * and a salted PBKDF2 password hash. Signing in is a single document get followed by a local
+ * hash check, instead of a two-field query over the whole users collection.
+ *
+ * Accounts created before the credential records existed are found through the legacy
+ * email and password query once; their record is written on that sign-in and the plaintext
+ * password is removed from the user document.
+ */
+public class CredentialStore {
+    private static final String TAG = "CredentialStore";
+    private static final Timer SIGN_IN_TIMER = Metrics.getInstance().timer("firestore.signIn"); // Lookup and hash check
+
+    // Password hashing is slow by design and runs on its own worker.
+    private static final ExecutorService hashExecutor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Receives the result of a sign-in attempt on the main thread.
+     */
+    public interface SignInCallback {
+        /**
+         * @param user The signed-in user with ID, name, email and image hash set; the image is
+         *             also set for migrated legacy accounts. {@code null} if the credentials are wrong
+         *             or the lookup failed.
+         */
+        void onResult(User user);
+    }
+
+    /**
+     * Receives a credential record once its password hash is computed, on the main thread.
+     */
+    public interface RecordCallback {
+        /**
+         * @param record The fields of the credential record.
+         */
+        void onRecordCreated(HashMap<String, Object> record);
+    }
+
+    private CredentialStore() {
+    }
+
+    /**
+     * Returns the credential document of an email address.
+     * @param database The Firestore instance.
+     * @param email    The email address; case and surrounding whitespace are ignored.
+     * @return The reference of the credential record.
+     */
+    public static DocumentReference getRecord(FirebaseFirestore database, String email) {
+        String normalized = email.trim().toLowerCase(Locale.ROOT);
+        return database.collection(Constants.KEY_COLLECTION_CREDENTIALS)
+                .document(HashUtils.sha256Hex(normalized.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Builds a credential record, hashing the password in the background.
+     * @param userId    The ID of the user document.
+     * @param name      The display name.
+     * @param imageHash Content hash of the profile image, may be {@code null}.
+     * @param password  The password.
+     * @param callback  Receives the record on the main thread.
+     */
+    public static void createRecord(String userId, String name, String imageHash, String password,
+                                    RecordCallback callback) {
+        hashExecutor.execute(() -> {
+            HashMap<String, Object> record = buildRecord(userId, name, imageHash, password);
+            mainHandler.post(() -> callback.onRecordCreated(record));
+        });
+    }
+
+    /**
+     * Signs a user in with email and password.
+     * @param database The Firestore instance.
+     * @param email    The email address.
+     * @param password The password.
+     * @param callback Receives the result on the main thread.
+     */
+    public static void signIn(FirebaseFirestore database, String email, String password, SignInCallback callback) {
+        long start = Timer.start();
+        SignInCallback timedCallback = user -> {
+            SIGN_IN_TIMER.stop(start);
+            callback.onResult(user);
+        };
+        DocumentReference recordReference = getRecord(database, email);
+        recordReference.get().addOnCompleteListener(task -> {
+            if (!task.isSuccessful() || task.getResult() == null) {
+                Log.e(TAG, "Credential lookup failed", task.getException());
+                timedCallback.onResult(null);
+            } else if (task.getResult().exists()) {
+                verify(recordReference, task.getResult(), email, password, timedCallback);
+            } else {
+                signInLegacy(database, recordReference, email, password, timedCallback);
+            }
+        });
+    }
+
+    // Check the password against a credential record off the main thread
+    private static void verify(DocumentReference recordReference, DocumentSnapshot record,
+                               String email, String password, SignInCallback callback) {
+        String salt = record.getString(Constants.KEY_PASSWORD_SALT);
+        String hash = record.getString(Constants.KEY_PASSWORD_HASH);
+        Long iterations = record.getLong(Constants.KEY_PASSWORD_ITERATIONS);
+        User user = new User();
+        user.id = record.getString(Constants.KEY_USER_ID);
+        user.name = record.getString(Constants.KEY_NAME);
+        user.imageHash = record.getString(Constants.KEY_IMAGE_HASH);
+        user.email = email;
+        hashExecutor.execute(() -> {
+            boolean valid = iterations != null
+                    && PasswordHasher.verify(password, salt, iterations.intValue(), hash);
+            mainHandler.post(() -> callback.onResult(valid ? user : null));
+            if (valid && iterations < Constants.PASSWORD_HASH_ITERATIONS) {
+                // Raise the cost of records hashed with an older iteration count, after the user is signed in.
+                recordReference.set(buildRecord(user.id, user.name, user.imageHash, password), SetOptions.merge());
+            }
+        });
+    }
+
+    // Find an account that predates the credential records and migrate it
+    private static void signInLegacy(FirebaseFirestore database, DocumentReference recordReference,
+                                     String email, String password, SignInCallback callback) {
+        database.collection(Constants.KEY_COLLECTION_USERS)
+                .whereEqualTo(Constants.KEY_EMAIL, email)
+                .whereEqualTo(Constants.KEY_PASSWORD, password)
+                .get()
+                .addOnCompleteListener(task -> {
+                    if (!task.isSuccessful() || task.getResult() == null || task.getResult().isEmpty()) {
+                        callback.onResult(null);
+                        return;
+                    }
+                    DocumentSnapshot document = task.getResult().getDocuments().get(0);
+                    User user = new User();
+                    user.id = document.getId();
+                    user.name = getDisplayName(document);
+                    user.email = document.getString(Constants.KEY_EMAIL);
+                    user.image = document.getString(Constants.KEY_IMAGE);
+                    user.imageHash = HashUtils.imageHash(user.image);
+                    createRecord(user.id, user.name, user.imageHash, password, record -> {
+                        WriteBatch batch = database.batch();
+                        batch.set(recordReference, record);
+                        batch.update(document.getReference(), Constants.KEY_PASSWORD, FieldValue.delete());
+                        // Backfill the directory record of accounts created before the directory existed
+                        batch.set(UserDirectory.getRecord(database, user.id),
+                                UserDirectory.createRecord(user.name, user.email, user.image), SetOptions.merge());
+                        batch.commit().addOnFailureListener(e -> Log.e(TAG, "Credential migration failed", e));
+                        callback.onResult(user);
+                    });
+                });
+    }
+
+    // Hash the password and assemble the record fields; blocks for the duration of the hash
+    private static HashMap<String, Object> buildRecord(String userId, String name, String imageHash, String password) {
+        String salt = PasswordHasher.newSalt();
+        HashMap<String, Object> record = new HashMap<>();
+        record.put(Constants.KEY_USER_ID, userId);
+        record.put(Constants.KEY_NAME, name);
+        record.put(Constants.KEY_IMAGE_HASH, imageHash);
+        record.put(Constants.KEY_PASSWORD_SALT, salt);
+        record.put(Constants.KEY_PASSWORD_ITERATIONS, Constants.PASSWORD_HASH_ITERATIONS);
+        record.put(Constants.KEY_PASSWORD_HASH, PasswordHasher.hash(password, salt, Constants.PASSWORD_HASH_ITERATIONS));
+        return record;
+    }
+
+    // Display name of a user document, falling back to first and last name
+    private static String getDisplayName(DocumentSnapshot document) {
+        String name = document.getString(Constants.KEY_NAME);
+        if (name != null) {
+            return name;
+        }
+        return document.getString(Constants.KEY_FIRST_NAME) + " " + document.getString(Constants.KEY_LAST_NAME);
+    }
+}
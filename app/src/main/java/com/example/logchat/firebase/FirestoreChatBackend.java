@@ -0,0 +1,313 @@
+package com.example.logchat.firebase;
+
+import com.example.logchat.backend.ChatBackend;
+import com.example.logchat.metrics.Counter;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ConversationUtils;
+import com.example.logchat.utilities.SortedMessageBuffer;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FieldPath;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+import com.google.firebase.firestore.WriteBatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@link ChatBackend} backed by Cloud Firestore.
+ *
+ * Users are read from the lightweight directory, messages from the chat collection and
+ * conversations from their summary documents. Observations share snapshot listeners through
+ * {@link SnapshotListenerRegistry}. Callbacks and observers run on the main thread.
+ * The message queries combine two equality filters with a range filter or ordering on the
+ * timestamp and therefore need composite indexes on (senderId, receiverId, timestamp) for
+ * paging and on (senderId, receiverId, serverTimestamp) for observing.
+ * Round trips and the mapping of snapshots are recorded in {@link Metrics}.
+ */
+public class FirestoreChatBackend implements ChatBackend {
+    private static final Timer GET_USERS_TIMER = Metrics.getInstance().timer("firestore.getUsers");
+    private static final Timer UPDATE_TOKEN_TIMER = Metrics.getInstance().timer("firestore.updateToken");
+    private static final Timer SEND_TIMER = Metrics.getInstance().timer("firestore.sendMessages");
+    private static final Timer PAGE_TIMER = Metrics.getInstance().timer("firestore.getMessagesBefore");
+    private static final Timer MESSAGE_SNAPSHOT_TIMER = Metrics.getInstance().timer("snapshot.messages.map");
+    private static final Timer CONVERSATION_SNAPSHOT_TIMER = Metrics.getInstance().timer("snapshot.conversations.map");
+    private static final Counter FAILURES = Metrics.getInstance().counter("firestore.failures");
+
+    private final FirebaseFirestore database;
+
+    /**
+     * Creates a backend on a Firestore instance, e.g. one connected to the emulator.
+     * @param database The Firestore instance.
+     */
+    public FirestoreChatBackend(FirebaseFirestore database) {
+        this.database = database;
+    }
+
+    @Override
+    public void getUsers(User after, int limit, Callback<List<User>> callback) {
+        Query query = database.collection(Constants.KEY_COLLECTION_USER_DIRECTORY)
+                .orderBy(Constants.KEY_NAME)
+                .orderBy(FieldPath.documentId()) // Breaks ties between equal names
+                .limit(limit);
+        if (after != null) {
+            query = query.startAfter(after.name, after.id);
+        }
+        long start = Timer.start();
+        query.get()
+                .addOnCompleteListener(task -> stop(GET_USERS_TIMER, start, task))
+                .addOnSuccessListener(snapshot -> {
+                    List<User> users = new ArrayList<>(snapshot.size());
+                    for (DocumentSnapshot document : snapshot.getDocuments()) {
+                        users.add(UserDirectory.fromDocument(document));
+                    }
+                    callback.onSuccess(users);
+                })
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void updateToken(String userId, String token, Callback<Void> callback) {
+        long start = Timer.start();
+        database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(userId)
+                .update(Constants.KEY_FCM_TOKEN, token)
+                .addOnCompleteListener(task -> stop(UPDATE_TOKEN_TIMER, start, task))
+                .addOnSuccessListener(callback::onSuccess)
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void deleteToken(String userId, Callback<Void> callback) {
+        database.collection(Constants.KEY_COLLECTION_USERS)
+                .document(userId)
+                .update(Constants.KEY_FCM_TOKEN, FieldValue.delete())
+                .addOnSuccessListener(callback::onSuccess)
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public String newMessageId() {
+        return database.collection(Constants.KEY_COLLECTION_CHAT).document().getId(); // Generated locally, no round trip
+    }
+
+    @Override
+    public void sendMessages(List<OutgoingMessage> messages, Callback<Void> callback) {
+        WriteBatch batch = database.batch();
+        Map<String, OutgoingMessage> latestPerConversation = new LinkedHashMap<>();
+        for (OutgoingMessage outgoingMessage : messages) {
+            ChatMessage chatMessage = outgoingMessage.message;
+            HashMap<String, Object> message = new HashMap<>();
+            message.put(Constants.KEY_SENDER_ID, chatMessage.senderId);
+            message.put(Constants.KEY_RECEIVER_ID, chatMessage.receiverId);
+            message.put(Constants.KEY_MESSAGE, chatMessage.message);
+            message.put(Constants.KEY_TIMESTAMP, new Date(chatMessage.timestamp));
+            message.put(Constants.KEY_SERVER_TIMESTAMP, FieldValue.serverTimestamp()); // Set at commit, however late
+            batch.set(database.collection(Constants.KEY_COLLECTION_CHAT).document(chatMessage.documentId), message);
+            if (!outgoingMessage.keepSummary) {
+                latestPerConversation.put(
+                        ConversationUtils.getConversationId(chatMessage.senderId, chatMessage.receiverId), outgoingMessage);
+            }
+        }
+        for (OutgoingMessage outgoingMessage : latestPerConversation.values()) {
+            ChatMessage chatMessage = outgoingMessage.message;
+            batch.set(
+                    ConversationSummaries.getSummary(database, chatMessage.senderId, chatMessage.receiverId),
+                    ConversationSummaries.createSummary(
+                            chatMessage.senderId, outgoingMessage.senderName, outgoingMessage.senderImageHash,
+                            chatMessage.receiverId, outgoingMessage.receiverName, outgoingMessage.receiverImageHash,
+                            chatMessage.message, new Date(chatMessage.timestamp)
+                    )
+            );
+        }
+        long start = Timer.start();
+        batch.commit()
+                .addOnCompleteListener(task -> stop(SEND_TIMER, start, task))
+                .addOnSuccessListener(callback::onSuccess)
+                .addOnFailureListener(callback::onFailure);
+    }
+
+    @Override
+    public void getMessagesBefore(String userId, String otherUserId, long beforeTimestamp, int limit,
+                                  Callback<List<ChatMessage>> callback) {
+        Query sent = messages(userId, otherUserId).orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING);
+        Query received = messages(otherUserId, userId).orderBy(Constants.KEY_TIMESTAMP, Query.Direction.DESCENDING);
+        if (beforeTimestamp > 0) {
+            Date before = new Date(beforeTimestamp);
+            sent = sent.startAfter(before);
+            received = received.startAfter(before);
+        }
+        long start = Timer.start();
+        Task<QuerySnapshot> sentTask = sent.limit(limit).get();
+        Task<QuerySnapshot> receivedTask = received.limit(limit).get();
+        Tasks.whenAllComplete(sentTask, receivedTask).addOnCompleteListener(task -> {
+            PAGE_TIMER.stop(start);
+            if (!sentTask.isSuccessful() || !receivedTask.isSuccessful()) {
+                FAILURES.increment();
+                Exception exception = sentTask.getException() != null ? sentTask.getException() : receivedTask.getException();
+                callback.onFailure(exception != null ? exception : new IllegalStateException("Page query failed"));
+                return;
+            }
+            // The newest page of the merged directions is the newest page of the conversation.
+            List<ChatMessage> page = new ArrayList<>();
+            mapDocuments(sentTask.getResult().getDocuments(), userId, page);
+            mapDocuments(receivedTask.getResult().getDocuments(), userId, page);
+            Collections.sort(page, SortedMessageBuffer.ORDER);
+            if (page.size() > limit) {
+                page = new ArrayList<>(page.subList(page.size() - limit, page.size()));
+            }
+            callback.onSuccess(page);
+        });
+    }
+
+    @Override
+    public Subscription observeMessages(String userId, String otherUserId, long afterServerTimestamp, MessageObserver observer) {
+        Date after = new Date(afterServerTimestamp);
+        SnapshotListenerRegistry.Observer snapshotObserver = new SnapshotListenerRegistry.Observer() {
+            @Override
+            public void onSnapshot(QuerySnapshot snapshot, boolean replay) {
+                long start = Timer.start();
+                List<ChatMessage> added = new ArrayList<>();
+                List<ChatMessage> modified = new ArrayList<>();
+                List<ChatMessage> removed = new ArrayList<>();
+                if (replay) {
+                    // Joined a shared listener; deliver its current result set as new messages
+                    mapDocuments(snapshot.getDocuments(), userId, added);
+                } else {
+                    for (DocumentChange documentChange : snapshot.getDocumentChanges()) {
+                        switch (documentChange.getType()) {
+                            case ADDED:
+                                addIfValid(documentChange.getDocument(), userId, added);
+                                break;
+                            case MODIFIED:
+                                addIfValid(documentChange.getDocument(), userId, modified);
+                                break;
+                            case REMOVED:
+                                addIfValid(documentChange.getDocument(), userId, removed);
+                                break;
+                        }
+                    }
+                }
+                MESSAGE_SNAPSHOT_TIMER.stop(start);
+                if (!added.isEmpty() || !modified.isEmpty() || !removed.isEmpty()) {
+                    observer.onMessagesChanged(added, modified, removed);
+                }
+            }
+
+            @Override
+            public void onError(FirebaseFirestoreException error) {
+                observer.onError(error);
+            }
+        };
+        // A local write only matches once the server has set its time, so the user's own messages
+        // arrive confirmed; until then the outbox shows them as pending.
+        SnapshotListenerRegistry registry = SnapshotListenerRegistry.getInstance();
+        SnapshotListenerRegistry.Subscription sent = registry.observe(
+                messages(userId, otherUserId).whereGreaterThan(Constants.KEY_SERVER_TIMESTAMP, after), snapshotObserver);
+        SnapshotListenerRegistry.Subscription received = registry.observe(
+                messages(otherUserId, userId).whereGreaterThan(Constants.KEY_SERVER_TIMESTAMP, after), snapshotObserver);
+        return () -> {
+            sent.remove();
+            received.remove();
+        };
+    }
+
+    @Override
+    public Subscription observeConversations(String userId, int limit, ConversationObserver observer) {
+        SnapshotListenerRegistry.Subscription subscription = SnapshotListenerRegistry.getInstance().observe(
+                ConversationSummaries.recent(database, userId, limit),
+                new SnapshotListenerRegistry.Observer() {
+                    @Override
+                    public void onSnapshot(QuerySnapshot snapshot, boolean replay) {
+                        long start = Timer.start();
+                        List<Conversation> changed = new ArrayList<>();
+                        List<String> removedIds = new ArrayList<>();
+                        if (replay) {
+                            // Joined a shared listener; its current result set replaces the missed changes
+                            for (DocumentSnapshot document : snapshot.getDocuments()) {
+                                addIfValid(ConversationSummaries.fromDocument(document, userId), changed);
+                            }
+                        } else {
+                            for (DocumentChange documentChange : snapshot.getDocumentChanges()) {
+                                if (documentChange.getType() == DocumentChange.Type.REMOVED) {
+                                    removedIds.add(documentChange.getDocument().getId());
+                                } else {
+                                    addIfValid(ConversationSummaries.fromDocument(documentChange.getDocument(), userId), changed);
+                                }
+                            }
+                        }
+                        CONVERSATION_SNAPSHOT_TIMER.stop(start);
+                        observer.onConversationsChanged(changed, removedIds);
+                    }
+
+                    @Override
+                    public void onError(FirebaseFirestoreException error) {
+                        observer.onError(error);
+                    }
+                });
+        return subscription::remove;
+    }
+
+    // Record the duration of a round trip and count it if it failed
+    private static void stop(Timer timer, long start, Task<?> task) {
+        timer.stop(start);
+        if (!task.isSuccessful()) {
+            FAILURES.increment();
+        }
+    }
+
+    // Messages sent by one user to another
+    private Query messages(String senderId, String receiverId) {
+        return database.collection(Constants.KEY_COLLECTION_CHAT)
+                .whereEqualTo(Constants.KEY_SENDER_ID, senderId)
+                .whereEqualTo(Constants.KEY_RECEIVER_ID, receiverId);
+    }
+
+    // Map message documents seen by a user
+    private static void mapDocuments(List<DocumentSnapshot> documents, String userId, List<ChatMessage> messages) {
+        for (DocumentSnapshot document : documents) {
+            addIfValid(document, userId, messages);
+        }
+    }
+
+    // Map a message document and add it to the list if it carries a timestamp
+    private static void addIfValid(DocumentSnapshot document, String userId, List<ChatMessage> messages) {
+        ChatMessage chatMessage = ChatMessage.fromDocument(
+                document.getId(),
+                document.getString(Constants.KEY_SENDER_ID),
+                document.getString(Constants.KEY_RECEIVER_ID),
+                document.getString(Constants.KEY_MESSAGE),
+                document.getDate(Constants.KEY_TIMESTAMP),
+                document.getDate(Constants.KEY_SERVER_TIMESTAMP),
+                userId,
+                document.getMetadata().hasPendingWrites() // Written locally, not yet confirmed by the server
+        );
+        if (chatMessage != null) {
+            messages.add(chatMessage);
+        }
+    }
+
+    // Add a mapped conversation unless the server timestamp of a local write is not resolved yet
+    private static void addIfValid(Conversation conversation, List<Conversation> conversations) {
+        if (conversation != null) {
+            conversations.add(conversation);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.logchat.firebase;
+
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.service.notification.StatusBarNotification;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+
+import com.example.logchat.R;
+import com.example.logchat.activities.ChatActivity;
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.utilities.Constants;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Shows one notification per conversation for messages delivered by push.
+ *
+ * The first message after a quiet period is shown right away, while the push is still being
+ * handled, so a process started only for the push cannot be frozen before it is shown. Further
+ * messages within {@link Constants#NOTIFICATION_COALESCE_MS} of the last update are collected
+ * into one update at the end of that window, and updates never alert again while the
+ * notification is still shown. Nothing is shown for the conversation that is open on screen.
+ */
+public class MessageNotifier {
+    private static final String CHANNEL_ID = "messages";
+    private static final int NOTIFICATION_ID = 1; // Conversations are told apart by the notification tag
+    private static final int MAX_LINES = 5;
+    private static volatile MessageNotifier instance;
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<String, Unread> unread = new HashMap<>(); // Guarded by this
+    private volatile String activeConversationId;
+
+    // Messages of one conversation that the current notification shows
+    private static class Unread {
+        Conversation conversation;
+        final Deque<String> lines = new ArrayDeque<>();
+        int count;
+        boolean scheduled; // An update is waiting for the coalescing window to end
+        boolean posted; // The notification has been shown at least once
+        long shownAt; // Uptime of the last update
+    }
+
+    /**
+     * Returns the shared notifier, creating it and its channel on first use.
+     * @param context Any context; the application context is retained.
+     * @return The process-wide {@link MessageNotifier}.
+     */
+    public static MessageNotifier getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MessageNotifier.class) {
+                if (instance == null) {
+                    instance = new MessageNotifier(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private MessageNotifier(Context context) {
+        this.context = context;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID,
+                    context.getString(R.string.notification_channel_messages), NotificationManager.IMPORTANCE_HIGH);
+            context.getSystemService(NotificationManager.class).createNotificationChannel(channel);
+        }
+    }
+
+    /**
+     * Records a pushed message and updates its conversation's notification, right away or at the
+     * end of the coalescing window. May be called on any thread.
+     * @param conversation The conversation summary, seen from the signed-in user.
+     * @param chatMessage  The received message.
+     */
+    public void onMessage(Conversation conversation, ChatMessage chatMessage) {
+        String conversationId = conversation.conversationId;
+        if (conversationId.equals(activeConversationId)) {
+            return; // The chat is on screen and shows the message itself.
+        }
+        long delay;
+        synchronized (this) {
+            Unread entry = unread.get(conversationId);
+            if (entry == null) {
+                entry = new Unread();
+                unread.put(conversationId, entry);
+            } else if (entry.posted && !entry.scheduled && !isShown(conversationId)) {
+                // The user dismissed the notification; start over with this message.
+                entry.lines.clear();
+                entry.count = 0;
+                entry.posted = false;
+            }
+            entry.conversation = conversation;
+            entry.lines.addLast(chatMessage.message);
+            while (entry.lines.size() > MAX_LINES) {
+                entry.lines.removeFirst();
+            }
+            entry.count++;
+            if (entry.scheduled) {
+                return; // The pending update will include this message.
+            }
+            entry.scheduled = true;
+            delay = entry.shownAt + Constants.NOTIFICATION_COALESCE_MS - SystemClock.uptimeMillis();
+        }
+        if (delay <= 0) {
+            show(conversationId); // On the calling thread, before the push handler returns
+        } else {
+            mainHandler.postDelayed(() -> show(conversationId), delay);
+        }
+    }
+
+    /**
+     * Marks the conversation that is open on screen and removes its notification.
+     * @param conversationId The open conversation, or {@code null} when no chat is shown.
+     */
+    public void setActiveConversation(String conversationId) {
+        activeConversationId = conversationId;
+        if (conversationId != null) {
+            cancel(conversationId);
+        }
+    }
+
+    /**
+     * Removes the notification of a conversation and forgets its unread messages.
+     * @param conversationId The conversation.
+     */
+    public void cancel(String conversationId) {
+        synchronized (this) {
+            unread.remove(conversationId);
+        }
+        NotificationManagerCompat.from(context).cancel(conversationId, NOTIFICATION_ID);
+    }
+
+    // Build and post the notification of a conversation; runs on the main thread or the thread delivering the push
+    private void show(String conversationId) {
+        Conversation conversation;
+        String[] lines;
+        int count;
+        synchronized (this) {
+            Unread entry = unread.get(conversationId);
+            if (entry == null) {
+                return; // Cancelled in the meantime.
+            }
+            entry.scheduled = false;
+            entry.posted = true;
+            entry.shownAt = SystemClock.uptimeMillis();
+            conversation = entry.conversation;
+            lines = entry.lines.toArray(new String[0]);
+            count = entry.count;
+        }
+        NotificationManagerCompat notificationManager = NotificationManagerCompat.from(context);
+        if (!notificationManager.areNotificationsEnabled()) {
+            return;
+        }
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (String line : lines) {
+            style.addLine(line);
+        }
+        if (count > 1) {
+            style.setSummaryText(context.getString(R.string.notification_new_messages, count));
+        }
+        Intent intent = new Intent(context, ChatActivity.class);
+        intent.putExtra(Constants.KEY_USER, conversation.toUser());
+        intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, conversationId.hashCode(), intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.drawable.ic_send)
+                .setContentTitle(conversation.name)
+                .setContentText(lines[lines.length - 1])
+                .setStyle(style)
+                .setNumber(count)
+                .setWhen(conversation.timestamp)
+                .setCategory(NotificationCompat.CATEGORY_MESSAGE)
+                .setPriority(NotificationCompat.PRIORITY_HIGH)
+                .setOnlyAlertOnce(true) // Later messages of a burst update silently
+                .setAutoCancel(true)
+                .setContentIntent(contentIntent);
+        try {
+            notificationManager.notify(conversationId, NOTIFICATION_ID, builder.build());
+        } catch (SecurityException e) {
+            // POST_NOTIFICATIONS was revoked between the check and the post.
+        }
+    }
+
+    // Whether the notification of a conversation is still in the status bar
+    private boolean isShown(String conversationId) {
+        NotificationManager notificationManager = context.getSystemService(NotificationManager.class);
+        for (StatusBarNotification notification : notificationManager.getActiveNotifications()) {
+            if (notification.getId() == NOTIFICATION_ID && conversationId.equals(notification.getTag())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
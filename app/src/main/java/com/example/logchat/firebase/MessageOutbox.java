@@ -0,0 +1,249 @@
+package com.example.logchat.firebase;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.logchat.backend.BackendProvider;
+import com.example.logchat.backend.ChatBackend;
+import com.example.logchat.database.MessageDatabase;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ConversationUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+
+/**
+ * Durable queue of outgoing messages.
+ *
+ * A sent message is first appended to the outbox table of {@link MessageDatabase}, which
+ * also stores it as a pending message so it can be rendered immediately and after a restart.
+ * The outbox is drained in order: entries queued within {@link Constants#MESSAGE_SEND_COALESCE_MS}
+ * are committed in one {@link ChatBackend} batch together with the summary of each conversation
+ * they touch, unless a newer message of that conversation is already stored locally. Message documents use the IDs generated at send time, so retrying a batch after a
+ * failure or a process restart never creates duplicates. Failed commits are retried with
+ * exponential backoff. The time from typing a message until it comes back through the
+ * message listener as confirmed by the server is recorded as the {@code send.echo} timer,
+ * for messages typed in the running process only, so entries drained after a restart do not
+ * distort it.
+ *
+ * All public methods must be called on the main thread.
+ */
+public class MessageOutbox {
+    private static final String TAG = "MessageOutbox";
+    private static final long INITIAL_BACKOFF_MS = 1000;
+    private static final long MAX_BACKOFF_MS = 60000;
+    private static final Timer ECHO_TIMER = Metrics.getInstance().timer("send.echo");
+    private static final int MAX_TRACKED_ECHOES = 256;
+    private static volatile MessageOutbox instance;
+
+    /**
+     * Receives outbox messages once Firestore has accepted them.
+     */
+    public interface Listener {
+        /**
+         * Called on the main thread after a batch was committed.
+         * @param messages The committed messages, no longer marked as pending.
+         */
+        void onMessagesSent(List<ChatMessage> messages);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor diskExecutor = MessageDatabase.getDiskExecutor();
+    private final MessageDatabase messageDatabase;
+    private final ChatBackend backend;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final Runnable drainRunnable = this::drain;
+    private boolean draining; // Whether a batch is being read or committed
+    private boolean drainScheduled; // Whether a delayed drain is posted
+    private boolean drainRequested; // Whether entries were queued while a batch was in flight
+    private long backoffMs = INITIAL_BACKOFF_MS;
+    // Start of the echo timer per document ID; messages beyond the bound are simply not measured
+    private final Map<String, Long> echoStarts = new LinkedHashMap<String, Long>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > MAX_TRACKED_ECHOES;
+        }
+    };
+
+    /**
+     * Returns the shared outbox, creating it on first use.
+     * @param context Any context; the application context is retained.
+     * @return The process-wide {@link MessageOutbox}.
+     */
+    public static MessageOutbox getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MessageOutbox.class) {
+                if (instance == null) {
+                    instance = new MessageOutbox(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private MessageOutbox(Context context) {
+        messageDatabase = MessageDatabase.getInstance(context);
+        backend = BackendProvider.get();
+    }
+
+    /**
+     * Registers a listener for committed messages.
+     * @param listener The listener to add.
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     * @param listener The listener to remove.
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Appends a message to the outbox and schedules the next drain.
+     * @param outgoingMessage The message to send; its sequence is assigned when it is stored.
+     */
+    public void enqueue(OutgoingMessage outgoingMessage) {
+        ChatMessage chatMessage = outgoingMessage.message;
+        echoStarts.put(chatMessage.documentId, Timer.start());
+        String conversationId = ConversationUtils.getConversationId(chatMessage.senderId, chatMessage.receiverId);
+        diskExecutor.execute(() -> {
+            messageDatabase.enqueueOutgoing(conversationId, outgoingMessage);
+            mainHandler.post(() -> scheduleDrain(Constants.MESSAGE_SEND_COALESCE_MS));
+        });
+    }
+
+    /**
+     * Records the {@code send.echo} time of messages the message listener reports, the first
+     * time each one arrives confirmed by the server.
+     * @param messages Messages delivered by the listener; others than those sent from this process are ignored.
+     */
+    public void recordEchoes(List<ChatMessage> messages) {
+        if (echoStarts.isEmpty()) {
+            return;
+        }
+        for (ChatMessage chatMessage : messages) {
+            if (chatMessage.sent && !chatMessage.pending) {
+                Long start = echoStarts.remove(chatMessage.documentId);
+                if (start != null) {
+                    ECHO_TIMER.stop(start);
+                }
+            }
+        }
+    }
+
+    /**
+     * Commits the queued messages now instead of waiting for the coalescing window,
+     * e.g. when a chat screen is closed or the app starts with unsent messages.
+     */
+    public void drain() {
+        mainHandler.removeCallbacks(drainRunnable);
+        drainScheduled = false;
+        if (draining) {
+            drainRequested = true; // Continue with the rest of the outbox once the running batch completes.
+            return;
+        }
+        draining = true;
+        diskExecutor.execute(() -> {
+            List<OutgoingMessage> batch = messageDatabase.getOutbox(Constants.MESSAGE_SEND_MAX_BATCH);
+            markLateEntries(batch);
+            mainHandler.post(() -> commit(batch));
+        });
+    }
+
+    // Keep the summary of conversations in which a newer message is already stored, e.g. a reply
+    // received while an old entry waited in the outbox; runs on the disk executor
+    private void markLateEntries(List<OutgoingMessage> batch) {
+        Map<String, Long> newestPerConversation = new HashMap<>();
+        for (OutgoingMessage outgoingMessage : batch) {
+            ChatMessage chatMessage = outgoingMessage.message;
+            String conversationId = ConversationUtils.getConversationId(chatMessage.senderId, chatMessage.receiverId);
+            Long newest = newestPerConversation.get(conversationId);
+            if (newest == null) {
+                List<ChatMessage> latest = messageDatabase.getLatestMessages(conversationId, chatMessage.senderId, 1);
+                newest = latest.isEmpty() ? chatMessage.timestamp : latest.get(0).timestamp;
+                newestPerConversation.put(conversationId, newest);
+            }
+            outgoingMessage.keepSummary = newest > chatMessage.timestamp;
+        }
+    }
+
+    // Run a drain after the given delay unless one is already scheduled or running
+    private void scheduleDrain(long delayMs) {
+        if (draining) {
+            drainRequested = true;
+            return;
+        }
+        if (!drainScheduled) {
+            drainScheduled = true;
+            mainHandler.postDelayed(drainRunnable, delayMs);
+        }
+    }
+
+    // Write a batch of outbox entries and the latest summary of each conversation atomically
+    private void commit(List<OutgoingMessage> outgoingMessages) {
+        if (outgoingMessages.isEmpty()) {
+            finishDrain(false);
+            return;
+        }
+        backend.sendMessages(outgoingMessages, new ChatBackend.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                onCommitted(outgoingMessages);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Unable to send " + outgoingMessages.size() + " message(s), retrying in "
+                        + backoffMs + " ms: " + e.getMessage());
+                draining = false;
+                drainRequested = false;
+                scheduleDrain(backoffMs);
+                backoffMs = Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+            }
+        });
+    }
+
+    // End the running drain and start the next one if more entries are waiting
+    private void finishDrain(boolean moreWaiting) {
+        draining = false;
+        if (drainRequested || moreWaiting) {
+            drainRequested = false;
+            scheduleDrain(Constants.MESSAGE_SEND_COALESCE_MS);
+        }
+    }
+
+    // Drop committed entries from the outbox, notify listeners and continue with the rest
+    private void onCommitted(List<OutgoingMessage> outgoingMessages) {
+        backoffMs = INITIAL_BACKOFF_MS;
+        List<ChatMessage> sent = new ArrayList<>(outgoingMessages.size());
+        for (OutgoingMessage outgoingMessage : outgoingMessages) {
+            ChatMessage chatMessage = outgoingMessage.message;
+            sent.add(new ChatMessage(chatMessage.documentId, chatMessage.senderId, chatMessage.receiverId,
+                    chatMessage.message, chatMessage.timestamp, chatMessage.senderId));
+        }
+        diskExecutor.execute(() -> {
+            messageDatabase.markSent(outgoingMessages);
+            mainHandler.post(() -> {
+                for (Listener listener : listeners) {
+                    listener.onMessagesSent(sent);
+                }
+                finishDrain(outgoingMessages.size() >= Constants.MESSAGE_SEND_MAX_BATCH);
+            });
+        });
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.logchat.firebase;
+
+import android.content.Context;
+
+import com.example.logchat.backend.BackendProvider;
+import com.example.logchat.backend.ChatBackend;
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.OutgoingMessage;
+
+/**
+ * Sends the messages of one conversation through the durable {@link MessageOutbox}.
+ *
+ * Each message gets its document ID when it is typed, so the pending copy shown
+ * right away and the document that later arrives from the server are the same item. The
+ * send time only orders the conversation on screen; the server stamps each message with
+ * its own time when the write arrives, however late that is, and sync follows that time. The
+ * outbox commits the messages together with the conversation summary in coalesced batches,
+ * so the inbox never shows a last message that does not exist or misses one that does.
+ *
+ * All methods must be called on the main thread.
+ */
+public class MessageSender {
+
+    private final MessageOutbox outbox;
+    private final ChatBackend backend;
+    private final String senderId;
+    private final String senderName;
+    private final String senderImageHash;
+    private final String receiverId;
+    private final String receiverName;
+    private final String receiverImageHash;
+
+    /**
+     * Creates a sender for the conversation between the signed-in user and another user.
+     * @param context           Context used to open the outbox.
+     * @param senderId          The ID of the signed-in user.
+     * @param senderName        The name of the signed-in user.
+     * @param senderImageHash   Content hash of the signed-in user's profile image, may be {@code null}.
+     * @param receiverId        The ID of the other participant.
+     * @param receiverName      The name of the other participant.
+     * @param receiverImageHash Content hash of the other participant's profile image, may be {@code null}.
+     */
+    public MessageSender(Context context,
+                         String senderId, String senderName, String senderImageHash,
+                         String receiverId, String receiverName, String receiverImageHash) {
+        this.outbox = MessageOutbox.getInstance(context);
+        this.backend = BackendProvider.get();
+        this.senderId = senderId;
+        this.senderName = senderName;
+        this.senderImageHash = senderImageHash;
+        this.receiverId = receiverId;
+        this.receiverName = receiverName;
+        this.receiverImageHash = receiverImageHash;
+    }
+
+    /**
+     * Records a message in the outbox for the next batch commit.
+     * @param text The content of the message.
+     * @return The pending message, to be displayed until the server confirms it.
+     */
+    public ChatMessage send(String text) {
+        OutgoingMessage outgoingMessage = new OutgoingMessage();
+        outgoingMessage.message = new ChatMessage(
+                backend.newMessageId(), // Generated locally, no round trip
+                senderId,
+                receiverId,
+                text,
+                System.currentTimeMillis(), // Send time keeps the order of a burst
+                senderId,
+                true
+        );
+        outgoingMessage.senderName = senderName;
+        outgoingMessage.senderImageHash = senderImageHash;
+        outgoingMessage.receiverName = receiverName;
+        outgoingMessage.receiverImageHash = receiverImageHash;
+        outbox.enqueue(outgoingMessage);
+        return outgoingMessage.message;
+    }
+
+    /**
+     * Commits the queued messages immediately, e.g. when the chat screen is closed.
+     */
+    public void flush() {
+        outbox.drain();
+    }
+}
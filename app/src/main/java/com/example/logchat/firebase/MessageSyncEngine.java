@@ -0,0 +1,271 @@
+package com.example.logchat.firebase;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.lifecycle.LifecycleOwner;
+
+import com.example.logchat.backend.BackendProvider;
+import com.example.logchat.backend.ChatBackend;
+import com.example.logchat.backend.ScopedSubscription;
+import com.example.logchat.database.MessageDatabase;
+import com.example.logchat.listeners.MessageSyncListener;
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.utilities.ConversationUtils;
+import com.example.logchat.utilities.SortedMessageBuffer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Keeps the local {@link MessageDatabase} of one conversation in sync with the {@link ChatBackend}.
+ *
+ * The engine first delivers the newest page of messages already stored on the device,
+ * then observes only messages the server stored after the persisted sync cursor, so
+ * reopening a chat downloads just what arrived since the last visit. The cursor follows the
+ * server time of the messages, never their send time, so a message that reaches the server
+ * late or comes from a device with a wrong clock is still picked up. A conversation that was
+ * never synced starts from the newest remote page instead of its whole history. Older pages
+ * are read from disk first and backfilled from the backend when the local store runs out.
+ * Edits and deletions reported by the observation are forwarded and mirrored into the local
+ * store. The observation only runs while the owning screen is started; each start continues
+ * from the cursor reached so far instead of reading again what the last one already delivered.
+ */
+public class MessageSyncEngine {
+    private static final String TAG = "MessageSyncEngine";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Executor diskExecutor = MessageDatabase.getDiskExecutor(); // Keeps reads and writes ordered
+    private final MessageDatabase messageDatabase;
+    private final MessageOutbox outbox;
+    private final ChatBackend backend;
+    private final String senderId;
+    private final String receiverId;
+    private final String conversationId;
+    private final int pageSize;
+    private final List<ScopedSubscription> subscriptions = new ArrayList<>();
+    private LifecycleOwner owner; // Screen whose lifecycle scopes the listeners
+    private MessageSyncListener listener;
+    private boolean remoteHistoryExhausted;
+    private long syncCursor; // Newest server time received, in epoch milliseconds
+
+    /**
+     * Creates a sync engine for the conversation between two users.
+     * @param context    Context used to open the local database.
+     * @param senderId   The ID of the signed-in user.
+     * @param receiverId The ID of the other participant.
+     * @param pageSize   The number of messages delivered per page.
+     */
+    public MessageSyncEngine(Context context, String senderId, String receiverId, int pageSize) {
+        this.messageDatabase = MessageDatabase.getInstance(context);
+        this.outbox = MessageOutbox.getInstance(context);
+        this.backend = BackendProvider.get();
+        this.senderId = senderId;
+        this.receiverId = receiverId;
+        this.conversationId = ConversationUtils.getConversationId(senderId, receiverId);
+        this.pageSize = pageSize;
+    }
+
+    /**
+     * Loads the newest stored page of the conversation and starts listening for newer messages.
+     * @param owner    The screen showing the conversation; listeners are detached while it is stopped.
+     * @param listener Receives local and remote messages on the main thread.
+     */
+    public void start(LifecycleOwner owner, MessageSyncListener listener) {
+        this.owner = owner;
+        this.listener = listener;
+        diskExecutor.execute(() -> {
+            List<ChatMessage> messages = messageDatabase.getLatestMessages(conversationId, senderId, pageSize);
+            long cursor = messageDatabase.getSyncCursor(conversationId);
+            mainHandler.post(() -> {
+                if (this.listener == null) {
+                    return; // Stopped while the local query was running.
+                }
+                this.listener.onLocalMessagesLoaded(messages);
+                syncCursor = cursor;
+                if (cursor > 0) {
+                    listen();
+                } else {
+                    fetchLatestPage();
+                }
+            });
+        });
+    }
+
+    /**
+     * Loads the page of messages preceding a timestamp, from disk first and from Firestore
+     * when the local store has fewer than a full page. The result is delivered through
+     * {@link MessageSyncListener#onOlderMessagesLoaded(List, boolean)}.
+     * @param beforeTimestamp The timestamp of the oldest message currently shown, in epoch milliseconds.
+     */
+    public void loadOlder(long beforeTimestamp) {
+        diskExecutor.execute(() -> {
+            List<ChatMessage> localMessages = messageDatabase.getMessagesBefore(conversationId, beforeTimestamp, senderId, pageSize);
+            mainHandler.post(() -> {
+                if (listener == null) {
+                    return;
+                }
+                if (localMessages.size() >= pageSize || remoteHistoryExhausted) {
+                    listener.onOlderMessagesLoaded(localMessages, localMessages.size() >= pageSize);
+                } else {
+                    fetchPageBefore(beforeTimestamp, localMessages);
+                }
+            });
+        });
+    }
+
+    /**
+     * Detaches the Firestore listeners. Messages already received stay persisted.
+     */
+    public void stop() {
+        listener = null;
+        owner = null;
+        for (ScopedSubscription subscription : subscriptions) {
+            subscription.remove();
+        }
+        subscriptions.clear();
+    }
+
+    // Fetch the newest remote page of a conversation that was never synced, then listen after it
+    private void fetchLatestPage() {
+        fetchPage(0L, (messages, exhausted) -> {
+            remoteHistoryExhausted = exhausted;
+            advanceCursor(messages);
+            if (!messages.isEmpty()) {
+                listener.onNewMessages(messages);
+                persist(messages, syncCursor);
+            }
+            listen();
+        });
+    }
+
+    // Backfill the page before a timestamp from the backend and merge it with the partial local page
+    private void fetchPageBefore(long beforeTimestamp, List<ChatMessage> localMessages) {
+        fetchPage(beforeTimestamp, (remoteMessages, exhausted) -> {
+            remoteHistoryExhausted = exhausted;
+            List<ChatMessage> page = newestPage(localMessages, remoteMessages);
+            listener.onOlderMessagesLoaded(page, page.size() >= pageSize);
+            persist(remoteMessages, 0L);
+        });
+    }
+
+    // Read the newest remote page before a timestamp, or the newest page for 0
+    private void fetchPage(long beforeTimestamp, PageCallback callback) {
+        backend.getMessagesBefore(senderId, receiverId, beforeTimestamp, pageSize, new ChatBackend.Callback<List<ChatMessage>>() {
+            @Override
+            public void onSuccess(List<ChatMessage> messages) {
+                if (listener != null) {
+                    callback.onPage(messages, messages.size() < pageSize);
+                }
+            }
+
+            @Override
+            public void onFailure(Exception exception) {
+                if (listener != null) {
+                    Log.e(TAG, "Page query failed: " + exception.getMessage());
+                    listener.onSyncError(exception);
+                }
+            }
+        });
+    }
+
+    // Merge two message lists, drop duplicates and keep the newest page in ascending order
+    private List<ChatMessage> newestPage(List<ChatMessage> first, List<ChatMessage> second) {
+        Map<String, ChatMessage> byId = new HashMap<>();
+        for (ChatMessage chatMessage : first) {
+            byId.put(chatMessage.documentId, chatMessage);
+        }
+        for (ChatMessage chatMessage : second) {
+            byId.put(chatMessage.documentId, chatMessage);
+        }
+        List<ChatMessage> merged = new ArrayList<>(byId.values());
+        Collections.sort(merged, SortedMessageBuffer.ORDER);
+        if (merged.size() > pageSize) {
+            merged = new ArrayList<>(merged.subList(merged.size() - pageSize, merged.size()));
+        }
+        return merged;
+    }
+
+    // Move the cursor to the newest server time among messages; the send time is never used
+    private void advanceCursor(List<ChatMessage> messages) {
+        for (ChatMessage chatMessage : messages) {
+            syncCursor = Math.max(syncCursor, chatMessage.serverTimestamp);
+        }
+    }
+
+    // Store messages in the background and advance the persisted cursor if one is given
+    private void persist(List<ChatMessage> messages, long cursor) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        diskExecutor.execute(() -> {
+            messageDatabase.insertMessages(conversationId, messages);
+            if (cursor > 0) {
+                messageDatabase.updateSyncCursor(conversationId, cursor);
+            }
+        });
+    }
+
+    // Callback for a fetched page of remote messages
+    private interface PageCallback {
+        void onPage(List<ChatMessage> messages, boolean exhausted);
+    }
+
+    // Listen for messages in both directions stored after the cursor while the screen is started;
+    // every start builds the query from the cursor reached so far, not from the first one
+    private void listen() {
+        subscriptions.add(ScopedSubscription.bind(owner, () ->
+                backend.observeMessages(senderId, receiverId, syncCursor, observer)));
+    }
+
+    // Remove deleted messages from the local store in the background
+    private void delete(List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        diskExecutor.execute(() -> messageDatabase.deleteMessages(messages));
+    }
+
+    // Forward changes to the UI and mirror them into the local store
+    private final ChatBackend.MessageObserver observer = new ChatBackend.MessageObserver() {
+        @Override
+        public void onMessagesChanged(List<ChatMessage> added, List<ChatMessage> modified, List<ChatMessage> removed) {
+            if (listener != null) {
+                applyChanges(added, modified, removed);
+            }
+        }
+
+        @Override
+        public void onError(Exception exception) {
+            if (listener != null) {
+                Log.e(TAG, "Message listener failed: " + exception.getMessage());
+                listener.onSyncError(exception);
+            }
+        }
+    };
+
+    // Hand mapped changes to the UI and mirror them into the local store
+    private void applyChanges(List<ChatMessage> added, List<ChatMessage> modified, List<ChatMessage> removed) {
+        advanceCursor(added);
+        advanceCursor(modified); // A rewrite gets a new server time
+        outbox.recordEchoes(added); // Messages sent from here arrive once the server has stored them
+        if (!added.isEmpty()) {
+            listener.onNewMessages(added);
+            persist(added, syncCursor);
+        }
+        if (!modified.isEmpty()) {
+            listener.onMessagesModified(modified);
+            persist(modified, syncCursor);
+        }
+        if (!removed.isEmpty()) {
+            listener.onMessagesRemoved(removed);
+            delete(removed);
+        }
+    }
+}
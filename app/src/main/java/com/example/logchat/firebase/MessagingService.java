@@ -3,13 +3,36 @@ package com.example.logchat.firebase;
 import android.util.Log;
 import androidx.annotation.NonNull;
 
+import com.example.logchat.database.MessageDatabase;
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ConversationUtils;
+import com.example.logchat.utilities.PreferenceManager;
+import com.example.logchat.utilities.Session;
 import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 /**
  * A service class that extends FirebaseMessagingService to handle token generation and incoming
  * remote messages from Firebase Cloud Messaging (FCM).
+ *
+ * A chat message is pushed as a data message whose payload carries
+ * {@link Constants#KEY_MESSAGE_ID}, {@link Constants#KEY_CONVERSATION_ID},
+ * {@link Constants#KEY_SENDER_ID}, {@link Constants#KEY_SENDER_NAME},
+ * {@link Constants#KEY_SENDER_IMAGE_HASH}, {@link Constants#KEY_RECEIVER_ID},
+ * {@link Constants#KEY_MESSAGE} and {@link Constants#KEY_TIMESTAMP} (epoch milliseconds).
+ * The message and the conversation summary are written to the local database without any
+ * Firestore read, so the chat opens with the message already on screen; the sync engine
+ * later reconciles it with the server copy by document ID.
  */
 public class MessagingService extends FirebaseMessagingService {
+    private static final String TAG = "MessagingService";
+
     /**
      * Called whenever a new token is generated for the device instance.
      * This is triggered when the FCM registration token changes, such as during initial generation
@@ -20,9 +43,8 @@ public class MessagingService extends FirebaseMessagingService {
     @Override
     public void onNewToken(@NonNull String token) {
         super.onNewToken(token);
-        // Log the new FCM token for debugging purposes.
-        Log.d("FCM", "Token: " + token);
-        // TODO: Send the token to your server or store it as needed for further messaging.
+        // Write the new token to the signed-in user's document; unchanged tokens are skipped.
+        TokenSync.sync(getApplicationContext(), token);
     }
     /**
      * Called when a remote message is received from FCM.
@@ -32,10 +54,59 @@ public class MessagingService extends FirebaseMessagingService {
     @Override
     public void onMessageReceived(@NonNull RemoteMessage message) {
         super.onMessageReceived(message);
-        // Log the message body from the notification payload, if available.
-        if (message.getNotification() != null) {
-            Log.d("FCM", "Message: " + message.getNotification().getBody());
+        Map<String, String> data = message.getData();
+        String messageId = data.get(Constants.KEY_MESSAGE_ID);
+        String senderId = data.get(Constants.KEY_SENDER_ID);
+        String receiverId = data.get(Constants.KEY_RECEIVER_ID);
+        String text = data.get(Constants.KEY_MESSAGE);
+        long timestamp;
+        try {
+            timestamp = Long.parseLong(data.get(Constants.KEY_TIMESTAMP));
+        } catch (NumberFormatException e) {
+            Log.w(TAG, "Ignoring push without a valid timestamp");
+            return;
+        }
+        if (messageId == null || senderId == null || receiverId == null || text == null) {
+            Log.w(TAG, "Ignoring push without a chat message payload");
+            return;
+        }
+        Session session = new PreferenceManager(getApplicationContext()).getSession();
+        if (!session.signedIn || !receiverId.equals(session.userId)) {
+            return; // Addressed to an account that is no longer signed in on this device
+        }
+        // Derived locally rather than trusted from the payload, so rows always match the sync engine's.
+        String conversationId = ConversationUtils.getConversationId(senderId, receiverId);
+        if (!conversationId.equals(data.get(Constants.KEY_CONVERSATION_ID))) {
+            Log.w(TAG, "Push conversation ID does not match its participants");
+        }
+
+        ChatMessage chatMessage = new ChatMessage(messageId, senderId, receiverId, text, timestamp, session.userId);
+        Conversation conversation = new Conversation();
+        conversation.conversationId = conversationId;
+        conversation.userId = senderId;
+        conversation.name = data.get(Constants.KEY_SENDER_NAME);
+        conversation.imageHash = data.get(Constants.KEY_SENDER_IMAGE_HASH);
+        conversation.lastMessage = text;
+        conversation.timestamp = timestamp;
+        store(conversationId, chatMessage, conversation);
+        MessageNotifier.getInstance(getApplicationContext()).onMessage(conversation, chatMessage);
+    }
+
+    // Persist on the shared disk executor, keeping the order with sync engine writes, and wait
+    // for it so the data is on disk before the service may be stopped
+    private void store(String conversationId, ChatMessage chatMessage, Conversation conversation) {
+        MessageDatabase messageDatabase = MessageDatabase.getInstance(getApplicationContext());
+        FutureTask<Void> write = new FutureTask<>(() -> {
+            messageDatabase.insertMessages(conversationId, Collections.singletonList(chatMessage));
+            messageDatabase.upsertConversations(Collections.singletonList(conversation));
+        }, null);
+        MessageDatabase.getDiskExecutor().execute(write);
+        try {
+            write.get();
+        } catch (ExecutionException e) {
+            Log.e(TAG, "Unable to store pushed message", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-        // TODO: Handle the message payload (e.g., display a notification, update the UI, or trigger actions).
     }
 }
\ No newline at end of file
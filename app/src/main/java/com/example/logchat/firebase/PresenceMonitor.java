@@ -0,0 +1,172 @@
+package com.example.logchat.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.logchat.listeners.PresenceListener;
+import com.example.logchat.metrics.Counter;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.utilities.Constants;
+import com.google.firebase.firestore.DocumentChange;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Shares one Firestore listener on the users that are currently available among all screens
+ * that show presence.
+ *
+ * The listener is attached when the first {@link PresenceListener} is added and removed
+ * with the last one, so the chat header and the user list never open a listener per user.
+ * A user counts as online while their presence record is marked available and its
+ * {@link Constants#KEY_LAST_SEEN} is younger than {@link Constants#PRESENCE_TIMEOUT_MS};
+ * the set is re-evaluated periodically so users whose process died without writing
+ * "offline" drop out. Listeners are only called when the set changes. Ages are measured on
+ * the server's clock: every confirmed {@link Constants#KEY_LAST_SEEN} is a server time no later
+ * than the moment it arrives, so the largest difference to the local uptime clock seen so far
+ * estimates the server's "now" without trusting the device clock.
+ *
+ * Every heartbeat or transition of an available user is one document read for each client
+ * that is listening, so with N users online the app costs up to N reads per client and N * N
+ * reads in total per heartbeat interval. The presence records hold only two fields, which
+ * keeps each read small; the {@code presence.reads} counter in {@link Metrics} counts the
+ * reads of this client.
+ *
+ * All methods must be called on the main thread.
+ */
+public class PresenceMonitor {
+    private static final String TAG = "PresenceMonitor";
+    private static final long REFRESH_INTERVAL_MS = Constants.PRESENCE_TIMEOUT_MS / 5;
+    private static final Counter READS = Metrics.getInstance().counter("presence.reads");
+    private static PresenceMonitor instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<PresenceListener> listeners = new CopyOnWriteArrayList<>();
+    private final Map<String, Long> lastSeen = new HashMap<>(); // Available users and their last heartbeat
+    private final Runnable refreshRunnable = this::refresh;
+    private Set<String> onlineUserIds = Collections.emptySet();
+    private long serverClockOffset = Long.MIN_VALUE; // Server time minus uptime, unknown until a confirmed record arrives
+    private ListenerRegistration registration;
+
+    /**
+     * Returns the shared monitor, creating it on first use.
+     * @return The process-wide {@link PresenceMonitor}.
+     */
+    public static PresenceMonitor getInstance() {
+        if (instance == null) {
+            instance = new PresenceMonitor();
+        }
+        return instance;
+    }
+
+    private PresenceMonitor() {
+    }
+
+    /**
+     * Registers a listener and attaches the shared Firestore listener if it is the first one.
+     * The listener is called right away with the current set.
+     * @param listener The listener to add.
+     */
+    public void addListener(PresenceListener listener) {
+        listeners.add(listener);
+        if (registration == null) {
+            registration = FirebaseFirestore.getInstance()
+                    .collection(Constants.KEY_COLLECTION_PRESENCE)
+                    .whereEqualTo(Constants.KEY_AVAILABILITY, 1)
+                    .addSnapshotListener(this::onSnapshot);
+            mainHandler.postDelayed(refreshRunnable, REFRESH_INTERVAL_MS);
+        }
+        listener.onPresenceChanged(onlineUserIds);
+    }
+
+    /**
+     * Unregisters a listener and detaches the shared Firestore listener after the last one.
+     * @param listener The listener to remove.
+     */
+    public void removeListener(PresenceListener listener) {
+        listeners.remove(listener);
+        if (listeners.isEmpty() && registration != null) {
+            registration.remove();
+            registration = null;
+            mainHandler.removeCallbacks(refreshRunnable);
+            lastSeen.clear();
+            onlineUserIds = Collections.emptySet();
+        }
+    }
+
+    /**
+     * Returns whether a user is currently shown as online.
+     * @param userId The ID of the user.
+     * @return {@code true} if the user is online.
+     */
+    public boolean isOnline(String userId) {
+        return onlineUserIds.contains(userId);
+    }
+
+    // Apply the changed records of available users
+    private void onSnapshot(QuerySnapshot value, Exception error) {
+        if (error != null) {
+            Log.e(TAG, "Error in presence listener: " + error.getMessage());
+            return;
+        }
+        if (value == null) {
+            return;
+        }
+        if (!value.getMetadata().isFromCache()) {
+            READS.add(value.getDocumentChanges().size()); // Billed once per changed document
+        }
+        for (DocumentChange documentChange : value.getDocumentChanges()) {
+            DocumentSnapshot document = documentChange.getDocument();
+            if (documentChange.getType() == DocumentChange.Type.REMOVED) {
+                lastSeen.remove(document.getId()); // No longer available
+                continue;
+            }
+            // A pending server timestamp of this device's own write is estimated locally.
+            Date date = document.getDate(Constants.KEY_LAST_SEEN, DocumentSnapshot.ServerTimestampBehavior.ESTIMATE);
+            lastSeen.put(document.getId(), date != null ? date.getTime() : 0L);
+            if (date != null && !document.getMetadata().hasPendingWrites()) {
+                serverClockOffset = Math.max(serverClockOffset, date.getTime() - SystemClock.elapsedRealtime());
+            }
+        }
+        publish();
+    }
+
+    // Re-evaluate timeouts while listeners are attached
+    private void refresh() {
+        publish();
+        mainHandler.postDelayed(refreshRunnable, REFRESH_INTERVAL_MS);
+    }
+
+    // Compute the online set and notify the listeners if it changed
+    private void publish() {
+        if (serverClockOffset == Long.MIN_VALUE) {
+            return; // Only estimated times of this device's own write so far; nothing to compare against
+        }
+        long now = SystemClock.elapsedRealtime() + serverClockOffset; // Server time, whatever the device clock says
+        Set<String> online = new HashSet<>();
+        for (Map.Entry<String, Long> entry : lastSeen.entrySet()) {
+            if (now - entry.getValue() < Constants.PRESENCE_TIMEOUT_MS) {
+                online.add(entry.getKey());
+            }
+        }
+        if (online.equals(onlineUserIds)) {
+            return;
+        }
+        onlineUserIds = Collections.unmodifiableSet(online);
+        for (PresenceListener listener : listeners) {
+            listener.onPresenceChanged(onlineUserIds);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.logchat.firebase;
+
+import android.app.Activity;
+import android.app.Application;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.example.logchat.metrics.Counter;
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.PreferenceManager;
+import com.google.firebase.firestore.FieldValue;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.HashMap;
+
+/**
+ * Publishes the availability of the signed-in user while the app is in the foreground.
+ *
+ * The tracker counts started activities of the process, so moving between screens never
+ * looks like leaving the app. A change between foreground and background is only written
+ * once it has lasted {@link Constants#PRESENCE_DEBOUNCE_MS}, and nothing is written when
+ * the published state already matches. While in the foreground a heartbeat refreshes
+ * {@link Constants#KEY_LAST_SEEN}, so readers can tell a user whose process was killed
+ * without writing "offline" from one who is still there.
+ *
+ * Presence lives in its own record in {@link Constants#KEY_COLLECTION_PRESENCE}, holding only
+ * the two presence fields, so a heartbeat never sends the directory record and its thumbnail
+ * to every client watching who is online. An active user costs at most one write per
+ * heartbeat interval plus one per debounced transition; the {@code presence.writes} counter
+ * in {@link Metrics} makes that measurable. The reads these writes cause are counted by
+ * {@link PresenceMonitor}.
+ *
+ * All methods must be called on the main thread.
+ */
+public class PresenceTracker implements Application.ActivityLifecycleCallbacks {
+    private static final String TAG = "PresenceTracker";
+    private static final Counter WRITES = Metrics.getInstance().counter("presence.writes");
+    private static PresenceTracker instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final PreferenceManager preferenceManager;
+    private final Runnable transitionRunnable = this::applyTransition;
+    private final Runnable heartbeatRunnable = this::heartbeat;
+    private long heartbeatIntervalMs = Constants.PRESENCE_HEARTBEAT_MS;
+    private int startedActivities; // Activities between onStart and onStop
+    private boolean foreground; // Debounced state the tracker is converging to
+    private boolean published; // State of the last successful write
+
+    /**
+     * Registers the tracker with the application. Call once from {@link Application#onCreate()}.
+     * @param application The application whose activities define the foreground.
+     */
+    public static void register(Application application) {
+        if (instance == null) {
+            instance = new PresenceTracker(application);
+            application.registerActivityLifecycleCallbacks(instance);
+        }
+    }
+
+    /**
+     * Returns the registered tracker.
+     * @return The process-wide {@link PresenceTracker}, or {@code null} before {@link #register(Application)}.
+     */
+    public static PresenceTracker getInstance() {
+        return instance;
+    }
+
+    private PresenceTracker(Application application) {
+        preferenceManager = new PreferenceManager(application);
+    }
+
+    /**
+     * Changes the heartbeat interval. The interval is kept between
+     * {@link Constants#PRESENCE_MIN_HEARTBEAT_MS} and half of {@link Constants#PRESENCE_TIMEOUT_MS},
+     * so heartbeat writes stay bounded and other clients never see an active user time out.
+     * @param intervalMs The requested interval in milliseconds.
+     */
+    public void setHeartbeatInterval(long intervalMs) {
+        heartbeatIntervalMs = Math.max(Constants.PRESENCE_MIN_HEARTBEAT_MS,
+                Math.min(intervalMs, Constants.PRESENCE_TIMEOUT_MS / 2));
+        if (published) {
+            mainHandler.removeCallbacks(heartbeatRunnable);
+            mainHandler.postDelayed(heartbeatRunnable, heartbeatIntervalMs);
+        }
+    }
+
+    /**
+     * Returns the number of presence writes issued since the process started or the metrics were reset.
+     * @return The write count.
+     */
+    public long getWriteCount() {
+        return WRITES.get();
+    }
+
+    /**
+     * Marks the signed-in user offline right away, e.g. before signing out, and stops the heartbeat.
+     * Writes resume with the next heartbeat or transition once a user is signed in again.
+     */
+    public void markOffline() {
+        mainHandler.removeCallbacks(heartbeatRunnable);
+        write(false);
+        published = false;
+        if (foreground) {
+            mainHandler.postDelayed(heartbeatRunnable, heartbeatIntervalMs);
+        }
+    }
+
+    @Override
+    public void onActivityStarted(@NonNull Activity activity) {
+        if (++startedActivities == 1) {
+            scheduleTransition(true);
+        }
+    }
+
+    @Override
+    public void onActivityStopped(@NonNull Activity activity) {
+        if (startedActivities > 0 && --startedActivities == 0) {
+            scheduleTransition(false);
+        }
+    }
+
+    @Override
+    public void onActivityCreated(@NonNull Activity activity, @Nullable Bundle savedInstanceState) {
+    }
+
+    @Override
+    public void onActivityResumed(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivityPaused(@NonNull Activity activity) {
+    }
+
+    @Override
+    public void onActivitySaveInstanceState(@NonNull Activity activity, @NonNull Bundle outState) {
+    }
+
+    @Override
+    public void onActivityDestroyed(@NonNull Activity activity) {
+    }
+
+    // Restart the debounce window; only the state that outlasts it is written
+    private void scheduleTransition(boolean foreground) {
+        this.foreground = foreground;
+        mainHandler.removeCallbacks(transitionRunnable);
+        mainHandler.postDelayed(transitionRunnable, Constants.PRESENCE_DEBOUNCE_MS);
+    }
+
+    // Write the debounced state if it differs from the published one and start or stop the heartbeat
+    private void applyTransition() {
+        mainHandler.removeCallbacks(heartbeatRunnable);
+        if (foreground) {
+            if (!published) {
+                published = write(true);
+            }
+            mainHandler.postDelayed(heartbeatRunnable, heartbeatIntervalMs);
+        } else if (published) {
+            write(false);
+            published = false;
+        }
+    }
+
+    // Refresh the last-seen time while in the foreground
+    private void heartbeat() {
+        if (!foreground) {
+            return;
+        }
+        published = write(true);
+        mainHandler.postDelayed(heartbeatRunnable, heartbeatIntervalMs);
+    }
+
+    // Write availability and the last-seen time to the signed-in user's presence record
+    private boolean write(boolean available) {
+        String userId = preferenceManager.getSession().userId;
+        if (userId == null) {
+            return false; // Nobody is signed in.
+        }
+        HashMap<String, Object> presence = new HashMap<>();
+        presence.put(Constants.KEY_AVAILABILITY, available ? 1 : 0);
+        presence.put(Constants.KEY_LAST_SEEN, FieldValue.serverTimestamp());
+        FirebaseFirestore.getInstance()
+                .collection(Constants.KEY_COLLECTION_PRESENCE)
+                .document(userId)
+                .set(presence) // Creates the record on the first write
+                .addOnFailureListener(e -> Log.w(TAG, "Unable to update presence: " + e.getMessage()));
+        WRITES.increment();
+        return true;
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.logchat.firebase;
+
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.ImageRendition;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.FirebaseFirestore;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Fetches one rendition of the Base64 profile image of a single user on demand.
+ *
+ * The thumbnail is read from the user's directory record, the bubble size from the
+ * user's {@link Constants#KEY_COLLECTION_IMAGES} subcollection and the full image from the
+ * user document. Accounts created before renditions existed only have the full image,
+ * which is then returned for every rendition.
+ *
+ * Concurrent requests for the same user and rendition share one document read. Callbacks
+ * run on the main thread. Must be called on the main thread.
+ */
+public class ProfileImageFetcher {
+    private static final ProfileImageFetcher instance = new ProfileImageFetcher();
+
+    private final Map<String, List<Callback>> pending = new HashMap<>();
+
+    /**
+     * Receives the result of a fetch.
+     */
+    public interface Callback {
+        /**
+         * @param encodedImage The Base64-encoded image, or {@code null} if it could not be fetched.
+         */
+        void onImageFetched(String encodedImage);
+    }
+
+    /**
+     * Returns the shared fetcher.
+     * @return The process-wide {@link ProfileImageFetcher}.
+     */
+    public static ProfileImageFetcher getInstance() {
+        return instance;
+    }
+
+    private ProfileImageFetcher() {
+    }
+
+    /**
+     * Fetches a rendition of the profile image of a user.
+     * @param userId    The ID of the user.
+     * @param rendition The rendition to fetch.
+     * @param callback  Receives the encoded image.
+     */
+    public void fetch(String userId, ImageRendition rendition, Callback callback) {
+        String requestKey = userId + "/" + rendition.key;
+        List<Callback> callbacks = pending.get(requestKey);
+        if (callbacks != null) {
+            callbacks.add(callback); // A read for this image is already in flight
+            return;
+        }
+        callbacks = new ArrayList<>();
+        callbacks.add(callback);
+        pending.put(requestKey, callbacks);
+        getDocument(FirebaseFirestore.getInstance(), userId, rendition)
+                .get()
+                .addOnCompleteListener(task -> {
+                    String encodedImage = null;
+                    if (task.isSuccessful() && task.getResult() != null) {
+                        encodedImage = task.getResult().getString(getField(rendition));
+                    }
+                    List<Callback> waiting = pending.remove(requestKey);
+                    if (waiting == null) {
+                        return;
+                    }
+                    if (encodedImage == null && task.isSuccessful() && rendition != ImageRendition.FULL) {
+                        // Created before renditions existed; fall back to the full image
+                        fetch(userId, ImageRendition.FULL, fullImage -> dispatch(waiting, fullImage));
+                    } else {
+                        dispatch(waiting, encodedImage);
+                    }
+                });
+    }
+
+    /**
+     * Returns the document holding a rendition of a user's profile image.
+     * @param database  The Firestore instance.
+     * @param userId    The ID of the user.
+     * @param rendition The rendition.
+     * @return The document reference.
+     */
+    public static DocumentReference getDocument(FirebaseFirestore database, String userId, ImageRendition rendition) {
+        switch (rendition) {
+            case THUMBNAIL:
+                return UserDirectory.getRecord(database, userId);
+            case BUBBLE:
+                return database.collection(Constants.KEY_COLLECTION_USERS)
+                        .document(userId)
+                        .collection(Constants.KEY_COLLECTION_IMAGES)
+                        .document(rendition.key);
+            default:
+                return database.collection(Constants.KEY_COLLECTION_USERS).document(userId);
+        }
+    }
+
+    // Field of the rendition's document that holds the encoded image
+    private static String getField(ImageRendition rendition) {
+        return rendition == ImageRendition.THUMBNAIL ? Constants.KEY_IMAGE_THUMBNAIL : Constants.KEY_IMAGE;
+    }
+
+    // Hand the result to every caller waiting for it
+    private static void dispatch(List<Callback> waiting, String encodedImage) {
+        for (Callback waitingCallback : waiting) {
+            waitingCallback.onImageFetched(encodedImage);
+        }
+    }
+}
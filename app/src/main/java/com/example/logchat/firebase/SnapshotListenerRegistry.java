@@ -0,0 +1,194 @@
+package com.example.logchat.firebase;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.logchat.backend.ScopedSubscription;
+import com.example.logchat.utilities.Constants;
+import com.google.firebase.firestore.FirebaseFirestoreException;
+import com.google.firebase.firestore.ListenerRegistration;
+import com.google.firebase.firestore.Query;
+import com.google.firebase.firestore.QuerySnapshot;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shares Firestore snapshot listeners between screens.
+ *
+ * Observers are grouped by {@link Query}; equal queries share one underlying listener.
+ * Screens bind their observations to their lifecycle with {@link ScopedSubscription}, so an
+ * observer is attached while its screen is started and detached when it stops. When the
+ * last observer of a query detaches, the listener is kept for
+ * {@link Constants#SNAPSHOT_LISTENER_GRACE_MS} so bouncing between chats or rotating the
+ * screen does not tear it down and re-read the whole result set. An observer that joins a
+ * listener which already delivered a snapshot immediately receives that snapshot as a replay.
+ * A replay stands for the current document set only; documents removed before the observer
+ * joined are not reported, so observers apply it as a whole, like the first snapshot of a
+ * new listener.
+ *
+ * All methods must be called on the main thread.
+ */
+public class SnapshotListenerRegistry {
+    private static final String TAG = "SnapshotListeners";
+    private static SnapshotListenerRegistry instance;
+
+    /**
+     * Receives the snapshots of a shared query.
+     */
+    public interface Observer {
+        /**
+         * Called on the main thread with each snapshot of the query.
+         * @param snapshot The snapshot.
+         * @param replay   {@code true} if the snapshot was delivered before this observer joined;
+         *                 its document changes are then relative to an earlier snapshot, so
+         *                 {@link QuerySnapshot#getDocuments()}, the current document set, should be
+         *                 applied instead.
+         */
+        void onSnapshot(QuerySnapshot snapshot, boolean replay);
+
+        /**
+         * Called on the main thread when the listener failed. Firestore does not deliver
+         * further snapshots after an error; the query is attached again the next time it
+         * is observed.
+         * @param error The error reported by Firestore.
+         */
+        void onError(FirebaseFirestoreException error);
+    }
+
+    // One underlying Firestore listener and the observers attached to it
+    private static final class Entry {
+        final Query query;
+        final List<Observer> observers = new ArrayList<>();
+        ListenerRegistration registration;
+        QuerySnapshot lastSnapshot;
+        Runnable detachRunnable;
+
+        Entry(Query query) {
+            this.query = query;
+        }
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Map<Query, Entry> entries = new HashMap<>();
+
+    /**
+     * Returns the shared registry, creating it on first use.
+     * @return The process-wide {@link SnapshotListenerRegistry}.
+     */
+    public static SnapshotListenerRegistry getInstance() {
+        if (instance == null) {
+            instance = new SnapshotListenerRegistry();
+        }
+        return instance;
+    }
+
+    private SnapshotListenerRegistry() {
+    }
+
+    /**
+     * Attaches an observer to the shared listener of a query.
+     * @param query    The query to listen to; equal queries share one listener.
+     * @param observer Receives snapshots and errors.
+     * @return The subscription; removing it detaches the observer.
+     */
+    public Subscription observe(Query query, Observer observer) {
+        acquire(query, observer);
+        return new Subscription(query, observer);
+    }
+
+    /**
+     * Returns the number of Firestore listeners currently attached, including those in their grace period.
+     * @return The listener count.
+     */
+    public int getListenerCount() {
+        return entries.size();
+    }
+
+    /**
+     * One observer attached to the shared listener of a query.
+     */
+    public final class Subscription {
+        private final Query query;
+        private final Observer observer;
+        private boolean removed; // Whether the observer was detached
+
+        private Subscription(Query query, Observer observer) {
+            this.query = query;
+            this.observer = observer;
+        }
+
+        /**
+         * Detaches the observer. The last observer of a query starts its grace period.
+         */
+        public void remove() {
+            if (!removed) {
+                removed = true;
+                release(query, observer);
+            }
+        }
+    }
+
+    // Attach an observer, sharing or reviving the query's listener
+    private void acquire(Query query, Observer observer) {
+        Entry entry = entries.get(query);
+        if (entry == null) {
+            entry = new Entry(query);
+            entries.put(query, entry);
+        }
+        if (entry.detachRunnable != null) {
+            mainHandler.removeCallbacks(entry.detachRunnable); // Revived within the grace period
+            entry.detachRunnable = null;
+        }
+        entry.observers.add(observer);
+        if (entry.registration == null) {
+            Entry newEntry = entry;
+            entry.registration = query.addSnapshotListener((value, error) -> dispatch(newEntry, value, error));
+        } else if (entry.lastSnapshot != null) {
+            observer.onSnapshot(entry.lastSnapshot, true);
+        }
+    }
+
+    // Detach an observer; the last one starts the grace period of the listener
+    private void release(Query query, Observer observer) {
+        Entry entry = entries.get(query);
+        if (entry == null || !entry.observers.remove(observer) || !entry.observers.isEmpty()) {
+            return;
+        }
+        entry.detachRunnable = () -> {
+            entry.registration.remove();
+            entries.remove(entry.query);
+        };
+        mainHandler.postDelayed(entry.detachRunnable, Constants.SNAPSHOT_LISTENER_GRACE_MS);
+    }
+
+    // Forward a snapshot or an error to the observers of a listener
+    private void dispatch(Entry entry, QuerySnapshot value, FirebaseFirestoreException error) {
+        if (entries.get(entry.query) != entry) {
+            return; // Delivered after the listener was removed.
+        }
+        List<Observer> observers = new ArrayList<>(entry.observers); // Observers may detach while notified
+        if (error != null) {
+            Log.e(TAG, "Snapshot listener failed: " + error.getMessage());
+            entry.registration.remove();
+            entries.remove(entry.query);
+            if (entry.detachRunnable != null) {
+                mainHandler.removeCallbacks(entry.detachRunnable);
+            }
+            for (Observer observer : observers) {
+                observer.onError(error);
+            }
+            return;
+        }
+        if (value == null) {
+            return;
+        }
+        entry.lastSnapshot = value;
+        for (Observer observer : observers) {
+            observer.onSnapshot(value, false);
+        }
+    }
+}
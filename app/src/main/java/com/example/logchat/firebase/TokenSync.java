@@ -0,0 +1,49 @@
+package com.example.logchat.firebase;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.example.logchat.backend.BackendProvider;
+import com.example.logchat.backend.ChatBackend;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.PreferenceManager;
+
+/**
+ * Keeps the FCM token of the signed-in user up to date in the backend.
+ *
+ * The last token written successfully is remembered in shared preferences, so the user
+ * document is only written when the token actually changed instead of on every start.
+ */
+public class TokenSync {
+    private static final String TAG = "TokenSync";
+
+    private TokenSync() {
+    }
+
+    /**
+     * Writes the token to the signed-in user's document if it differs from the last synced one.
+     * @param context Any context, used to read the preferences.
+     * @param token   The current FCM registration token.
+     */
+    public static void sync(Context context, String token) {
+        PreferenceManager preferenceManager = new PreferenceManager(context.getApplicationContext());
+        String userId = preferenceManager.getSession().userId;
+        if (userId == null || token == null) {
+            return; // Nobody is signed in; the token is synced on the next start after sign-in.
+        }
+        if (token.equals(preferenceManager.getString(Constants.KEY_SYNCED_FCM_TOKEN))) {
+            return; // Unchanged since the last successful write.
+        }
+        BackendProvider.get().updateToken(userId, token, new ChatBackend.Callback<Void>() {
+            @Override
+            public void onSuccess(Void result) {
+                preferenceManager.putString(Constants.KEY_SYNCED_FCM_TOKEN, token);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                Log.e(TAG, "Unable to update token: " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.logchat.firebase;
+
+import com.example.logchat.models.User;
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.HashUtils;
+import com.google.android.gms.tasks.Task;
+import com.google.firebase.firestore.DocumentReference;
+import com.google.firebase.firestore.DocumentSnapshot;
+import com.google.firebase.firestore.FirebaseFirestore;
+import com.google.firebase.firestore.SetOptions;
+
+import java.util.HashMap;
+
+/**
+ * Writes the lightweight user directory records listed on the "new chat" screen.
+ *
+ * Each user has a record in {@link Constants#KEY_COLLECTION_USER_DIRECTORY} with the same
+ * document ID as the full user document. The record only holds the name, the email, a
+ * hash of the profile image and a small thumbnail rendition of it, so listing users never
+ * downloads full avatars or passwords. Records of older accounts have no thumbnail; their
+ * image is fetched per user by {@link ProfileImageFetcher} when a row is displayed.
+ */
+public class UserDirectory {
+
+    private UserDirectory() {
+    }
+
+    /**
+     * Builds the directory record of a user.
+     * @param name         The display name.
+     * @param email        The email address.
+     * @param encodedImage The Base64-encoded profile image, may be {@code null}.
+     * @return The fields of the directory record.
+     */
+    public static HashMap<String, Object> createRecord(String name, String email, String encodedImage) {
+        HashMap<String, Object> record = new HashMap<>();
+        record.put(Constants.KEY_NAME, name);
+        record.put(Constants.KEY_EMAIL, email);
+        record.put(Constants.KEY_IMAGE_HASH, HashUtils.imageHash(encodedImage));
+        return record;
+    }
+
+    /**
+     * Builds the directory record of a user whose avatar was encoded into renditions.
+     * @param name             The display name.
+     * @param email            The email address.
+     * @param imageHash        The content hash of the full rendition.
+     * @param encodedThumbnail The Base64-encoded thumbnail rendition.
+     * @return The fields of the directory record.
+     */
+    public static HashMap<String, Object> createRecord(String name, String email, String imageHash,
+                                                       String encodedThumbnail) {
+        HashMap<String, Object> record = new HashMap<>();
+        record.put(Constants.KEY_NAME, name);
+        record.put(Constants.KEY_EMAIL, email);
+        record.put(Constants.KEY_IMAGE_HASH, imageHash);
+        record.put(Constants.KEY_IMAGE_THUMBNAIL, encodedThumbnail);
+        return record;
+    }
+
+    /**
+     * Returns the directory document of a user.
+     * @param database The Firestore instance.
+     * @param userId   The ID of the user.
+     * @return The reference of the directory record.
+     */
+    public static DocumentReference getRecord(FirebaseFirestore database, String userId) {
+        return database.collection(Constants.KEY_COLLECTION_USER_DIRECTORY).document(userId);
+    }
+
+    /**
+     * Maps a directory record to a user.
+     * @param document The directory record.
+     * @return The user, carrying the thumbnail as its image if the record has one.
+     */
+    public static User fromDocument(DocumentSnapshot document) {
+        User user = new User();
+        user.id = document.getId();
+        user.name = document.getString(Constants.KEY_NAME);
+        user.email = document.getString(Constants.KEY_EMAIL);
+        user.imageHash = document.getString(Constants.KEY_IMAGE_HASH);
+        user.image = document.getString(Constants.KEY_IMAGE_THUMBNAIL);
+        return user;
+    }
+
+    /**
+     * Creates or refreshes the directory record of a user, e.g. to backfill accounts
+     * that were created before the directory existed.
+     * @param database     The Firestore instance.
+     * @param userId       The ID of the user.
+     * @param name         The display name.
+     * @param email        The email address.
+     * @param encodedImage The Base64-encoded profile image, may be {@code null}.
+     * @return The write task.
+     */
+    public static Task<Void> upsert(FirebaseFirestore database, String userId, String name, String email, String encodedImage) {
+        return getRecord(database, userId).set(createRecord(name, email, encodedImage), SetOptions.merge());
+    }
+}
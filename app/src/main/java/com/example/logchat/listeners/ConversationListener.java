@@ -0,0 +1,15 @@
+package com.example.logchat.listeners;
+
+import com.example.logchat.models.User;
+
+/**
+ * Interface for handling clicks on a recent conversation.
+ */
+public interface ConversationListener {
+    /**
+     * Callback method invoked when a conversation is clicked.
+     *
+     * @param user The other participant of the conversation
+     */
+    void onConversationClicked(User user);
+}
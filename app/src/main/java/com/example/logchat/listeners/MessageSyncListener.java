@@ -0,0 +1,54 @@
+package com.example.logchat.listeners;
+
+import com.example.logchat.models.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Callbacks from the message sync engine.
+ * All methods are invoked on the main thread.
+ */
+public interface MessageSyncListener {
+    /**
+     * Called once with the newest page of messages already stored on the device.
+     *
+     * @param messages The locally stored messages, oldest first
+     */
+    void onLocalMessagesLoaded(List<ChatMessage> messages);
+
+    /**
+     * Called whenever Firestore delivers messages newer than the sync cursor.
+     *
+     * @param messages The new messages
+     */
+    void onNewMessages(List<ChatMessage> messages);
+
+    /**
+     * Called when messages that were already delivered are edited.
+     *
+     * @param messages The new versions of the messages
+     */
+    void onMessagesModified(List<ChatMessage> messages);
+
+    /**
+     * Called when messages that were already delivered are deleted.
+     *
+     * @param messages The deleted messages
+     */
+    void onMessagesRemoved(List<ChatMessage> messages);
+
+    /**
+     * Called with the page of messages preceding the oldest one shown.
+     *
+     * @param messages The older messages, oldest first
+     * @param hasMore  Whether even older messages may exist
+     */
+    void onOlderMessagesLoaded(List<ChatMessage> messages, boolean hasMore);
+
+    /**
+     * Called when the Firestore listener fails.
+     *
+     * @param exception The cause of the failure
+     */
+    void onSyncError(Exception exception);
+}
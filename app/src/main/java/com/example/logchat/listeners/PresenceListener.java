@@ -0,0 +1,16 @@
+package com.example.logchat.listeners;
+
+import java.util.Set;
+
+/**
+ * Interface for receiving the set of users that are currently online.
+ * Used by screens that show presence, such as the chat header and the user list.
+ */
+public interface PresenceListener {
+    /**
+     * Callback method invoked on the main thread when the set of online users changes.
+     *
+     * @param onlineUserIds The IDs of the users that are online; the set must not be modified
+     */
+    void onPresenceChanged(Set<String> onlineUserIds);
+}
@@ -0,0 +1,55 @@
+package com.example.logchat.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Monotonic count of events, e.g. writes or failures. Safe to increment from any thread.
+ */
+public class Counter {
+    private final String name;
+    private final AtomicLong value = new AtomicLong();
+
+    /**
+     * Creates a counter. Use {@link Metrics#counter(String)} to get a registered one.
+     * @param name The name the counter is reported under.
+     */
+    Counter(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name the counter is reported under.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Counts one event.
+     */
+    public void increment() {
+        value.incrementAndGet();
+    }
+
+    /**
+     * Counts several events.
+     * @param events The number of events.
+     */
+    public void add(long events) {
+        value.addAndGet(events);
+    }
+
+    /**
+     * @return The number of events counted since the process started or the last reset.
+     */
+    public long get() {
+        return value.get();
+    }
+
+    /**
+     * Sets the count back to zero.
+     */
+    public void reset() {
+        value.set(0);
+    }
+}
@@ -0,0 +1,149 @@
+package com.example.logchat.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Distribution of non-negative values, e.g. sizes or latencies, with percentiles.
+ *
+ * Values are counted in log-linear buckets: 0 to 15 exactly, above that every power-of-two
+ * range is split into 16 equal buckets, so a reported percentile exceeds the true value by
+ * at most 1/16 of it. Values of 2^40 and more count as the largest bucket. Recording
+ * increments a slot of a preallocated array and updates the sum and maximum; it never
+ * allocates or locks and may be called from any thread, including bind and snapshot paths.
+ */
+public class Histogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40;
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    static final int BUCKET_COUNT = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final String name;
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates a histogram. Use {@link Metrics#histogram(String)} to get a registered one.
+     * @param name The name the histogram is reported under.
+     */
+    Histogram(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @return The name the histogram is reported under.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Records a value.
+     * @param value The value; negative values are recorded as 0.
+     */
+    public void record(long value) {
+        long clamped = Math.max(0, value);
+        buckets.incrementAndGet(bucketOf(Math.min(clamped, MAX_VALUE)));
+        sum.addAndGet(clamped);
+        long currentMax = max.get();
+        while (clamped > currentMax && !max.compareAndSet(currentMax, clamped)) {
+            currentMax = max.get();
+        }
+    }
+
+    /**
+     * Summarizes the values recorded so far. Values recorded concurrently may be missing
+     * from some of the figures.
+     * @return The summary.
+     */
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts[i] = buckets.get(i);
+            total += counts[i];
+        }
+        long maxValue = max.get();
+        return new Snapshot(total, total == 0 ? 0 : sum.get() / (double) total, maxValue,
+                percentile(counts, total, 0.50, maxValue),
+                percentile(counts, total, 0.90, maxValue),
+                percentile(counts, total, 0.99, maxValue));
+    }
+
+    /**
+     * Drops all recorded values. Values recorded while resetting may partly survive.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        sum.set(0);
+        max.set(0);
+    }
+
+    // Index of the bucket counting a value between 0 and MAX_VALUE
+    static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return SUB_BUCKETS + shift * SUB_BUCKETS + subBucket;
+    }
+
+    // Largest value counted by a bucket
+    static long upperBoundOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+        int subBucket = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+        return (((long) SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    // Value below or at which the given share of the counted values lies, never above the maximum
+    private static long percentile(long[] counts, long total, double quantile, long maxValue) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(upperBoundOf(i), maxValue);
+            }
+        }
+        return maxValue;
+    }
+
+    /**
+     * Immutable summary of a {@link Histogram}.
+     */
+    public static class Snapshot {
+        /** Number of recorded values. */
+        public final long count;
+        /** Mean of the recorded values. */
+        public final double mean;
+        /** Largest recorded value. */
+        public final long max;
+        /** Median. */
+        public final long p50;
+        /** 90th percentile. */
+        public final long p90;
+        /** 99th percentile. */
+        public final long p99;
+
+        Snapshot(long count, double mean, long max, long p50, long p90, long p99) {
+            this.count = count;
+            this.mean = mean;
+            this.max = max;
+            this.p50 = p50;
+            this.p90 = p90;
+            this.p99 = p99;
+        }
+    }
+}
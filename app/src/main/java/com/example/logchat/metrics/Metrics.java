@@ -0,0 +1,138 @@
+package com.example.logchat.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registry of the app's counters, timers and histograms.
+ *
+ * Call sites look a metric up once, typically into a {@code static final} field, and then only
+ * record into it, which never allocates. Metrics live for the whole process and accumulate
+ * until {@link #reset()}; {@link MetricsReporter} writes them out periodically and the metrics
+ * screen shows them on demand.
+ *
+ * Names are dotted paths grouped by area, e.g. {@code firestore.sendMessages} or
+ * {@code bind.chat}. Timers report milliseconds.
+ */
+public class Metrics {
+    private static final Metrics instance = new Metrics();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Histogram> histograms = new ConcurrentHashMap<>(); // Including timers
+
+    /**
+     * @return The process-wide registry.
+     */
+    public static Metrics getInstance() {
+        return instance;
+    }
+
+    Metrics() {
+    }
+
+    /**
+     * Returns the counter with the given name, registering it on first use.
+     * @param name The name of the counter.
+     * @return The counter.
+     */
+    public Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            Counter created = new Counter(name);
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /**
+     * Returns the timer with the given name, registering it on first use.
+     * @param name The name of the timer.
+     * @return The timer.
+     * @throws IllegalArgumentException If the name belongs to a histogram that is not a timer.
+     */
+    public Timer timer(String name) {
+        Histogram histogram = register(name, true);
+        if (!(histogram instanceof Timer)) {
+            throw new IllegalArgumentException(name + " is not a timer");
+        }
+        return (Timer) histogram;
+    }
+
+    /**
+     * Returns the histogram with the given name, registering it on first use.
+     * @param name The name of the histogram.
+     * @return The histogram.
+     */
+    public Histogram histogram(String name) {
+        return register(name, false);
+    }
+
+    /**
+     * Drops everything recorded so far; registered metrics stay valid.
+     */
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (Histogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Formats every metric that has recorded something, one line each, ordered by name.
+     * Timers are shown in milliseconds, e.g.
+     * {@code firestore.getUsers n=12 p50=84.0 p90=131.0 p99=180.0 max=180.2 mean=92.5 ms}.
+     * @return The report; empty if nothing was recorded.
+     */
+    public String report() {
+        Map<String, String> lines = new TreeMap<>();
+        for (Counter counter : counters.values()) {
+            long value = counter.get();
+            if (value > 0) {
+                lines.put(counter.getName(), counter.getName() + " " + value);
+            }
+        }
+        for (Histogram histogram : histograms.values()) {
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            if (snapshot.count > 0) {
+                lines.put(histogram.getName(), format(histogram, snapshot));
+            }
+        }
+        StringBuilder report = new StringBuilder();
+        for (String line : lines.values()) {
+            report.append(line).append('\n');
+        }
+        return report.toString();
+    }
+
+    // Return the histogram registered under a name, creating it if there is none
+    private Histogram register(String name, boolean timer) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            Histogram created = timer ? new Timer(name) : new Histogram(name);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    // One report line of a histogram; timers record microseconds but are shown in milliseconds
+    private static String format(Histogram histogram, Histogram.Snapshot snapshot) {
+        if (histogram instanceof Timer) {
+            return String.format(Locale.US, "%s n=%d p50=%.1f p90=%.1f p99=%.1f max=%.1f mean=%.1f ms",
+                    histogram.getName(), snapshot.count, snapshot.p50 / 1000.0, snapshot.p90 / 1000.0,
+                    snapshot.p99 / 1000.0, snapshot.max / 1000.0, snapshot.mean / 1000.0);
+        }
+        return String.format(Locale.US, "%s n=%d p50=%d p90=%d p99=%d max=%d mean=%.1f",
+                histogram.getName(), snapshot.count, snapshot.p50, snapshot.p90,
+                snapshot.p99, snapshot.max, snapshot.mean);
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.logchat.metrics;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.logchat.utilities.Constants;
+import com.example.logchat.utilities.DateFormatter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes the {@link Metrics} report to logcat and to a local file every
+ * {@link Constants#METRICS_DUMP_INTERVAL_MS}.
+ *
+ * Each report starts with a header describing the device class, so reports collected from
+ * several devices can be grouped by it. The file {@code metrics.log} in the app's files
+ * directory is rotated to {@code metrics.log.1} once it exceeds
+ * {@link Constants#METRICS_LOG_MAX_BYTES}. Reports are built and written on a background
+ * thread; recording is never blocked by a dump.
+ */
+public class MetricsReporter {
+    private static final String TAG = "Metrics";
+    private static final String LOG_FILE = "metrics.log";
+    private static volatile MetricsReporter instance;
+
+    private final File logFile;
+    private final File rotatedFile;
+    private final String deviceClass;
+    private final long startUptime = SystemClock.elapsedRealtime();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private boolean started;
+
+    /**
+     * Returns the shared reporter, creating it on first use.
+     * @param context Any context; the application context is retained.
+     * @return The process-wide {@link MetricsReporter}.
+     */
+    public static MetricsReporter getInstance(Context context) {
+        if (instance == null) {
+            synchronized (MetricsReporter.class) {
+                if (instance == null) {
+                    instance = new MetricsReporter(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    private MetricsReporter(Context context) {
+        logFile = new File(context.getFilesDir(), LOG_FILE);
+        rotatedFile = new File(context.getFilesDir(), LOG_FILE + ".1");
+        deviceClass = describeDevice(context);
+    }
+
+    /**
+     * Starts the periodic dumps. Further calls have no effect.
+     */
+    public synchronized void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        scheduler.scheduleWithFixedDelay(this::dump, Constants.METRICS_DUMP_INTERVAL_MS,
+                Constants.METRICS_DUMP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Builds the current report.
+     * @return A header with the time, process uptime and device class, followed by one line per metric.
+     */
+    public String buildReport() {
+        long uptimeMinutes = (SystemClock.elapsedRealtime() - startUptime) / 60000;
+        return String.format(Locale.US, "%s, up %d min, %s%n",
+                DateFormatter.format(System.currentTimeMillis()), uptimeMinutes, deviceClass)
+                + Metrics.getInstance().report();
+    }
+
+    /**
+     * @return The device class reports are tagged with.
+     */
+    public String getDeviceClass() {
+        return deviceClass;
+    }
+
+    // Write the report to logcat and append it to the log file
+    private void dump() {
+        String report = buildReport();
+        for (String line : report.split("\n")) {
+            Log.i(TAG, line); // Line by line, so long reports are not truncated
+        }
+        if (logFile.length() > Constants.METRICS_LOG_MAX_BYTES) {
+            rotatedFile.delete();
+            if (!logFile.renameTo(rotatedFile)) {
+                Log.w(TAG, "Unable to rotate " + logFile);
+            }
+        }
+        try (OutputStream output = new FileOutputStream(logFile, true)) {
+            output.write((report + "\n").getBytes(StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write " + logFile + ": " + e.getMessage());
+        }
+    }
+
+    // Model, platform, media performance class, cores and heap limit of this device
+    private static String describeDevice(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int performanceClass = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S ? Build.VERSION.MEDIA_PERFORMANCE_CLASS : 0;
+        return String.format(Locale.US, "%s %s, API %d, performance class %s, %d cores, %d MB heap%s",
+                Build.MANUFACTURER, Build.MODEL, Build.VERSION.SDK_INT,
+                performanceClass > 0 ? String.valueOf(performanceClass) : "none",
+                Runtime.getRuntime().availableProcessors(),
+                activityManager.getMemoryClass(),
+                activityManager.isLowRamDevice() ? ", low RAM" : "");
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.logchat.metrics;
+
+/**
+ * {@link Histogram} of durations in microseconds.
+ *
+ * A measurement starts with {@link #start()}, which returns a plain {@code long}, and ends
+ * with {@link #stop(long)}; nothing is allocated in between, so the start time can be kept
+ * in a local variable or captured by a callback that exists anyway.
+ */
+public class Timer extends Histogram {
+
+    /**
+     * Creates a timer. Use {@link Metrics#timer(String)} to get a registered one.
+     * @param name The name the timer is reported under.
+     */
+    Timer(String name) {
+        super(name);
+    }
+
+    /**
+     * @return The start time of a measurement, to be passed to {@link #stop(long)}.
+     */
+    public static long start() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Records the time elapsed since a measurement started.
+     * @param startNanos The value returned by {@link #start()}.
+     */
+    public void stop(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * Records a duration measured elsewhere, e.g. between two wall-clock timestamps.
+     * @param millis The duration in milliseconds.
+     */
+    public void recordMillis(long millis) {
+        record(millis * 1000);
+    }
+}
@@ -1,41 +1,173 @@
 package com.example.logchat.models;
 
 import java.util.Date;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Model class representing a chat message.
  * This class is used to encapsulate the data for a single chat message
  * exchanged between two users.
+ *
+ * Instances are immutable and kept compact because long conversations hold many of them:
+ * the timestamp is a primitive, participant IDs are shared between all messages of the
+ * same users, and the sent/received direction and RecyclerView ID are computed once at
+ * construction instead of on every bind.
  */
-public class ChatMessage {
+public final class ChatMessage {
+
+    // Participant IDs repeat on every message, so all messages share one instance per ID.
+    private static final ConcurrentHashMap<String, String> participantIds = new ConcurrentHashMap<>();
+
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    /**
+     * Stable ID for RecyclerView, derived from the document ID.
+     */
+    public final long id;
+
+    /**
+     * The Firestore document ID of the message.
+     * Used as the primary key of the local message store.
+     */
+    public final String documentId;
 
     /**
      * The ID of the user who sent the message.
-     * Static usage here implies it is shared across all instances, which might cause issues
-     * if multiple messages are being handled concurrently.
      */
-    public static String senderId;
+    public final String senderId;
 
     /**
      * The ID of the user who received the message.
      */
-    public String receiverId;
+    public final String receiverId;
 
     /**
      * The content of the message.
      */
-    public String message;
+    public final String message;
+
+    /**
+     * The time the message was sent, in epoch milliseconds.
+     * Used for sorting messages chronologically and formatted only when the message is displayed.
+     */
+    public final long timestamp;
+
+    /**
+     * The time the server stored the message, in epoch milliseconds, or {@code 0} if it is not
+     * known, e.g. for pending messages and messages read from the local store.
+     * Unlike {@link #timestamp} it comes from a single clock and grows with every write, so it
+     * is what the sync cursor follows.
+     */
+    public final long serverTimestamp;
 
     /**
-     * A formatted string representing the date and time when the message was sent.
-     * Example format: "MMMM dd, yyyy - hh:mm a"
+     * Whether the message was sent by the signed-in user.
      */
-    public String dateTime;
+    public final boolean sent;
 
     /**
-     * The actual date and time object representing when the message was sent.
-     * Used for sorting messages chronologically.
+     * Whether the message is still waiting in the local outbox and has not reached the server.
      */
-    public Date dateObject;
+    public final boolean pending;
+
+    /**
+     * Creates a chat message that is known to the server.
+     *
+     * @param documentId    The Firestore document ID
+     * @param senderId      The ID of the sender
+     * @param receiverId    The ID of the receiver
+     * @param message       The content of the message
+     * @param timestamp     The time the message was sent, in epoch milliseconds
+     * @param currentUserId The ID of the signed-in user, used to precompute the direction
+     */
+    public ChatMessage(String documentId, String senderId, String receiverId, String message,
+                       long timestamp, String currentUserId) {
+        this(documentId, senderId, receiverId, message, timestamp, currentUserId, false);
+    }
+
+    /**
+     * Creates a chat message.
+     *
+     * @param documentId    The Firestore document ID
+     * @param senderId      The ID of the sender
+     * @param receiverId    The ID of the receiver
+     * @param message       The content of the message
+     * @param timestamp     The time the message was sent, in epoch milliseconds
+     * @param currentUserId The ID of the signed-in user, used to precompute the direction
+     * @param pending       Whether the message has not reached the server yet
+     */
+    public ChatMessage(String documentId, String senderId, String receiverId, String message,
+                       long timestamp, String currentUserId, boolean pending) {
+        this(documentId, senderId, receiverId, message, timestamp, 0L, currentUserId, pending);
+    }
+
+    /**
+     * Creates a chat message read from the server.
+     *
+     * @param documentId      The Firestore document ID
+     * @param senderId        The ID of the sender
+     * @param receiverId      The ID of the receiver
+     * @param message         The content of the message
+     * @param timestamp       The time the message was sent, in epoch milliseconds
+     * @param serverTimestamp The time the server stored the message, in epoch milliseconds, or 0 if unknown
+     * @param currentUserId   The ID of the signed-in user, used to precompute the direction
+     * @param pending         Whether the message has not reached the server yet
+     */
+    public ChatMessage(String documentId, String senderId, String receiverId, String message,
+                       long timestamp, long serverTimestamp, String currentUserId, boolean pending) {
+        this.id = stableId(documentId);
+        this.documentId = documentId;
+        this.senderId = dedupe(senderId);
+        this.receiverId = dedupe(receiverId);
+        this.message = message;
+        this.timestamp = timestamp;
+        this.serverTimestamp = serverTimestamp;
+        this.sent = senderId != null && senderId.equals(currentUserId);
+        this.pending = pending;
+    }
+
+    /**
+     * Maps the fields of a message document as they are read from a snapshot.
+     *
+     * @param documentId      The Firestore document ID
+     * @param senderId        The ID of the sender
+     * @param receiverId      The ID of the receiver
+     * @param message         The content of the message
+     * @param timestamp       The time the message was sent
+     * @param serverTimestamp The time the server stored the message, {@code null} until the write is confirmed
+     * @param currentUserId   The ID of the signed-in user, used to precompute the direction
+     * @param pending         Whether the document has writes the server has not confirmed yet
+     * @return The message, or {@code null} if the document has no send time and is not a well-formed message.
+     */
+    public static ChatMessage fromDocument(String documentId, String senderId, String receiverId, String message,
+                                           Date timestamp, Date serverTimestamp, String currentUserId, boolean pending) {
+        if (timestamp == null) {
+            return null;
+        }
+        return new ChatMessage(documentId, senderId, receiverId, message, timestamp.getTime(),
+                serverTimestamp != null ? serverTimestamp.getTime() : 0L, currentUserId, pending);
+    }
+
+    // Return the shared instance of a participant ID
+    private static String dedupe(String userId) {
+        if (userId == null) {
+            return null;
+        }
+        String existing = participantIds.putIfAbsent(userId, userId);
+        return existing != null ? existing : userId;
+    }
 
+    // 64-bit FNV-1a hash of the document ID
+    private static long stableId(String documentId) {
+        if (documentId == null) {
+            return 0L;
+        }
+        long hash = FNV_OFFSET_BASIS;
+        for (int i = 0; i < documentId.length(); i++) {
+            hash ^= documentId.charAt(i);
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
 }
@@ -0,0 +1,52 @@
+package com.example.logchat.models;
+
+/**
+ * Model class representing the summary of a conversation on the home screen.
+ * The summary is denormalized into one Firestore document per pair of users, so the
+ * home screen can list recent conversations without reading any chat messages or
+ * user documents. The fields are resolved from the signed-in user's point of view.
+ */
+public class Conversation {
+
+    /**
+     * The conversation ID shared by both participants.
+     */
+    public String conversationId;
+
+    /**
+     * The ID of the other participant.
+     */
+    public String userId;
+
+    /**
+     * The name of the other participant.
+     */
+    public String name;
+
+    /**
+     * Content hash of the other participant's profile image.
+     */
+    public String imageHash;
+
+    /**
+     * The content of the most recent message.
+     */
+    public String lastMessage;
+
+    /**
+     * The time of the most recent message, in epoch milliseconds.
+     */
+    public long timestamp;
+
+    /**
+     * Returns the other participant as a {@link User} for opening the chat screen.
+     * @return A user carrying the ID, name and image hash of the other participant.
+     */
+    public User toUser() {
+        User user = new User();
+        user.id = userId;
+        user.name = name;
+        user.imageHash = imageHash;
+        return user;
+    }
+}
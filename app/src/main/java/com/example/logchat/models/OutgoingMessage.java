@@ -0,0 +1,45 @@
+package com.example.logchat.models;
+
+/**
+ * Model class representing a message recorded in the local outbox.
+ * Besides the message itself it carries everything needed to write the conversation
+ * summary, so the outbox can be drained after a process restart without any screen open.
+ */
+public class OutgoingMessage {
+
+    /**
+     * Position of the entry in the outbox; entries are sent in this order.
+     */
+    public long sequence;
+
+    /**
+     * The message, with its pre-generated Firestore document ID.
+     */
+    public ChatMessage message;
+
+    /**
+     * The name of the sender.
+     */
+    public String senderName;
+
+    /**
+     * Content hash of the sender's profile image.
+     */
+    public String senderImageHash;
+
+    /**
+     * The name of the receiver.
+     */
+    public String receiverName;
+
+    /**
+     * Content hash of the receiver's profile image.
+     */
+    public String receiverImageHash;
+
+    /**
+     * Whether a newer message of the conversation is already stored locally, so this entry must
+     * not replace the conversation summary. Decided each time the entry is drained.
+     */
+    public boolean keepSummary;
+}
@@ -4,11 +4,9 @@ import java.io.Serializable;
 
 /**
  * Model class representing a user in the chat application.
- * Extends `ChatMessage` to inherit sender and receiver information,
- * though this relationship might need reconsideration for clarity.
  * Implements `Serializable` to allow easy passing of user objects between activities.
  */
-public class User extends ChatMessage implements Serializable {
+public class User implements Serializable {
 
     /**
      * The name of the user.
@@ -17,10 +15,16 @@ public class User extends ChatMessage implements Serializable {
 
     /**
      * Base64-encoded string representing the user's profile image.
-     * This string can be decoded to display the image.
+     * For directory listings this is the thumbnail rendition, if the record has one.
      */
     public String image;
 
+    /**
+     * Content hash of the user's profile image.
+     * Directory listings carry only this hash; the image itself is fetched when displayed.
+     */
+    public String imageHash;
+
     /**
      * The email address of the user.
      */
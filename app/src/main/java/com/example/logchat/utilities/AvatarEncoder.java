@@ -0,0 +1,215 @@
+package com.example.logchat.utilities;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Encodes a picked photo into every {@link ImageRendition} off the main thread.
+ *
+ * The photo is decoded downsampled close to the full rendition, then each rendition is
+ * scaled with filtering and compressed to WebP. The highest quality whose output fits the
+ * rendition's byte budget is found by a binary search over a few quality steps; if even the
+ * lowest quality is too large, the image is scaled down further. Encode times are logged
+ * under the tag {@code AvatarEncoder} and returned with the result.
+ */
+public class AvatarEncoder {
+    private static final String TAG = "AvatarEncoder";
+    private static final int MIN_QUALITY = 30;
+    private static final int MAX_QUALITY = 90;
+    private static final int QUALITY_STEP = 10;
+    private static final float SHRINK_FACTOR = 0.8f; // Applied when the budget is missed at MIN_QUALITY
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Receives the encoded renditions on the main thread.
+     */
+    public interface Callback {
+        /**
+         * @param avatar The encoded avatar, or {@code null} if the photo could not be read.
+         */
+        void onEncoded(EncodedAvatar avatar);
+    }
+
+    /**
+     * The renditions of one avatar.
+     */
+    public static class EncodedAvatar {
+        /** The bubble-size bitmap, for showing the picked photo right away. */
+        public final Bitmap preview;
+        /** Time spent decoding and encoding, in milliseconds. */
+        public final long encodeMillis;
+        private final Map<ImageRendition, byte[]> renditions;
+
+        EncodedAvatar(Bitmap preview, Map<ImageRendition, byte[]> renditions, long encodeMillis) {
+            this.preview = preview;
+            this.renditions = renditions;
+            this.encodeMillis = encodeMillis;
+        }
+
+        /**
+         * @param rendition The rendition.
+         * @return The encoded WebP file.
+         */
+        public byte[] getBytes(ImageRendition rendition) {
+            return renditions.get(rendition);
+        }
+
+        /**
+         * @param rendition The rendition.
+         * @return The encoded file as Base64, as stored in Firestore.
+         */
+        public String getEncoded(ImageRendition rendition) {
+            return Base64.encodeToString(renditions.get(rendition), Base64.DEFAULT);
+        }
+
+        /**
+         * @return The content hash of the full rendition, which identifies the avatar.
+         */
+        public String getImageHash() {
+            return HashUtils.sha256Hex(renditions.get(ImageRendition.FULL));
+        }
+    }
+
+    private AvatarEncoder() {
+    }
+
+    /**
+     * Reads a photo and encodes all renditions in the background.
+     * @param contentResolver Resolver used to open the photo.
+     * @param uri             The photo picked by the user.
+     * @param callback        Receives the result on the main thread.
+     */
+    public static void encode(ContentResolver contentResolver, Uri uri, Callback callback) {
+        executor.execute(() -> {
+            EncodedAvatar avatar = null;
+            try {
+                avatar = encode(contentResolver, uri);
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Unable to encode avatar: " + e.getMessage());
+            }
+            EncodedAvatar result = avatar;
+            mainHandler.post(() -> callback.onEncoded(result));
+        });
+    }
+
+    // Decode the photo once and encode every rendition from it
+    private static EncodedAvatar encode(ContentResolver contentResolver, Uri uri) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        Bitmap source = decodeSampled(contentResolver, uri, ImageRendition.FULL.maxDimension);
+        if (source == null) {
+            return null;
+        }
+        Map<ImageRendition, byte[]> renditions = new EnumMap<>(ImageRendition.class);
+        Bitmap preview = null;
+        for (ImageRendition rendition : ImageRendition.values()) {
+            long renditionStart = SystemClock.elapsedRealtime();
+            Bitmap scaled = scale(source, rendition.maxDimension);
+            renditions.put(rendition, compress(scaled, rendition));
+            if (rendition == ImageRendition.BUBBLE) {
+                preview = scaled;
+            } else if (scaled != source) {
+                scaled.recycle();
+            }
+            Log.i(TAG, rendition.key + ": " + renditions.get(rendition).length + " bytes in "
+                    + (SystemClock.elapsedRealtime() - renditionStart) + " ms");
+        }
+        long encodeMillis = SystemClock.elapsedRealtime() - start;
+        Log.i(TAG, "Encoded all renditions in " + encodeMillis + " ms");
+        return new EncodedAvatar(preview, renditions, encodeMillis);
+    }
+
+    // Decode with the largest power-of-two reduction that keeps the long side above the target
+    private static Bitmap decodeSampled(ContentResolver contentResolver, Uri uri, int maxDimension) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream input = contentResolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(input, null, options);
+        }
+        int longSide = Math.max(options.outWidth, options.outHeight);
+        if (longSide <= 0) {
+            return null;
+        }
+        int inSampleSize = 1;
+        while (longSide / (inSampleSize * 2) >= maxDimension) {
+            inSampleSize *= 2;
+        }
+        options = new BitmapFactory.Options();
+        options.inSampleSize = inSampleSize;
+        try (InputStream input = contentResolver.openInputStream(uri)) {
+            return BitmapFactory.decodeStream(input, null, options);
+        }
+    }
+
+    // Scale so the long side is at most maxDimension, keeping the aspect ratio
+    private static Bitmap scale(Bitmap source, int maxDimension) {
+        int longSide = Math.max(source.getWidth(), source.getHeight());
+        if (longSide <= maxDimension) {
+            return source;
+        }
+        float factor = (float) maxDimension / longSide;
+        return Bitmap.createScaledBitmap(source,
+                Math.max(1, Math.round(source.getWidth() * factor)),
+                Math.max(1, Math.round(source.getHeight() * factor)),
+                true); // Filter, unlike nearest-neighbour scaling this does not alias
+    }
+
+    // Best quality within the byte budget, shrinking the image if no quality fits
+    private static byte[] compress(Bitmap bitmap, ImageRendition rendition) {
+        Bitmap current = bitmap;
+        while (true) {
+            byte[] best = null;
+            int low = 0;
+            int high = (MAX_QUALITY - MIN_QUALITY) / QUALITY_STEP;
+            while (low <= high) {
+                int step = (low + high) / 2;
+                byte[] bytes = compress(current, MIN_QUALITY + step * QUALITY_STEP);
+                if (bytes.length <= rendition.maxBytes) {
+                    best = bytes;
+                    low = step + 1;
+                } else {
+                    high = step - 1;
+                }
+            }
+            if (best != null || Math.max(current.getWidth(), current.getHeight()) <= 16) {
+                byte[] result = best != null ? best : compress(current, MIN_QUALITY);
+                if (current != bitmap) {
+                    current.recycle();
+                }
+                return result;
+            }
+            Bitmap smaller = scale(current, (int) (Math.max(current.getWidth(), current.getHeight()) * SHRINK_FACTOR));
+            if (current != bitmap) {
+                current.recycle();
+            }
+            current = smaller;
+        }
+    }
+
+    @SuppressWarnings("deprecation") // WEBP is the only WebP format before API 30
+    private static byte[] compress(Bitmap bitmap, int quality) {
+        Bitmap.CompressFormat format = Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                ? Bitmap.CompressFormat.WEBP_LOSSY
+                : Bitmap.CompressFormat.WEBP;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bitmap.compress(format, quality, output);
+        return output.toByteArray();
+    }
+}
@@ -0,0 +1,187 @@
+package com.example.logchat.utilities;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Base64;
+import android.util.LruCache;
+
+import java.io.File;
+
+/**
+ * App-wide memory cache for decoded profile images.
+ *
+ * Entries are keyed by user ID plus a hash of the encoded image, so a changed avatar
+ * never hits a stale bitmap, and the cache is bounded by the total byte size of the
+ * bitmaps it holds. The least recently used bitmaps are evicted first, and the cache
+ * shrinks when the system reports memory pressure through {@link #trimMemory(int)}.
+ */
+public class BitmapCache {
+    private static volatile BitmapCache instance;
+
+    private final LruCache<String, Bitmap> cache;
+
+    /**
+     * Returns the shared cache, creating it on first use.
+     * @return The process-wide {@link BitmapCache}.
+     */
+    public static BitmapCache getInstance() {
+        if (instance == null) {
+            synchronized (BitmapCache.class) {
+                if (instance == null) {
+                    // Use an eighth of the heap available to the app for decoded avatars.
+                    int maxBytes = (int) Math.min(Runtime.getRuntime().maxMemory() / 8, Integer.MAX_VALUE);
+                    instance = new BitmapCache(maxBytes);
+                }
+            }
+        }
+        return instance;
+    }
+
+    private BitmapCache(int maxBytes) {
+        cache = new LruCache<String, Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                return bitmap.getAllocationByteCount();
+            }
+        };
+    }
+
+    /**
+     * Returns the decoded profile image of a user, decoding and caching it on a miss.
+     * @param userId       The ID of the user the image belongs to.
+     * @param encodedImage The Base64-encoded image.
+     * @return The decoded bitmap, or {@code null} if there is no image or it cannot be decoded.
+     */
+    public Bitmap getBitmap(String userId, String encodedImage) {
+        if (encodedImage == null) {
+            return null;
+        }
+        String key = getKey(userId, encodedImage, 0, 0);
+        Bitmap bitmap = cache.get(key);
+        if (bitmap == null) {
+            bitmap = decode(encodedImage, 0, 0);
+            if (bitmap != null) {
+                cache.put(key, bitmap);
+            }
+        }
+        return bitmap;
+    }
+
+    /**
+     * Returns a cached bitmap without decoding.
+     * @param key The key built by {@link #getKey(String, String, int, int)}.
+     * @return The cached bitmap, or {@code null} on a miss.
+     */
+    public Bitmap get(String key) {
+        return cache.get(key);
+    }
+
+    /**
+     * Stores a decoded bitmap.
+     * @param key    The key built by {@link #getKey(String, String, int, int)}.
+     * @param bitmap The decoded bitmap.
+     */
+    public void put(String key, Bitmap bitmap) {
+        cache.put(key, bitmap);
+    }
+
+    /**
+     * Releases cached bitmaps according to the memory pressure reported by the system.
+     * @param level The level passed to {@link ComponentCallbacks2#onTrimMemory(int)}.
+     */
+    public void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_MODERATE) {
+            cache.evictAll(); // The app is likely to be killed soon; free everything.
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            cache.trimToSize(cache.size() / 2);
+        }
+    }
+
+    /**
+     * Builds the cache key from the user ID, a hash of the encoded image and the requested size.
+     * @param userId       The ID of the user the image belongs to.
+     * @param encodedImage The Base64-encoded image.
+     * @param reqWidth     The requested width in pixels, or {@code 0} for the full size.
+     * @param reqHeight    The requested height in pixels, or {@code 0} for the full size.
+     * @return The cache key.
+     */
+    public static String getKey(String userId, String encodedImage, int reqWidth, int reqHeight) {
+        return userId + ":" + Integer.toHexString(encodedImage.hashCode()) + ":" + encodedImage.length()
+                + ":" + reqWidth + "x" + reqHeight;
+    }
+
+    /**
+     * Builds the cache key of an image identified by its content hash rather than its encoded bytes.
+     * @param userId    The ID of the user the image belongs to.
+     * @param imageHash The content hash of the image, may be {@code null} if unknown.
+     * @param reqWidth  The requested width in pixels, or {@code 0} for the full size.
+     * @param reqHeight The requested height in pixels, or {@code 0} for the full size.
+     * @return The cache key.
+     */
+    public static String getHashKey(String userId, String imageHash, int reqWidth, int reqHeight) {
+        return userId + ":#" + imageHash + ":" + reqWidth + "x" + reqHeight;
+    }
+
+    /**
+     * Decodes a Base64 image, downsampling it to the smallest power-of-two reduction
+     * that still covers the requested size.
+     * @param encodedImage The Base64-encoded image.
+     * @param reqWidth     The requested width in pixels, or {@code 0} for the full size.
+     * @param reqHeight    The requested height in pixels, or {@code 0} for the full size.
+     * @return The decoded bitmap, or {@code null} if it cannot be decoded.
+     */
+    public static Bitmap decode(String encodedImage, int reqWidth, int reqHeight) {
+        return decode(Base64.decode(encodedImage, Base64.DEFAULT), reqWidth, reqHeight);
+    }
+
+    /**
+     * Decodes an encoded image file held in memory, downsampling it like
+     * {@link #decode(String, int, int)}.
+     * @param bytes     The encoded image file.
+     * @param reqWidth  The requested width in pixels, or {@code 0} for the full size.
+     * @param reqHeight The requested height in pixels, or {@code 0} for the full size.
+     * @return The decoded bitmap, or {@code null} if it cannot be decoded.
+     */
+    public static Bitmap decode(byte[] bytes, int reqWidth, int reqHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (reqWidth > 0 && reqHeight > 0) {
+            options.inJustDecodeBounds = true; // Read the dimensions without allocating pixels
+            BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+            options.inJustDecodeBounds = false;
+        }
+        return BitmapFactory.decodeByteArray(bytes, 0, bytes.length, options);
+    }
+
+    /**
+     * Decodes an image file, streaming it from disk and downsampling it like
+     * {@link #decode(String, int, int)}.
+     * @param file      The image file.
+     * @param reqWidth  The requested width in pixels, or {@code 0} for the full size.
+     * @param reqHeight The requested height in pixels, or {@code 0} for the full size.
+     * @return The decoded bitmap, or {@code null} if it cannot be read or decoded.
+     */
+    public static Bitmap decodeFile(File file, int reqWidth, int reqHeight) {
+        String path = file.getPath();
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        if (reqWidth > 0 && reqHeight > 0) {
+            options.inJustDecodeBounds = true; // Only the header is read
+            BitmapFactory.decodeFile(path, options);
+            options.inSampleSize = calculateInSampleSize(options.outWidth, options.outHeight, reqWidth, reqHeight);
+            options.inJustDecodeBounds = false;
+        }
+        return BitmapFactory.decodeFile(path, options);
+    }
+
+    // Largest power of two that keeps both dimensions at or above the requested size
+    private static int calculateInSampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int inSampleSize = 1;
+        while (width / (inSampleSize * 2) >= reqWidth && height / (inSampleSize * 2) >= reqHeight) {
+            inSampleSize *= 2;
+        }
+        return inSampleSize;
+    }
+}
@@ -21,6 +21,15 @@ public class Constants {
     /** Firestore collection name for storing conversations. */
     public static final String KEY_COLLECTION_CONVERSATIONS = "conversations";
 
+    /** Firestore collection name for the lightweight user directory records (no full images or passwords). */
+    public static final String KEY_COLLECTION_USER_DIRECTORY = "userDirectory";
+
+    /** Firestore collection of presence records, one small document per user ID with only availability and last-seen time. */
+    public static final String KEY_COLLECTION_PRESENCE = "presence";
+
+    /** Subcollection of a user document holding smaller profile image renditions. */
+    public static final String KEY_COLLECTION_IMAGES = "images";
+
     // ------------------- Firestore Document Fields -------------------
 
     /** Key for the user's name field. */
@@ -29,12 +38,27 @@ public class Constants {
     /** Key for the user's email field. */
     public static final String KEY_EMAIL = "email";
 
-    /** Key for the user's password field. */
+    /** Key for the legacy plaintext password field; only read to migrate accounts to credential records. */
     public static final String KEY_PASSWORD = "password";
 
-    /** Key for the user's profile image field. */
+    /**
+     * Key for the user's Base64 profile image field in Firestore. Kept out of preferences;
+     * the local copy lives in the {@link ImageFileCache}.
+     */
     public static final String KEY_IMAGE = "image";
 
+    /** Key for the Base64 thumbnail rendition of the profile image in a directory record. */
+    public static final String KEY_IMAGE_THUMBNAIL = "imageThumbnail";
+
+    /** Key for the content hash of the user's profile image. */
+    public static final String KEY_IMAGE_HASH = "imageHash";
+
+    /** Key for the document ID of a message in a push payload. */
+    public static final String KEY_MESSAGE_ID = "messageId";
+
+    /** Key for the conversation ID in a push payload. */
+    public static final String KEY_CONVERSATION_ID = "conversationId";
+
     /** Key for storing the user's Firebase Cloud Messaging (FCM) token. */
     public static final String KEY_FCM_TOKEN = "fcmToken";
 
@@ -44,6 +68,9 @@ public class Constants {
     /** Key for the user's availability status. */
     public static final String KEY_AVAILABILITY = "availability";
 
+    /** Key for the server time of the user's last presence write. */
+    public static final String KEY_LAST_SEEN = "lastSeen";
+
     /** Key for the sender ID field in chat messages. */
     public static final String KEY_SENDER_ID = "senderId";
 
@@ -56,6 +83,9 @@ public class Constants {
     /** Key for the timestamp field in chat messages or conversations. */
     public static final String KEY_TIMESTAMP = "timestamp";
 
+    /** Key for the time the server stored a chat message, which orders the sync of new messages. */
+    public static final String KEY_SERVER_TIMESTAMP = "serverTimestamp";
+
     /** Key for the last message field in conversations. */
     public static final String KEY_LAST_MESSAGE = "lastMessage";
 
@@ -71,14 +101,32 @@ public class Constants {
     /** Key for the receiver's profile image in conversations. */
     public static final String KEY_RECEIVER_IMAGE = "receiverImage";
 
+    /** Key for the content hash of the sender's profile image in conversations. */
+    public static final String KEY_SENDER_IMAGE_HASH = "senderImageHash";
+
+    /** Key for the content hash of the receiver's profile image in conversations. */
+    public static final String KEY_RECEIVER_IMAGE_HASH = "receiverImageHash";
+
+    /** Key for the array of both participant IDs in conversations, used to query either role. */
+    public static final String KEY_PARTICIPANTS = "participants";
+
     // ------------------- Shared Preferences Keys -------------------
 
     /** Name of the shared preferences file. */
     public static final String KEY_PREFERENCE_NAME = "chatAppPreference";
 
+    /**
+     * Whether preferences are kept in a memory-mapped log ({@link MappedLogStore}) instead of
+     * SharedPreferences. Existing SharedPreferences values are imported on the first start.
+     */
+    public static final boolean USE_MAPPED_PREFERENCES = false;
+
     /** Key for checking if a user is signed in. */
     public static final String KEY_IS_SIGNED_IN = "isSignedIn";
 
+    /** Key for the last FCM token that was written to the user's document. */
+    public static final String KEY_SYNCED_FCM_TOKEN = "syncedFcmToken";
+
     // ------------------- Additional Fields -------------------
 
     /** Key for storing the user's first name. */
@@ -89,4 +137,88 @@ public class Constants {
 
     /** Key for passing user information between activities. */
     public static final String KEY_USER = "user";
+
+    // ------------------- Credentials and Session -------------------
+
+    /** Firestore collection of credential records, keyed by a hash of the normalized email. */
+    public static final String KEY_COLLECTION_CREDENTIALS = "credentials";
+
+    /** Key for the salted password hash in credential records. */
+    public static final String KEY_PASSWORD_HASH = "passwordHash";
+
+    /** Key for the password salt in credential records. */
+    public static final String KEY_PASSWORD_SALT = "passwordSalt";
+
+    /** Key for the PBKDF2 iteration count in credential records. */
+    public static final String KEY_PASSWORD_ITERATIONS = "passwordIterations";
+
+    /** Key for the signed session token in shared preferences. */
+    public static final String KEY_SESSION_TOKEN = "sessionToken";
+
+    /**
+     * PBKDF2 iteration count for new password hashes. PasswordHashBenchmark measures about 13 ms
+     * per hash at this count on a desktop JVM; a low-end device, roughly ten times slower, spends
+     * about 130 ms, which leaves room for the credential lookup in the 250 ms sign-in budget.
+     * Re-run the benchmark before changing the count.
+     */
+    public static final int PASSWORD_HASH_ITERATIONS = 20000;
+
+    /** Maximum age of a cached session before the user has to sign in again. */
+    public static final long SESSION_MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000;
+
+    // ------------------- Paging -------------------
+
+    /** Number of chat messages loaded per page. */
+    public static final int MESSAGE_PAGE_SIZE = 30;
+
+    /** Number of messages left above the first visible row before the next older page is requested. */
+    public static final int MESSAGE_PREFETCH_DISTANCE = 10;
+
+    /** Number of user directory records loaded per page. */
+    public static final int USER_PAGE_SIZE = 25;
+
+    /** Number of users left below the last visible row before the next page is requested. */
+    public static final int USER_PREFETCH_DISTANCE = 10;
+
+    /** Window in milliseconds during which consecutive sends are committed as one batch. */
+    public static final long MESSAGE_SEND_COALESCE_MS = 150;
+
+    /** Maximum number of messages committed in one send batch. */
+    public static final int MESSAGE_SEND_MAX_BATCH = 100;
+
+    /** Maximum total size of the profile images kept in the on-disk image cache. */
+    public static final long IMAGE_FILE_CACHE_MAX_BYTES = 20L * 1024 * 1024;
+
+    /** Window in milliseconds during which pushed messages of one conversation update its notification once. */
+    public static final long NOTIFICATION_COALESCE_MS = 1000;
+
+    /** Maximum number of recent conversations listed on the home screen. */
+    public static final int RECENT_CONVERSATION_LIMIT = 200;
+
+    /** Time in milliseconds the app must stay in the foreground or background before availability is written. */
+    public static final long PRESENCE_DEBOUNCE_MS = 2000;
+
+    /** Default interval in milliseconds between presence heartbeats while the app is in the foreground. */
+    public static final long PRESENCE_HEARTBEAT_MS = 60000;
+
+    /** Shortest heartbeat interval that can be configured, which bounds the heartbeat writes per hour. */
+    public static final long PRESENCE_MIN_HEARTBEAT_MS = 15000;
+
+    /** Age in milliseconds after which an available user without a newer heartbeat is shown as offline. */
+    public static final long PRESENCE_TIMEOUT_MS = 150000;
+
+    /** Time in milliseconds a shared snapshot listener stays attached after its last observer stopped. */
+    public static final long SNAPSHOT_LISTENER_GRACE_MS = 5000;
+
+    /** Host of the Firestore emulator to connect to, e.g. "10.0.2.2" from an emulator; empty for the live backend. */
+    public static final String FIRESTORE_EMULATOR_HOST = "";
+
+    /** Port of the Firestore emulator. */
+    public static final int FIRESTORE_EMULATOR_PORT = 8080;
+
+    /** Interval in milliseconds between metrics reports written to logcat and the metrics file. */
+    public static final long METRICS_DUMP_INTERVAL_MS = 15L * 60 * 1000;
+
+    /** Size in bytes above which the metrics file is rotated. */
+    public static final long METRICS_LOG_MAX_BYTES = 256L * 1024;
 }
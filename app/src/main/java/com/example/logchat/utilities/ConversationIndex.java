@@ -0,0 +1,85 @@
+package com.example.logchat.utilities;
+
+import com.example.logchat.models.Conversation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * List of recent conversations ordered newest first, indexed by conversation ID.
+ *
+ * When a conversation receives a new message only its own row moves: the old row is found
+ * through the index and a binary search, and the new position by another binary search, so
+ * an update costs O(log n) comparisons instead of re-sorting the whole list. Each operation
+ * returns the positions it touched so the adapter can be notified precisely.
+ */
+public class ConversationIndex {
+
+    private final List<Conversation> conversations = new ArrayList<>();
+    private final Map<String, Conversation> byConversationId = new HashMap<>(); // Stored instance per conversation ID
+
+    /**
+     * Returns the backing list, newest first.
+     * The list must only be modified through this index.
+     * @return The indexed conversations.
+     */
+    public List<Conversation> getConversations() {
+        return conversations;
+    }
+
+    /**
+     * Inserts a conversation or replaces the stored version of it.
+     * @param conversation The new state of the conversation.
+     * @return An array of {@code {from, to}}; {@code from} is {@code -1} if the conversation is new.
+     */
+    public int[] upsert(Conversation conversation) {
+        int from = remove(conversation.conversationId);
+        int to = insertionPoint(conversation);
+        conversations.add(to, conversation);
+        byConversationId.put(conversation.conversationId, conversation);
+        return new int[]{from, to};
+    }
+
+    /**
+     * Removes a conversation.
+     * @param conversationId The ID of the conversation to remove.
+     * @return The position it was removed from, or {@code -1} if it was not present.
+     */
+    public int remove(String conversationId) {
+        Conversation stored = byConversationId.remove(conversationId);
+        if (stored == null) {
+            return -1;
+        }
+        int position = insertionPoint(stored) - 1;
+        while (conversations.get(position) != stored) {
+            position--; // Conversations with the same timestamp are adjacent
+        }
+        conversations.remove(position);
+        return position;
+    }
+
+    /**
+     * Removes every conversation.
+     */
+    public void clear() {
+        conversations.clear();
+        byConversationId.clear();
+    }
+
+    // First position whose conversation is older than the given one
+    private int insertionPoint(Conversation conversation) {
+        int low = 0;
+        int high = conversations.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (conversations.get(middle).timestamp >= conversation.timestamp) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
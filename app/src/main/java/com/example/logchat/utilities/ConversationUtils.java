@@ -0,0 +1,25 @@
+package com.example.logchat.utilities;
+
+/**
+ * Helpers for identifying the one-to-one conversation between two users.
+ */
+public class ConversationUtils {
+
+    private ConversationUtils() {
+    }
+
+    /**
+     * Builds a stable conversation ID for a pair of users.
+     * The ID does not depend on which user is the sender, so both participants
+     * resolve the same conversation.
+     * @param firstUserId  The ID of one participant.
+     * @param secondUserId The ID of the other participant.
+     * @return The conversation ID shared by both users.
+     */
+    public static String getConversationId(String firstUserId, String secondUserId) {
+        if (firstUserId.compareTo(secondUserId) <= 0) {
+            return firstUserId + "_" + secondUserId;
+        }
+        return secondUserId + "_" + firstUserId;
+    }
+}
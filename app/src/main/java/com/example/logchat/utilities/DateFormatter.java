@@ -0,0 +1,100 @@
+package com.example.logchat.utilities;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Formats message timestamps as readable strings, e.g. "March 05, 2025 - 04:12 PM".
+ *
+ * Formatting is meant to happen lazily when a row is bound. Each thread reuses its own
+ * {@link SimpleDateFormat}, since the class is not thread-safe, and the formatted strings
+ * are cached per minute: the pattern has minute precision, so every message sent within
+ * the same minute shares one string. The cache and the formatters are dropped when the default
+ * locale or time zone changes, e.g. after travelling across zones.
+ */
+public class DateFormatter {
+    private static final String PATTERN = "MMMM dd, yyyy - hh:mm a";
+    private static final int MAX_CACHED_MINUTES = 512;
+    private static final long MILLIS_PER_MINUTE = 60_000L;
+
+    private static final ThreadLocal<LocalizedFormatter> formatters = new ThreadLocal<>();
+
+    // Access-ordered so the least recently displayed minute is evicted first.
+    private static final Map<Long, String> cache = new LinkedHashMap<Long, String>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, String> eldest) {
+            return size() > MAX_CACHED_MINUTES;
+        }
+    };
+    private static Locale cacheLocale;
+    private static String cacheZoneId;
+
+    private DateFormatter() {
+    }
+
+    /**
+     * Formats a timestamp as a readable date and time.
+     * @param date The timestamp to format.
+     * @return The formatted string, or an empty string if {@code date} is {@code null}.
+     */
+    public static String format(Date date) {
+        return date == null ? "" : format(date.getTime());
+    }
+
+    /**
+     * Formats an epoch-millisecond timestamp as a readable date and time.
+     * @param timestamp The timestamp in epoch milliseconds.
+     * @return The formatted string.
+     */
+    public static String format(long timestamp) {
+        long minute = Math.floorDiv(timestamp, MILLIS_PER_MINUTE);
+        Locale locale = Locale.getDefault();
+        TimeZone zone = TimeZone.getDefault();
+        synchronized (cache) {
+            if (!locale.equals(cacheLocale) || !zone.getID().equals(cacheZoneId)) {
+                cache.clear(); // Cached strings were formatted for another locale or time zone
+                cacheLocale = locale;
+                cacheZoneId = zone.getID();
+            }
+            String formatted = cache.get(minute);
+            if (formatted != null) {
+                return formatted;
+            }
+        }
+        String formatted = getFormatter(locale, zone).format(new Date(minute * MILLIS_PER_MINUTE));
+        synchronized (cache) {
+            if (locale.equals(cacheLocale) && zone.getID().equals(cacheZoneId)) {
+                cache.put(minute, formatted);
+            }
+        }
+        return formatted;
+    }
+
+    // Return this thread's formatter, recreating it if the locale or time zone changed
+    private static SimpleDateFormat getFormatter(Locale locale, TimeZone zone) {
+        LocalizedFormatter formatter = formatters.get();
+        if (formatter == null || !locale.equals(formatter.locale) || !zone.getID().equals(formatter.zoneId)) {
+            formatter = new LocalizedFormatter(locale, zone);
+            formatters.set(formatter);
+        }
+        return formatter.format;
+    }
+
+    // A formatter together with the locale and time zone it was created for
+    private static class LocalizedFormatter {
+        final Locale locale;
+        final String zoneId;
+        final SimpleDateFormat format;
+
+        LocalizedFormatter(Locale locale, TimeZone zone) {
+            this.locale = locale;
+            this.zoneId = zone.getID();
+            this.format = new SimpleDateFormat(PATTERN, locale);
+            this.format.setTimeZone(zone);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.logchat.utilities;
+
+import android.util.Base64;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Hashing and hex encoding helpers, used to identify images by their bytes and to
+ * derive document keys.
+ */
+public class HashUtils {
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    private HashUtils() {
+    }
+
+    /**
+     * Computes the SHA-256 digest of a byte array.
+     * @param bytes The bytes to hash.
+     * @return The digest as a lowercase hexadecimal string.
+     */
+    public static String sha256Hex(byte[] bytes) {
+        try {
+            return toHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e); // Guaranteed on Android
+        }
+    }
+
+    /**
+     * Encodes bytes as a hexadecimal string.
+     * @param bytes The bytes to encode.
+     * @return The lowercase hexadecimal representation.
+     */
+    public static String toHex(byte[] bytes) {
+        char[] hex = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            hex[i * 2] = HEX_DIGITS[(bytes[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX_DIGITS[bytes[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Decodes a hexadecimal string produced by {@link #toHex(byte[])}.
+     * @param hex The hexadecimal string.
+     * @return The decoded bytes.
+     * @throws IllegalArgumentException If the string is not valid hexadecimal.
+     */
+    public static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd number of hex digits");
+        }
+        byte[] bytes = new byte[hex.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) {
+                throw new IllegalArgumentException("Invalid hex digit");
+            }
+            bytes[i] = (byte) ((high << 4) | low);
+        }
+        return bytes;
+    }
+
+    /**
+     * Computes the content hash of a Base64-encoded image.
+     * The hash covers the raw image bytes, so it does not depend on the Base64 line wrapping.
+     * @param encodedImage The Base64-encoded image.
+     * @return The hash, or {@code null} if there is no image.
+     */
+    public static String imageHash(String encodedImage) {
+        if (encodedImage == null) {
+            return null;
+        }
+        return sha256Hex(Base64.decode(encodedImage, Base64.DEFAULT));
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.logchat.utilities;
+
+import android.content.Context;
+import android.util.Base64;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Content-addressed on-disk store for profile images.
+ *
+ * Each image is kept as raw bytes in a file named after the SHA-256 of those bytes, the same
+ * hash that is stored as {@link Constants#KEY_IMAGE_HASH}. Preferences and documents only
+ * need to carry the hash; loaders decode straight from the file. Smaller renditions of an
+ * image are stored next to it under {@link #getKey(String, ImageRendition)}. Files are written to a
+ * temporary name first and renamed, so a reader never sees a partial image. The directory
+ * is bounded by {@link Constants#IMAGE_FILE_CACHE_MAX_BYTES}; the least recently used
+ * images are deleted first and fetched again when needed. Hashes come from remote documents,
+ * so any key that is not a SHA-256 hex digest, optionally with a rendition suffix, is rejected
+ * before it reaches the file system.
+ *
+ * Methods touch the disk and must not be called on the main thread.
+ */
+public class ImageFileCache {
+    private static final int HASH_LENGTH = 64; // Hex digits of a SHA-256 digest
+
+    private static volatile ImageFileCache instance;
+
+    private final File directory;
+
+    /**
+     * Returns the shared cache, creating it on first use.
+     * @param context Any context, used to locate the files directory.
+     * @return The process-wide {@link ImageFileCache}.
+     */
+    public static ImageFileCache getInstance(Context context) {
+        if (instance == null) {
+            synchronized (ImageFileCache.class) {
+                if (instance == null) {
+                    instance = new ImageFileCache(new File(context.getApplicationContext().getFilesDir(), "images"));
+                }
+            }
+        }
+        return instance;
+    }
+
+    ImageFileCache(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns the file name of a rendition of an image.
+     * @param imageHash The content hash of the full image.
+     * @param rendition The rendition.
+     * @return The key, equal to the hash for the full rendition.
+     */
+    public static String getKey(String imageHash, ImageRendition rendition) {
+        return rendition == ImageRendition.FULL ? imageHash : imageHash + "-" + rendition.key;
+    }
+
+    /**
+     * Returns the file of an image and marks it as recently used.
+     * @param key The content hash of the image or a key from {@link #getKey(String, ImageRendition)},
+     *            may be {@code null}.
+     * @return The file, or {@code null} if the image is not stored or the key is not valid.
+     */
+    public File getFile(String key) {
+        if (!isValidKey(key)) {
+            return null;
+        }
+        File file = new File(directory, key);
+        if (!file.isFile()) {
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis()); // Recency for eviction
+        return file;
+    }
+
+    /**
+     * Stores raw image bytes under their content hash.
+     * @param bytes The encoded image file, e.g. JPEG bytes.
+     * @return The content hash, or {@code null} if the image could not be written.
+     */
+    public String put(byte[] bytes) {
+        String imageHash = HashUtils.sha256Hex(bytes);
+        return put(imageHash, bytes) ? imageHash : null;
+    }
+
+    /**
+     * Stores image bytes under a key derived from the content hash of the full image.
+     * @param key   A key from {@link #getKey(String, ImageRendition)}.
+     * @param bytes The encoded image file.
+     * @return {@code true} if the image is stored, {@code false} if it could not be written or the key is not valid.
+     */
+    public boolean put(String key, byte[] bytes) {
+        if (!isValidKey(key)) {
+            return false;
+        }
+        File file = new File(directory, key);
+        if (file.isFile()) {
+            file.setLastModified(System.currentTimeMillis());
+            return true; // Same content, nothing to write
+        }
+        synchronized (this) {
+            if (!directory.isDirectory() && !directory.mkdirs()) {
+                return false;
+            }
+            File temp = new File(directory, key + ".tmp");
+            try (FileOutputStream output = new FileOutputStream(temp)) {
+                output.write(bytes);
+            } catch (IOException e) {
+                temp.delete();
+                return false;
+            }
+            if (!temp.renameTo(file)) {
+                temp.delete();
+                return false;
+            }
+            trim();
+        }
+        return true;
+    }
+
+    /**
+     * Stores a Base64-encoded image, as kept in Firestore, as raw bytes.
+     * @param encodedImage The Base64-encoded image, may be {@code null}.
+     * @return The content hash, equal to {@link HashUtils#imageHash(String)}, or {@code null}.
+     */
+    public String putEncoded(String encodedImage) {
+        if (encodedImage == null) {
+            return null;
+        }
+        return put(Base64.decode(encodedImage, Base64.DEFAULT));
+    }
+
+    // Whether a key is a lowercase SHA-256 hex digest, optionally followed by a rendition suffix
+    static boolean isValidKey(String key) {
+        if (key == null || key.length() < HASH_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < HASH_LENGTH; i++) {
+            char c = key.charAt(i);
+            if ((c < '0' || c > '9') && (c < 'a' || c > 'f')) {
+                return false;
+            }
+        }
+        if (key.length() == HASH_LENGTH) {
+            return true;
+        }
+        for (ImageRendition rendition : ImageRendition.values()) {
+            if (rendition != ImageRendition.FULL && key.length() == HASH_LENGTH + 1 + rendition.key.length()
+                    && key.charAt(HASH_LENGTH) == '-' && key.endsWith(rendition.key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Delete the least recently used images until the directory fits its budget
+    private void trim() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long total = 0;
+        for (File file : files) {
+            total += file.length();
+        }
+        if (total <= Constants.IMAGE_FILE_CACHE_MAX_BYTES) {
+            return;
+        }
+        long[] lastUsed = new long[files.length];
+        Integer[] order = new Integer[files.length];
+        for (int i = 0; i < files.length; i++) {
+            lastUsed[i] = files[i].lastModified(); // Read once; the sort must not see it change
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingLong(i -> lastUsed[i]));
+        for (Integer i : order) {
+            if (total <= Constants.IMAGE_FILE_CACHE_MAX_BYTES) {
+                break;
+            }
+            long length = files[i].length();
+            if (files[i].delete()) {
+                total -= length;
+            }
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.example.logchat.utilities;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Base64;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+
+import com.example.logchat.R;
+import com.example.logchat.firebase.ProfileImageFetcher;
+
+import java.io.File;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads profile images into ImageViews off the main thread.
+ *
+ * A bind first checks the shared {@link BitmapCache}; on a miss the view is cleared to its
+ * placeholder background and the image is decoded on a small bounded worker pool, downsampled
+ * to the size of the target view, then swapped in if the view still wants it. Images known by
+ * their content hash are decoded from the {@link ImageFileCache} and only fetched from
+ * Firestore, then stored there, when the file is missing. Requests are
+ * tracked per view, so rebinding or recycling a view cancels the request it no longer needs.
+ * When the queue is full the oldest queued request is dropped, and its view gets the fallback
+ * image rather than staying on the placeholder.
+ *
+ * All public methods must be called on the main thread.
+ */
+public class ImageLoader {
+    private static final int MAX_PENDING_REQUESTS = 64;
+    private static volatile ImageLoader instance;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Returns the shared loader, creating it on first use.
+     * @return The process-wide {@link ImageLoader}.
+     */
+    public static ImageLoader getInstance() {
+        if (instance == null) {
+            synchronized (ImageLoader.class) {
+                if (instance == null) {
+                    instance = new ImageLoader();
+                }
+            }
+        }
+        return instance;
+    }
+
+    private ImageLoader() {
+        int threads = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+        executor = new ThreadPoolExecutor(
+                threads, threads,
+                30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(MAX_PENDING_REQUESTS),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "ImageLoader");
+                    thread.setPriority(Thread.MIN_PRIORITY); // Stay behind the UI and render threads
+                    return thread;
+                },
+                new DropOldestRequest() // Drop the stalest request when flinging
+        );
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Displays the profile image of a user in an ImageView.
+     * @param imageView    The view to display the image in.
+     * @param userId       The ID of the user the image belongs to.
+     * @param encodedImage The Base64-encoded image.
+     */
+    public void load(ImageView imageView, String userId, String encodedImage) {
+        cancel(imageView);
+        if (encodedImage == null) {
+            showError(imageView);
+            return;
+        }
+        int reqWidth = getTargetDimension(imageView, true);
+        int reqHeight = getTargetDimension(imageView, false);
+        String key = BitmapCache.getKey(userId, encodedImage, reqWidth, reqHeight);
+        Bitmap cached = BitmapCache.getInstance().get(key);
+        if (cached != null) {
+            imageView.setImageBitmap(cached); // Cache hit: bind synchronously without a placeholder
+            return;
+        }
+        imageView.setImageDrawable(null); // The view background acts as the placeholder
+        Request request = new Request(imageView);
+        imageView.setTag(R.id.image_loader_request, request);
+        submit(request, () -> publish(request, key, BitmapCache.decode(encodedImage, reqWidth, reqHeight)));
+    }
+
+    /**
+     * Displays a rendition of the profile image of a user known only by its content hash.
+     * The image is decoded from the file cache, or fetched from Firestore and stored in the
+     * file cache if it is not on disk.
+     * @param imageView The view to display the image in.
+     * @param userId    The ID of the user the image belongs to.
+     * @param imageHash The content hash of the image, may be {@code null} if unknown.
+     * @param rendition The smallest rendition that looks sharp in the view.
+     */
+    public void loadProfileImage(ImageView imageView, String userId, String imageHash, ImageRendition rendition) {
+        cancel(imageView);
+        int reqWidth = getTargetDimension(imageView, true);
+        int reqHeight = getTargetDimension(imageView, false);
+        String fileKey = imageHash != null ? ImageFileCache.getKey(imageHash, rendition) : null;
+        String key = BitmapCache.getHashKey(userId, fileKey, reqWidth, reqHeight);
+        Bitmap cached = BitmapCache.getInstance().get(key);
+        if (cached != null) {
+            imageView.setImageBitmap(cached);
+            return;
+        }
+        imageView.setImageDrawable(null); // The view background acts as the placeholder
+        Request request = new Request(imageView);
+        imageView.setTag(R.id.image_loader_request, request);
+        ImageFileCache fileCache = ImageFileCache.getInstance(imageView.getContext());
+        submit(request, () -> {
+            File file = fileCache.getFile(fileKey);
+            if (file != null) {
+                publish(request, key, BitmapCache.decodeFile(file, reqWidth, reqHeight)); // Stream from disk
+            } else {
+                mainHandler.post(() -> fetch(request, fileCache, key, fileKey, userId, rendition, reqWidth, reqHeight));
+            }
+        });
+    }
+
+    /**
+     * Cancels the pending request of an ImageView, e.g. when its ViewHolder is recycled.
+     * @param imageView The view whose request should be cancelled.
+     */
+    public void cancel(ImageView imageView) {
+        Object tag = imageView.getTag(R.id.image_loader_request);
+        if (tag instanceof Request) {
+            Request request = (Request) tag;
+            if (request.future != null) {
+                request.future.cancel(false);
+            }
+            imageView.setTag(R.id.image_loader_request, null);
+        }
+    }
+
+    // Fetch an image missing on disk, store its raw bytes and decode them from the file
+    private void fetch(Request request, ImageFileCache fileCache, String key, String fileKey, String userId,
+                       ImageRendition rendition, int reqWidth, int reqHeight) {
+        if (request.imageView.getTag(R.id.image_loader_request) != request) {
+            return; // No longer wanted; nothing is fetched.
+        }
+        ProfileImageFetcher.getInstance().fetch(userId, rendition, encodedImage -> {
+            if (request.imageView.getTag(R.id.image_loader_request) != request) {
+                return; // No longer wanted; the fetched image is not decoded.
+            }
+            if (encodedImage == null) {
+                deliver(request, null);
+                return;
+            }
+            submit(request, () -> {
+                byte[] bytes = Base64.decode(encodedImage, Base64.DEFAULT);
+                String storedKey = fileKey;
+                if (fileKey == null) {
+                    storedKey = fileCache.put(bytes); // Unknown hash: store under the content hash
+                } else if (!fileCache.put(fileKey, bytes)) {
+                    storedKey = null;
+                }
+                File file = fileCache.getFile(storedKey);
+                publish(request, key, file != null
+                        ? BitmapCache.decodeFile(file, reqWidth, reqHeight)
+                        : BitmapCache.decode(bytes, reqWidth, reqHeight)); // Disk full or not writable
+            });
+        });
+    }
+
+    // Run the work of a request on the worker pool
+    private void submit(Request request, Runnable work) {
+        RequestTask task = new RequestTask(request, work);
+        request.future = task;
+        executor.execute(task);
+    }
+
+    // Cache a decoded bitmap and hand it back on the main thread; runs on the worker pool
+    private void publish(Request request, String key, Bitmap bitmap) {
+        if (bitmap != null) {
+            BitmapCache.getInstance().put(key, bitmap);
+        }
+        mainHandler.post(() -> deliver(request, bitmap));
+    }
+
+    // Swap the decoded bitmap in if the view is still waiting for this request
+    private void deliver(Request request, Bitmap bitmap) {
+        ImageView imageView = request.imageView;
+        if (imageView.getTag(R.id.image_loader_request) != request) {
+            return; // The view was rebound or recycled in the meantime.
+        }
+        imageView.setTag(R.id.image_loader_request, null);
+        if (bitmap != null) {
+            imageView.setImageBitmap(bitmap);
+        } else {
+            showError(imageView);
+        }
+    }
+
+    // Show the fallback image used when a profile image is missing or broken
+    private static void showError(ImageView imageView) {
+        imageView.setImageResource(android.R.drawable.ic_menu_report_image);
+    }
+
+    // Resolve the size the view will be drawn at, preferring the fixed layout size
+    private static int getTargetDimension(ImageView imageView, boolean width) {
+        ViewGroup.LayoutParams params = imageView.getLayoutParams();
+        int size = 0;
+        if (params != null) {
+            size = width ? params.width : params.height;
+        }
+        if (size <= 0) {
+            size = width ? imageView.getWidth() : imageView.getHeight();
+        }
+        return Math.max(size, 0);
+    }
+
+    // Make room for a new request by dropping the oldest queued one; runs on the submitting thread
+    private class DropOldestRequest implements RejectedExecutionHandler {
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (executor.isShutdown()) {
+                return;
+            }
+            Runnable oldest = executor.getQueue().poll();
+            if (oldest instanceof RequestTask) {
+                RequestTask task = (RequestTask) oldest;
+                task.cancel(false);
+                mainHandler.post(() -> deliver(task.request, null)); // A no-op if the view moved on
+            }
+            executor.execute(runnable);
+        }
+    }
+
+    // The queued work of a request, so a dropped task can still be answered
+    private static class RequestTask extends FutureTask<Void> {
+        final Request request;
+
+        RequestTask(Request request, Runnable work) {
+            super(work, null);
+            this.request = request;
+        }
+    }
+
+    // A pending decode bound to one ImageView
+    private static class Request {
+        final ImageView imageView;
+        Future<?> future;
+
+        Request(ImageView imageView) {
+            this.imageView = imageView;
+        }
+    }
+}
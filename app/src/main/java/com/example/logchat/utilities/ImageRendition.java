@@ -0,0 +1,26 @@
+package com.example.logchat.utilities;
+
+/**
+ * The sizes a profile image is encoded in, each with a byte budget for the encoded file.
+ *
+ * Lists only ever load the {@link #THUMBNAIL}, chat screens the {@link #BUBBLE} and only
+ * screens showing the avatar large need the {@link #FULL} rendition.
+ */
+public enum ImageRendition {
+    THUMBNAIL("thumbnail", 128, 4 * 1024), // Rows of the user and conversation lists
+    BUBBLE("bubble", 256, 12 * 1024), // Avatars next to chat messages and in the header
+    FULL("full", 640, 48 * 1024); // The largest size the app displays
+
+    /** Name used in cache keys and Firestore document IDs. */
+    public final String key;
+    /** Maximum width and height in pixels. */
+    public final int maxDimension;
+    /** Maximum size of the encoded image in bytes. */
+    public final int maxBytes;
+
+    ImageRendition(String key, int maxDimension, int maxBytes) {
+        this.key = key;
+        this.maxDimension = maxDimension;
+        this.maxBytes = maxBytes;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.logchat.utilities;
+
+/**
+ * Storage backend behind {@link PreferenceManager}.
+ *
+ * Mirrors the subset of {@link android.content.SharedPreferences} the app uses, so the
+ * platform preferences and {@link MappedLogStore} can be swapped without touching callers.
+ */
+public interface KeyValueStore {
+
+    /**
+     * @param key          The key to read.
+     * @param defaultValue Returned if the key is absent.
+     * @return The stored string, or the default value.
+     */
+    String getString(String key, String defaultValue);
+
+    /**
+     * @param key          The key to read.
+     * @param defaultValue Returned if the key is absent.
+     * @return The stored boolean, or the default value.
+     */
+    boolean getBoolean(String key, boolean defaultValue);
+
+    /**
+     * @return An editor whose changes become visible together when applied or committed.
+     */
+    Editor edit();
+
+    /**
+     * A set of changes to a {@link KeyValueStore}. As with SharedPreferences, a
+     * {@link #clear()} is applied before the other changes of the same editor.
+     */
+    interface Editor {
+        Editor putString(String key, String value);
+
+        Editor putBoolean(String key, boolean value);
+
+        Editor remove(String key);
+
+        Editor clear();
+
+        /**
+         * Makes the changes visible immediately and persists them without blocking.
+         */
+        void apply();
+
+        /**
+         * Makes the changes visible and waits until they are durable.
+         * @return {@code true} if the changes were written.
+         */
+        boolean commit();
+    }
+}
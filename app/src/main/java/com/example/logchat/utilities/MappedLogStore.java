@@ -0,0 +1,370 @@
+package com.example.logchat.utilities;
+
+import android.content.Context;
+import android.util.Log;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+
+/**
+ * {@link KeyValueStore} kept in a memory-mapped, append-only log.
+ *
+ * The file starts with a magic number followed by records of
+ * {@code [int length][int CRC32][operations]}; each applied editor becomes one record, so
+ * its changes are replayed all or nothing. Writing is a copy into the mapped pages, which
+ * the kernel flushes on its own, instead of rewriting a whole XML file; {@link Editor#commit()}
+ * additionally forces the pages to disk. Loading replays the log and stops at the first
+ * record that is incomplete or fails its checksum.
+ *
+ * Once the log has grown to twice its size after the last load or compaction, the current
+ * values are written to a new file as a single record, which then replaces the log. This runs
+ * on the disk executor: the snapshot is written and synced without holding the lock, and
+ * records appended meanwhile are copied after it before the files are swapped. Clearing the
+ * store appends the removal of every key and leaves the rewrite to the next compaction.
+ */
+public class MappedLogStore implements KeyValueStore {
+    private static final String TAG = "MappedLogStore";
+    private static final int MAGIC = 0x4c4b5631; // "LKV1"
+    private static final int HEADER_SIZE = 4;
+    private static final int RECORD_HEADER_SIZE = 8; // Payload length and checksum
+    private static final int INITIAL_CAPACITY = 16 * 1024;
+    private static final int COMPACT_MIN_BYTES = 32 * 1024;
+
+    // Operations inside a record
+    private static final byte OP_REMOVE = 1;
+    private static final byte OP_STRING = 2;
+    private static final byte OP_BOOLEAN = 3;
+
+    private static MappedLogStore instance;
+
+    private final File file;
+    private final Executor diskExecutor;
+    private final Map<String, Object> values = new HashMap<>();
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePosition; // Offset of the next record
+    private int compactedSize; // Log size after the last load or compaction
+    private boolean compactionScheduled;
+
+    /**
+     * Returns the store of the app preferences, loading it on first use.
+     * @param context Any context, used to locate the files directory.
+     * @param diskExecutor The executor compactions run on; only used when the store is created.
+     * @return The shared store.
+     * @throws IOException If the log cannot be opened.
+     */
+    public static synchronized MappedLogStore getInstance(Context context, Executor diskExecutor) throws IOException {
+        if (instance == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(),
+                    Constants.KEY_PREFERENCE_NAME + ".kvlog");
+            instance = new MappedLogStore(file, diskExecutor);
+        }
+        return instance;
+    }
+
+    /**
+     * Opens the log at the given path, creating it if needed, and replays it.
+     * @param file The log file.
+     * @param diskExecutor The executor compactions run on.
+     * @throws IOException If the file cannot be opened or mapped.
+     */
+    MappedLogStore(File file, Executor diskExecutor) throws IOException {
+        this.file = file;
+        this.diskExecutor = diskExecutor;
+        open();
+        load();
+    }
+
+    @Override
+    public synchronized String getString(String key, String defaultValue) {
+        Object value = values.get(key);
+        return value instanceof String ? (String) value : defaultValue;
+    }
+
+    @Override
+    public synchronized boolean getBoolean(String key, boolean defaultValue) {
+        Object value = values.get(key);
+        return value instanceof Boolean ? (Boolean) value : defaultValue;
+    }
+
+    /**
+     * @return {@code true} if the store holds no values.
+     */
+    public synchronized boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    @Override
+    public Editor edit() {
+        return new LogEditor();
+    }
+
+    /**
+     * @return The number of bytes of the log in use, including the header.
+     */
+    synchronized int getLogSize() {
+        return writePosition;
+    }
+
+    // Map the file and make sure it starts with the header
+    private void open() throws IOException {
+        buffer = null; // The old mapping is released once it is collected
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        long length = channel.size();
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(INITIAL_CAPACITY, length));
+        if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(HEADER_SIZE, 0); // Terminates an empty log
+        }
+    }
+
+    // Replay all complete records into memory
+    private void load() throws IOException {
+        int position = HEADER_SIZE;
+        while (position + RECORD_HEADER_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            if (length <= 0 || length > buffer.capacity() - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            ByteBuffer view = buffer.duplicate();
+            view.position(position + RECORD_HEADER_SIZE);
+            view.get(payload);
+            if (checksum(payload) != buffer.getInt(position + 4)) {
+                break; // Torn write; everything after it is discarded
+            }
+            replay(payload);
+            position += RECORD_HEADER_SIZE + length;
+        }
+        writePosition = position;
+        compactedSize = position;
+    }
+
+    // Apply the operations of one record to the in-memory values
+    private void replay(byte[] payload) throws IOException {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(payload));
+        while (input.available() > 0) {
+            byte op = input.readByte();
+            String key = input.readUTF();
+            if (op == OP_STRING) {
+                byte[] bytes = new byte[input.readInt()];
+                input.readFully(bytes);
+                values.put(key, new String(bytes, StandardCharsets.UTF_8));
+            } else if (op == OP_BOOLEAN) {
+                values.put(key, input.readBoolean());
+            } else {
+                values.remove(key);
+            }
+        }
+    }
+
+    // Append one record; the length is written last so a partial record is never replayed
+    private void append(byte[] payload) throws IOException {
+        int end = writePosition + RECORD_HEADER_SIZE + payload.length;
+        ensureCapacity(end + 4);
+        buffer.putInt(end, 0); // Terminator, in case stale records follow after a compaction
+        ByteBuffer view = buffer.duplicate();
+        view.position(writePosition + RECORD_HEADER_SIZE);
+        view.put(payload);
+        buffer.putInt(writePosition + 4, checksum(payload));
+        buffer.putInt(writePosition, payload.length);
+        writePosition = end;
+        if (writePosition > COMPACT_MIN_BYTES && writePosition > 2 * compactedSize && !compactionScheduled) {
+            compactionScheduled = true;
+            diskExecutor.execute(this::compact);
+        }
+    }
+
+    // Grow the mapping by doubling until the given size fits
+    private void ensureCapacity(int required) throws IOException {
+        int capacity = buffer != null ? buffer.capacity() : INITIAL_CAPACITY; // Null after a failed remap
+        if (required <= capacity) {
+            return;
+        }
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        buffer = null; // Lets the smaller mapping be collected if the larger one needs the space
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    // Write the current values as one record into a new file and swap it in
+    private void compact() {
+        try {
+            byte[] snapshot;
+            int snapshotEnd;
+            synchronized (this) {
+                snapshot = encodeValues();
+                snapshotEnd = writePosition;
+            }
+            File temp = new File(file.getPath() + ".tmp");
+            int compactedEnd = snapshot.length > 0 ? HEADER_SIZE + RECORD_HEADER_SIZE + snapshot.length : HEADER_SIZE;
+            ByteBuffer content = ByteBuffer.allocate(compactedEnd);
+            content.putInt(MAGIC);
+            if (snapshot.length > 0) {
+                content.putInt(snapshot.length).putInt(checksum(snapshot)).put(snapshot);
+            }
+            try (RandomAccessFile output = new RandomAccessFile(temp, "rw")) {
+                output.setLength(0);
+                output.write(content.array());
+                output.getFD().sync();
+            }
+            synchronized (this) {
+                // Carry over the records appended while the snapshot was written
+                byte[] tail = new byte[writePosition - snapshotEnd];
+                ByteBuffer view = buffer.duplicate();
+                view.position(snapshotEnd);
+                view.get(tail);
+                try (RandomAccessFile output = new RandomAccessFile(temp, "rw")) {
+                    output.seek(compactedEnd);
+                    output.write(tail);
+                    output.writeInt(0); // Terminates the log
+                    if (tail.length > 0) {
+                        output.getFD().sync(); // The tail may hold committed records
+                    }
+                }
+                channel.close();
+                if (!temp.renameTo(file)) {
+                    throw new IOException("Unable to replace " + file);
+                }
+                open();
+                writePosition = compactedEnd + tail.length;
+                compactedSize = writePosition;
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to compact preferences: " + e.getMessage());
+        } finally {
+            synchronized (this) {
+                compactionScheduled = false;
+            }
+        }
+    }
+
+    // Encode all current values as a sequence of put operations
+    private byte[] encodeValues() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            writeOperation(output, entry.getKey(), entry.getValue());
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    // Encode one operation; a null value removes the key
+    private static void writeOperation(DataOutputStream output, String key, Object value) throws IOException {
+        if (value instanceof String) {
+            byte[] bytes = ((String) value).getBytes(StandardCharsets.UTF_8);
+            output.writeByte(OP_STRING);
+            output.writeUTF(key);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else if (value instanceof Boolean) {
+            output.writeByte(OP_BOOLEAN);
+            output.writeUTF(key);
+            output.writeBoolean((Boolean) value);
+        } else {
+            output.writeByte(OP_REMOVE);
+            output.writeUTF(key);
+        }
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload, 0, payload.length);
+        return (int) crc.getValue();
+    }
+
+    // Apply an editor's changes in memory and persist them as one record
+    private synchronized boolean write(boolean clear, List<String> keys, List<Object> newValues, boolean durable) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream output = new DataOutputStream(bytes);
+            if (clear) {
+                for (String key : values.keySet()) {
+                    writeOperation(output, key, null); // Removed in the same record as the new values
+                }
+                values.clear();
+            }
+            for (int i = 0; i < keys.size(); i++) {
+                Object value = newValues.get(i);
+                writeOperation(output, keys.get(i), value);
+                if (value == null) {
+                    values.remove(keys.get(i));
+                } else {
+                    values.put(keys.get(i), value);
+                }
+            }
+            output.flush();
+            if (bytes.size() > 0) {
+                append(bytes.toByteArray());
+            }
+            if (durable) {
+                buffer.force();
+            }
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Unable to persist preferences: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Collects changes until they are applied; later changes to a key win
+    private class LogEditor implements Editor {
+        private final List<String> keys = new ArrayList<>();
+        private final List<Object> newValues = new ArrayList<>();
+        private boolean clear;
+
+        @Override
+        public Editor putString(String key, String value) {
+            keys.add(key);
+            newValues.add(value);
+            return this;
+        }
+
+        @Override
+        public Editor putBoolean(String key, boolean value) {
+            keys.add(key);
+            newValues.add(value);
+            return this;
+        }
+
+        @Override
+        public Editor remove(String key) {
+            keys.add(key);
+            newValues.add(null);
+            return this;
+        }
+
+        @Override
+        public Editor clear() {
+            clear = true;
+            return this;
+        }
+
+        @Override
+        public void apply() {
+            write(clear, keys, newValues, false);
+        }
+
+        @Override
+        public boolean commit() {
+            return write(clear, keys, newValues, true);
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.logchat.utilities;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.logchat.metrics.Metrics;
+import com.example.logchat.metrics.Timer;
+import com.example.logchat.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Owns the message list of one chat screen and publishes immutable snapshots of it.
+ *
+ * Added, modified and removed messages are applied to a {@link SortedMessageBuffer} on a
+ * background worker. After each batch a copy of the buffer is handed to the main thread,
+ * where it can be submitted to a diffing adapter. The main thread never sees the
+ * mutable buffer and never sorts or copies the list itself.
+ */
+public class MessageListStore {
+    private static final Timer APPLY_TIMER = Metrics.getInstance().timer("snapshot.messages.apply");
+
+    /**
+     * Receives the list after every applied batch of changes.
+     */
+    public interface SnapshotListener {
+        /**
+         * Called on the main thread with the new list.
+         * @param snapshot The complete, unmodifiable message list in chronological order.
+         */
+        void onSnapshot(List<ChatMessage> snapshot);
+    }
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final ExecutorService worker = Executors.newSingleThreadExecutor(); // Applies batches in arrival order
+    private final SortedMessageBuffer buffer = new SortedMessageBuffer(); // Only touched on the worker
+    private final SnapshotListener listener;
+    private volatile boolean released;
+
+    /**
+     * Creates a store that reports its snapshots to a listener.
+     * @param listener Receives each new snapshot on the main thread.
+     */
+    public MessageListStore(SnapshotListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Inserts new messages. Messages that are already present are ignored.
+     * @param messages The messages to add.
+     */
+    public void add(List<ChatMessage> messages) {
+        List<ChatMessage> batch = new ArrayList<>(messages);
+        apply(() -> buffer.insertAll(batch));
+    }
+
+    /**
+     * Replaces messages that were edited, inserting those that are not present yet.
+     * @param messages The new versions of the messages.
+     */
+    public void update(List<ChatMessage> messages) {
+        List<ChatMessage> batch = new ArrayList<>(messages);
+        apply(() -> {
+            for (ChatMessage chatMessage : batch) {
+                buffer.update(chatMessage);
+            }
+        });
+    }
+
+    /**
+     * Removes deleted messages.
+     * @param messages The messages to remove, matched by document ID.
+     */
+    public void remove(List<ChatMessage> messages) {
+        List<ChatMessage> batch = new ArrayList<>(messages);
+        apply(() -> {
+            for (ChatMessage chatMessage : batch) {
+                buffer.remove(chatMessage.documentId);
+            }
+        });
+    }
+
+    /**
+     * Stops publishing snapshots and shuts the worker down.
+     */
+    public void release() {
+        released = true;
+        worker.shutdown();
+    }
+
+    // Apply a change on the worker and post the resulting snapshot to the main thread
+    private void apply(Runnable change) {
+        if (released) {
+            return;
+        }
+        worker.execute(() -> {
+            long start = Timer.start();
+            change.run();
+            List<ChatMessage> snapshot = Collections.unmodifiableList(new ArrayList<>(buffer.getMessages()));
+            APPLY_TIMER.stop(start);
+            mainHandler.post(() -> {
+                if (!released) {
+                    listener.onSnapshot(snapshot);
+                }
+            });
+        });
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.logchat.utilities;
+
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Salted, deliberately slow password hashing for the credential records.
+ *
+ * Passwords are stretched with PBKDF2. The iteration count is the tunable cost: it is stored
+ * next to every hash, so it can be raised later without invalidating existing accounts, and
+ * records below {@link Constants#PASSWORD_HASH_ITERATIONS} are re-hashed on the next sign-in.
+ * HMAC-SHA1 is used because PBKDF2WithHmacSHA256 is only available from API 26.
+ *
+ * Hashing takes tens to hundreds of milliseconds by design and must run off the main thread.
+ */
+public class PasswordHasher {
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA1";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    private static final SecureRandom random = new SecureRandom();
+
+    private PasswordHasher() {
+    }
+
+    /**
+     * Generates a random salt for a new password hash.
+     * @return The salt as a hexadecimal string.
+     */
+    public static String newSalt() {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        return HashUtils.toHex(salt);
+    }
+
+    /**
+     * Hashes a password.
+     * @param password   The password.
+     * @param salt       The salt as returned by {@link #newSalt()}.
+     * @param iterations The PBKDF2 iteration count.
+     * @return The hash as a hexadecimal string.
+     */
+    public static String hash(String password, String salt, int iterations) {
+        char[] chars = password.toCharArray();
+        PBEKeySpec spec = new PBEKeySpec(chars, HashUtils.fromHex(salt), iterations, HASH_BITS);
+        try {
+            return HashUtils.toHex(SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded());
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e); // Guaranteed on Android
+        } finally {
+            spec.clearPassword();
+            Arrays.fill(chars, '\0');
+        }
+    }
+
+    /**
+     * Checks a password against a stored hash in constant time.
+     * @param password     The password to check.
+     * @param salt         The stored salt.
+     * @param iterations   The stored iteration count.
+     * @param expectedHash The stored hash.
+     * @return {@code true} if the password matches.
+     */
+    public static boolean verify(String password, String salt, int iterations, String expectedHash) {
+        if (password == null || salt == null || expectedHash == null || iterations <= 0) {
+            return false;
+        }
+        byte[] actual = HashUtils.fromHex(hash(password, salt, iterations));
+        return MessageDigest.isEqual(actual, HashUtils.fromHex(expectedHash));
+    }
+}
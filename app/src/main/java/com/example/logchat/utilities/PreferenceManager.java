@@ -2,19 +2,38 @@ package com.example.logchat.utilities;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.util.Log;
+
+import com.example.logchat.database.MessageDatabase;
+
+import java.io.IOException;
+import java.util.Map;
 /**
  * A utility class for managing shared preferences in the application.
  * This class provides methods to store, retrieve, and clear data
  * in shared preferences using key-value pairs.
+ *
+ * Several values that belong together should be written through {@link #edit()}, which
+ * collects them in one editor and schedules a single disk write. The session fields are
+ * also available as an in-memory {@link Session} snapshot, shared by all instances.
+ *
+ * Values live either in the platform SharedPreferences or, if
+ * {@link Constants#USE_MAPPED_PREFERENCES} is set, in a {@link MappedLogStore}.
  */
 public class PreferenceManager {
-    private final SharedPreferences sharedPreferences;
+    private static final String TAG = "PreferenceManager";
+    // Guards the cached session so a rebuild cannot outlive an invalidating write.
+    private static final Object sessionLock = new Object();
+    private static Session cachedSession;
+    private static KeyValueStore sharedStore; // Backend chosen on first use
+
+    private final KeyValueStore store;
     /**
      * Constructs a new PreferenceManager instance and initializes the shared preferences.
      * @param context The application context used to access shared preferences.
      */
     public PreferenceManager(Context context) {
-        sharedPreferences = context.getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        store = getStore(context.getApplicationContext());
     }
     /**
      * Saves a boolean value in shared preferences.
@@ -22,9 +41,7 @@ public class PreferenceManager {
      * @param value The boolean value to store.
      */
     public void putBoolean(String key, Boolean value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putBoolean(key, value);
-        editor.apply(); // Asynchronously save changes.
+        edit().putBoolean(key, value).apply();
     }
     /**
      * Retrieves a boolean value from shared preferences.
@@ -32,7 +49,7 @@ public class PreferenceManager {
      * @return The boolean value associated with the key, or {@code false} if not found.
      */
     public Boolean getBoolean(String key) {
-        return sharedPreferences.getBoolean(key, false); // Default to false if key is not found.
+        return store.getBoolean(key, false); // Default to false if key is not found.
     }
     /**
      * Saves a string value in shared preferences.
@@ -40,9 +57,7 @@ public class PreferenceManager {
      * @param value The string value to store.
      */
     public void putString(String key, String value) {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.putString(key, value);
-        editor.apply(); // Asynchronously save changes.
+        edit().putString(key, value).apply();
     }
     /**
      * Retrieves a string value from shared preferences.
@@ -50,14 +65,163 @@ public class PreferenceManager {
      * @return The string value associated with the key, or {@code null} if not found.
      */
     public String getString(String key) {
-        return sharedPreferences.getString(key, null); // Default to null if key is not found.
+        return store.getString(key, null); // Default to null if key is not found.
     }
     /**
      * Clears all data from shared preferences.
      */
     public void clear() {
-        SharedPreferences.Editor editor = sharedPreferences.edit();
-        editor.clear(); // Remove all key-value pairs.
-        editor.apply(); // Asynchronously save changes.
+        edit().clear().apply();
+    }
+    /**
+     * Starts a batch of changes that are written together.
+     * @return A batch; nothing is written until {@link Batch#apply()} or {@link Batch#commit()}.
+     */
+    public Batch edit() {
+        return new Batch(store.edit());
+    }
+    /**
+     * Returns the session fields of the signed-in user. The snapshot is read from shared
+     * preferences once and reused until a session field is written through this class.
+     * @return The current session snapshot.
+     */
+    public Session getSession() {
+        synchronized (sessionLock) {
+            if (cachedSession == null) {
+                cachedSession = new Session(
+                        store.getBoolean(Constants.KEY_IS_SIGNED_IN, false),
+                        store.getString(Constants.KEY_USER_ID, null),
+                        store.getString(Constants.KEY_NAME, null),
+                        store.getString(Constants.KEY_IMAGE_HASH, null));
+            }
+            return cachedSession;
+        }
+    }
+
+    // Open the configured backend once per process
+    private static synchronized KeyValueStore getStore(Context context) {
+        if (sharedStore != null) {
+            return sharedStore;
+        }
+        SharedPreferences sharedPreferences =
+                context.getSharedPreferences(Constants.KEY_PREFERENCE_NAME, Context.MODE_PRIVATE);
+        if (Constants.USE_MAPPED_PREFERENCES) {
+            try {
+                MappedLogStore mappedStore = MappedLogStore.getInstance(context, MessageDatabase.getDiskExecutor());
+                migrate(sharedPreferences, mappedStore);
+                sharedStore = mappedStore;
+                return sharedStore;
+            } catch (IOException e) {
+                Log.e(TAG, "Falling back to SharedPreferences: " + e.getMessage());
+            }
+        }
+        sharedStore = new SharedPreferencesStore(sharedPreferences);
+        return sharedStore;
+    }
+
+    // Move values written by the SharedPreferences backend into the mapped log, once
+    private static void migrate(SharedPreferences sharedPreferences, MappedLogStore mappedStore) {
+        Map<String, ?> existing = sharedPreferences.getAll();
+        if (existing.isEmpty()) {
+            return;
+        }
+        KeyValueStore.Editor editor = mappedStore.edit();
+        for (Map.Entry<String, ?> entry : existing.entrySet()) {
+            if (entry.getValue() instanceof String) {
+                editor.putString(entry.getKey(), (String) entry.getValue());
+            } else if (entry.getValue() instanceof Boolean) {
+                editor.putBoolean(entry.getKey(), (Boolean) entry.getValue());
+            }
+        }
+        if (editor.commit()) {
+            sharedPreferences.edit().clear().apply(); // Never import the same values twice
+        }
+    }
+
+    // Whether a key is part of the session snapshot
+    private static boolean isSessionKey(String key) {
+        return Constants.KEY_IS_SIGNED_IN.equals(key)
+                || Constants.KEY_USER_ID.equals(key)
+                || Constants.KEY_NAME.equals(key)
+                || Constants.KEY_IMAGE_HASH.equals(key);
+    }
+
+    /**
+     * A set of changes collected in one editor and written with a single apply or commit.
+     */
+    public static class Batch {
+        private final KeyValueStore.Editor editor;
+        private boolean touchesSession; // Whether the cached session must be dropped on write
+
+        private Batch(KeyValueStore.Editor editor) {
+            this.editor = editor;
+        }
+        /**
+         * Adds a boolean value to the batch.
+         * @param key   The key under which the value is stored.
+         * @param value The boolean value to store.
+         * @return This batch.
+         */
+        public Batch putBoolean(String key, boolean value) {
+            editor.putBoolean(key, value);
+            touchesSession |= isSessionKey(key);
+            return this;
+        }
+        /**
+         * Adds a string value to the batch.
+         * @param key   The key under which the value is stored.
+         * @param value The string value to store; {@code null} removes the key.
+         * @return This batch.
+         */
+        public Batch putString(String key, String value) {
+            editor.putString(key, value);
+            touchesSession |= isSessionKey(key);
+            return this;
+        }
+        /**
+         * Removes a key as part of the batch.
+         * @param key The key to remove.
+         * @return This batch.
+         */
+        public Batch remove(String key) {
+            editor.remove(key);
+            touchesSession |= isSessionKey(key);
+            return this;
+        }
+        /**
+         * Removes all keys as part of the batch; values put into the same batch are kept.
+         * @return This batch.
+         */
+        public Batch clear() {
+            editor.clear();
+            touchesSession = true;
+            return this;
+        }
+        /**
+         * Applies all changes in memory at once and writes them to disk asynchronously.
+         */
+        public void apply() {
+            editor.apply(); // Asynchronously save changes.
+            invalidateSession();
+        }
+        /**
+         * Writes all changes to disk synchronously. Do not call on the main thread.
+         * @return {@code true} if the changes were written.
+         */
+        public boolean commit() {
+            boolean written = editor.commit();
+            invalidateSession();
+            return written;
+        }
+
+        // Drop the cached session if this batch changed one of its fields. Runs after the
+        // values are in memory, so a snapshot built before that is always discarded.
+        private void invalidateSession() {
+            if (touchesSession) {
+                synchronized (sessionLock) {
+                    cachedSession = null;
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,20 @@
+package com.example.logchat.utilities;
+
+/**
+ * Immutable snapshot of the signed-in user's session fields in shared preferences.
+ * Obtained from {@link PreferenceManager#getSession()}, which keeps one snapshot in memory
+ * until one of the underlying preferences changes.
+ */
+public final class Session {
+    public final boolean signedIn; // Whether a user is signed in
+    public final String userId; // ID of the signed-in user, or null
+    public final String name; // Display name of the signed-in user
+    public final String imageHash; // Content hash of the profile image; its key in the ImageFileCache
+
+    Session(boolean signedIn, String userId, String name, String imageHash) {
+        this.signedIn = signedIn;
+        this.userId = userId;
+        this.name = name;
+        this.imageHash = imageHash;
+    }
+}
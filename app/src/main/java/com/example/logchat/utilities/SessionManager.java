@@ -0,0 +1,106 @@
+package com.example.logchat.utilities;
+
+import android.security.keystore.KeyGenParameterSpec;
+import android.security.keystore.KeyProperties;
+import android.util.Log;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.Mac;
+
+/**
+ * Signs and validates the cached sign-in session.
+ *
+ * After a successful sign-in the user ID and the sign-in time are signed with an HMAC key
+ * that lives in the Android Keystore and never leaves it. On a cold start the session in
+ * shared preferences is accepted only if its signature matches and it is younger than
+ * {@link Constants#SESSION_MAX_AGE_MS}, so the app can open the home screen without any
+ * Firestore round trip while edited or copied preferences are rejected.
+ */
+public class SessionManager {
+    private static final String TAG = "SessionManager";
+    private static final String KEYSTORE = "AndroidKeyStore";
+    private static final String KEY_ALIAS = "logchat_session";
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private SessionManager() {
+    }
+
+    /**
+     * Adds a signed session for the signed-in user to a preference batch.
+     * @param batch  The batch that also stores the other sign-in fields.
+     * @param userId The ID of the signed-in user.
+     */
+    public static void start(PreferenceManager.Batch batch, String userId) {
+        long issuedAt = System.currentTimeMillis();
+        String signature = sign(userId, issuedAt);
+        if (signature == null) {
+            return; // Without a keystore the user simply signs in on every cold start.
+        }
+        batch.putString(Constants.KEY_SESSION_TOKEN, issuedAt + ":" + signature);
+    }
+
+    /**
+     * Checks whether the cached session can be resumed without signing in again.
+     * @param preferenceManager The preferences holding the session.
+     * @return {@code true} if the user is signed in and the session signature is valid and recent.
+     */
+    public static boolean isValid(PreferenceManager preferenceManager) {
+        Session session = preferenceManager.getSession();
+        String userId = session.userId;
+        String token = preferenceManager.getString(Constants.KEY_SESSION_TOKEN);
+        if (!session.signedIn || userId == null || token == null) {
+            return false;
+        }
+        int separator = token.indexOf(':');
+        if (separator <= 0) {
+            return false;
+        }
+        long issuedAt;
+        try {
+            issuedAt = Long.parseLong(token.substring(0, separator));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        long age = System.currentTimeMillis() - issuedAt;
+        if (age < 0 || age > Constants.SESSION_MAX_AGE_MS) {
+            return false;
+        }
+        String expected = sign(userId, issuedAt);
+        return expected != null && MessageDigest.isEqual(
+                expected.getBytes(StandardCharsets.UTF_8),
+                token.substring(separator + 1).getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Compute the session signature, or null if the keystore is unavailable
+    private static String sign(String userId, long issuedAt) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(getKey());
+            byte[] signature = mac.doFinal((userId + ":" + issuedAt).getBytes(StandardCharsets.UTF_8));
+            return HashUtils.toHex(signature);
+        } catch (GeneralSecurityException | IOException e) {
+            Log.e(TAG, "Unable to sign session: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Load the signing key from the Android Keystore, creating it on first use
+    private static synchronized Key getKey() throws GeneralSecurityException, IOException {
+        KeyStore keyStore = KeyStore.getInstance(KEYSTORE);
+        keyStore.load(null);
+        Key key = keyStore.getKey(KEY_ALIAS, null);
+        if (key != null) {
+            return key;
+        }
+        KeyGenerator generator = KeyGenerator.getInstance(KeyProperties.KEY_ALGORITHM_HMAC_SHA256, KEYSTORE);
+        generator.init(new KeyGenParameterSpec.Builder(KEY_ALIAS, KeyProperties.PURPOSE_SIGN).build());
+        return generator.generateKey();
+    }
+}
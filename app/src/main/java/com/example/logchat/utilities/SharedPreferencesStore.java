@@ -0,0 +1,64 @@
+package com.example.logchat.utilities;
+
+import android.content.SharedPreferences;
+
+/**
+ * {@link KeyValueStore} backed by the platform {@link SharedPreferences}.
+ */
+class SharedPreferencesStore implements KeyValueStore {
+    private final SharedPreferences sharedPreferences;
+
+    SharedPreferencesStore(SharedPreferences sharedPreferences) {
+        this.sharedPreferences = sharedPreferences;
+    }
+
+    @Override
+    public String getString(String key, String defaultValue) {
+        return sharedPreferences.getString(key, defaultValue);
+    }
+
+    @Override
+    public boolean getBoolean(String key, boolean defaultValue) {
+        return sharedPreferences.getBoolean(key, defaultValue);
+    }
+
+    @Override
+    public Editor edit() {
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        return new Editor() {
+            @Override
+            public Editor putString(String key, String value) {
+                editor.putString(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor putBoolean(String key, boolean value) {
+                editor.putBoolean(key, value);
+                return this;
+            }
+
+            @Override
+            public Editor remove(String key) {
+                editor.remove(key);
+                return this;
+            }
+
+            @Override
+            public Editor clear() {
+                editor.clear();
+                return this;
+            }
+
+            @Override
+            public void apply() {
+                editor.apply();
+            }
+
+            @Override
+            public boolean commit() {
+                return editor.commit();
+            }
+        };
+    }
+}
@@ -0,0 +1,157 @@
+package com.example.logchat.utilities;
+
+import com.example.logchat.models.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chronologically ordered list of chat messages that is kept sorted incrementally.
+ *
+ * Instead of re-sorting the whole conversation whenever a snapshot arrives, each new
+ * message is placed by binary search, so a message costs O(log n) comparisons plus the
+ * array shift, and appending the newest message costs O(1). The buffer reports the exact
+ * position of every insertion so the adapter can be notified precisely.
+ *
+ * Messages are ordered by timestamp, with the document ID as a tie-breaker so that both
+ * listener streams of a conversation merge into one deterministic order. A message whose
+ * document ID is already present is ignored by {@link #insert(ChatMessage)}; edits go through
+ * {@link #update(ChatMessage)} and deletions through {@link #remove(String)}, which locate the
+ * stored message by binary search as well.
+ */
+public class SortedMessageBuffer {
+
+    /** Orders messages by timestamp, then by document ID. */
+    public static final Comparator<ChatMessage> ORDER = (obj1, obj2) -> {
+        int result = Long.compare(obj1.timestamp, obj2.timestamp);
+        if (result != 0) {
+            return result;
+        }
+        if (obj1.documentId == null || obj2.documentId == null) {
+            return obj1.documentId == null ? (obj2.documentId == null ? 0 : -1) : 1;
+        }
+        return obj1.documentId.compareTo(obj2.documentId);
+    };
+
+    private final List<ChatMessage> messages = new ArrayList<>();
+    private final Map<String, ChatMessage> byDocumentId = new HashMap<>(); // Stored instance per document ID
+
+    /**
+     * Returns the backing list in chronological order.
+     * The list must only be modified through this buffer.
+     * @return The buffered messages.
+     */
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    /**
+     * Returns the number of buffered messages.
+     * @return The buffer size.
+     */
+    public int size() {
+        return messages.size();
+    }
+
+    /**
+     * Inserts a message at its chronological position.
+     * @param chatMessage The message to insert.
+     * @return The position the message was inserted at, or {@code -1} if it was already present.
+     */
+    public int insert(ChatMessage chatMessage) {
+        if (chatMessage.documentId != null) {
+            if (byDocumentId.containsKey(chatMessage.documentId)) {
+                return -1;
+            }
+            byDocumentId.put(chatMessage.documentId, chatMessage);
+        }
+        int size = messages.size();
+        // Fast path: live messages almost always belong at the end.
+        if (size == 0 || ORDER.compare(messages.get(size - 1), chatMessage) <= 0) {
+            messages.add(chatMessage);
+            return size;
+        }
+        int position = upperBound(chatMessage);
+        messages.add(position, chatMessage);
+        return position;
+    }
+
+    /**
+     * Inserts a batch of messages. The batch is sorted first so that messages appended at
+     * the end occupy consecutive positions.
+     * @param batch The messages to insert; the list is sorted in place.
+     * @return The insertion positions in the order they were applied. Each position is valid
+     *         for the buffer state at the moment of its insertion, so replaying them as
+     *         single-item inserts keeps an adapter consistent.
+     */
+    public int[] insertAll(List<ChatMessage> batch) {
+        Collections.sort(batch, ORDER);
+        int[] positions = new int[batch.size()];
+        int count = 0;
+        for (ChatMessage chatMessage : batch) {
+            int position = insert(chatMessage);
+            if (position >= 0) {
+                positions[count++] = position;
+            }
+        }
+        if (count == positions.length) {
+            return positions;
+        }
+        int[] inserted = new int[count];
+        System.arraycopy(positions, 0, inserted, 0, count);
+        return inserted;
+    }
+
+    /**
+     * Replaces the stored message with the same document ID, moving it if its timestamp
+     * changed, or inserts it if it is not present yet.
+     * @param chatMessage The new version of the message.
+     * @return The position of the message after the update.
+     */
+    public int update(ChatMessage chatMessage) {
+        remove(chatMessage.documentId);
+        return insert(chatMessage);
+    }
+
+    /**
+     * Removes the message with the given document ID.
+     * @param documentId The document ID of the message to remove.
+     * @return The position the message was removed from, or {@code -1} if it was not present.
+     */
+    public int remove(String documentId) {
+        ChatMessage stored = documentId != null ? byDocumentId.remove(documentId) : null;
+        if (stored == null) {
+            return -1;
+        }
+        int position = upperBound(stored) - 1; // Document IDs are unique, so the match is the last equal element
+        messages.remove(position);
+        return position;
+    }
+
+    /**
+     * Removes every message from the buffer.
+     */
+    public void clear() {
+        messages.clear();
+        byDocumentId.clear();
+    }
+
+    // First position whose message orders after the given one
+    private int upperBound(ChatMessage chatMessage) {
+        int low = 0;
+        int high = messages.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (ORDER.compare(messages.get(middle), chatMessage) <= 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+}
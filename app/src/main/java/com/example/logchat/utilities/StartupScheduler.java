@@ -0,0 +1,104 @@
+package com.example.logchat.utilities;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Defers non-critical startup work of a screen until its first frame has been drawn.
+ *
+ * Tasks registered with {@link #defer(String, Runnable)} run on the main thread after the
+ * first draw, one per message loop iteration so input and the next frames are not blocked
+ * by a long chain of work. The scheduler also logs the time to first frame, measured from
+ * the creation of the scheduler and from process start, under the tag {@code StartupTrace},
+ * and wraps every deferred task in a systrace section of the same name.
+ */
+public class StartupScheduler {
+    private static final String TAG = "StartupTrace";
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<String> names = new ArrayList<>();
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final String screenName;
+    private final long createdAt = SystemClock.uptimeMillis();
+    private boolean firstFrameDrawn;
+
+    /**
+     * Creates a scheduler for one screen. Create it at the start of {@code onCreate} so the
+     * reported time to first frame covers the whole screen setup.
+     * @param screenName Name used in the startup trace.
+     */
+    public StartupScheduler(String screenName) {
+        this.screenName = screenName;
+    }
+
+    /**
+     * Registers a task to run after the first frame. Tasks run in registration order; tasks
+     * registered after the first frame run on the next loop iteration.
+     * @param name Name of the task in the startup trace.
+     * @param task The work to run on the main thread.
+     */
+    public void defer(String name, Runnable task) {
+        if (firstFrameDrawn) {
+            mainHandler.post(() -> runTraced(name, task));
+            return;
+        }
+        names.add(name);
+        tasks.add(task);
+    }
+
+    /**
+     * Starts waiting for the first frame of the given view hierarchy.
+     * @param root The content view of the screen.
+     */
+    public void start(View root) {
+        root.getViewTreeObserver().addOnDrawListener(new ViewTreeObserver.OnDrawListener() {
+            @Override
+            public void onDraw() {
+                if (firstFrameDrawn) {
+                    return;
+                }
+                firstFrameDrawn = true;
+                ViewTreeObserver.OnDrawListener listener = this;
+                // Listeners cannot be removed while the tree is dispatching onDraw.
+                mainHandler.post(() -> root.getViewTreeObserver().removeOnDrawListener(listener));
+                // The frame is submitted after onDraw returns, so start the work afterwards.
+                mainHandler.post(() -> onFirstFrame());
+            }
+        });
+    }
+
+    // Log the time to first frame and queue the deferred tasks
+    private void onFirstFrame() {
+        long now = SystemClock.uptimeMillis();
+        Log.i(TAG, screenName + " time to first frame: " + (now - createdAt) + " ms"
+                + " (since process start: " + (now - Process.getStartUptimeMillis()) + " ms)");
+        for (int i = 0; i < tasks.size(); i++) {
+            String name = names.get(i);
+            Runnable task = tasks.get(i);
+            mainHandler.post(() -> runTraced(name, task));
+        }
+        names.clear();
+        tasks.clear();
+    }
+
+    // Run a deferred task inside a systrace section and log its duration
+    private void runTraced(String name, Runnable task) {
+        long start = SystemClock.uptimeMillis();
+        Trace.beginSection(name);
+        try {
+            task.run();
+        } finally {
+            Trace.endSection();
+        }
+        Log.d(TAG, screenName + " deferred " + name + ": " + (SystemClock.uptimeMillis() - start) + " ms");
+    }
+}
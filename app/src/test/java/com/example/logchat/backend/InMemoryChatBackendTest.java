@@ -0,0 +1,257 @@
+package com.example.logchat.backend;
+
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+import com.example.logchat.utilities.SortedMessageBuffer;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link InMemoryChatBackend}.
+ */
+public class InMemoryChatBackendTest {
+
+    // Collects the result of a synchronous callback
+    private static final class Result<T> implements ChatBackend.Callback<T> {
+        T value;
+
+        @Override
+        public void onSuccess(T result) {
+            value = result;
+        }
+
+        @Override
+        public void onFailure(Exception exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    // Collects delivered message changes
+    private static final class RecordingMessageObserver implements ChatBackend.MessageObserver {
+        final List<ChatMessage> added = new ArrayList<>();
+        final List<ChatMessage> modified = new ArrayList<>();
+        int calls;
+
+        @Override
+        public void onMessagesChanged(List<ChatMessage> added, List<ChatMessage> modified, List<ChatMessage> removed) {
+            this.added.addAll(added);
+            this.modified.addAll(modified);
+            calls++;
+        }
+
+        @Override
+        public void onError(Exception exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    // Collects delivered conversation changes
+    private static final class RecordingConversationObserver implements ChatBackend.ConversationObserver {
+        final List<Conversation> changed = new ArrayList<>();
+        final List<String> removedIds = new ArrayList<>();
+
+        @Override
+        public void onConversationsChanged(List<Conversation> changed, List<String> removedIds) {
+            this.changed.addAll(changed);
+            this.removedIds.addAll(removedIds);
+        }
+
+        @Override
+        public void onError(Exception exception) {
+            throw new AssertionError(exception);
+        }
+    }
+
+    private static OutgoingMessage outgoing(String documentId, User sender, User receiver, String text, long timestamp) {
+        OutgoingMessage outgoingMessage = new OutgoingMessage();
+        outgoingMessage.message = new ChatMessage(documentId, sender.id, receiver.id, text, timestamp, sender.id, true);
+        outgoingMessage.senderName = sender.name;
+        outgoingMessage.receiverName = receiver.name;
+        return outgoingMessage;
+    }
+
+    @Test
+    public void getUsers_pagesInNameOrder() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        List<User> users = ChatWorkload.createUsers(5);
+        Collections.reverse(users);
+        backend.addUsers(users);
+
+        Result<List<User>> first = new Result<>();
+        backend.getUsers(null, 3, first);
+        assertEquals(3, first.value.size());
+        assertEquals("user-0000", first.value.get(0).id);
+        assertEquals("user-0002", first.value.get(2).id);
+
+        Result<List<User>> second = new Result<>();
+        backend.getUsers(first.value.get(2), 3, second);
+        assertEquals(2, second.value.size());
+        assertEquals("user-0003", second.value.get(0).id);
+    }
+
+    @Test
+    public void tokens_areStoredAndDeleted() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        backend.updateToken("a", "token", new Result<>());
+        assertEquals("token", backend.getToken("a"));
+        backend.deleteToken("a", new Result<>());
+        assertNull(backend.getToken("a"));
+    }
+
+    @Test
+    public void observeMessages_deliversExistingThenNewAndRewrittenMessages() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        List<User> users = ChatWorkload.createUsers(3);
+        User alice = users.get(0);
+        User bob = users.get(1);
+        backend.sendMessages(Collections.singletonList(outgoing("a", alice, bob, "old", 10)), new Result<>());
+        backend.sendMessages(Collections.singletonList(outgoing("b", bob, alice, "hi", 20)), new Result<>());
+        Result<List<ChatMessage>> stored = new Result<>();
+        backend.getMessagesBefore(alice.id, bob.id, 0, 10, stored);
+        long cursor = stored.value.get(0).serverTimestamp; // Server time of "a"
+        assertTrue(stored.value.get(1).serverTimestamp > cursor);
+
+        RecordingMessageObserver observer = new RecordingMessageObserver();
+        ChatBackend.Subscription subscription = backend.observeMessages(alice.id, bob.id, cursor, observer);
+        assertEquals(1, observer.added.size());
+        assertEquals("b", observer.added.get(0).documentId);
+        assertFalse(observer.added.get(0).sent); // Seen from alice
+        assertFalse(observer.added.get(0).pending);
+
+        backend.sendMessages(Collections.singletonList(outgoing("c", alice, bob, "new", 30)), new Result<>());
+        backend.sendMessages(Collections.singletonList(outgoing("c", alice, bob, "edited", 30)), new Result<>());
+        backend.sendMessages(Collections.singletonList(outgoing("d", alice, users.get(2), "other", 40)), new Result<>());
+        assertEquals(2, observer.added.size());
+        assertTrue(observer.added.get(1).sent);
+        assertEquals(1, observer.modified.size());
+        assertEquals("edited", observer.modified.get(0).message);
+
+        subscription.remove();
+        backend.sendMessages(Collections.singletonList(outgoing("e", bob, alice, "late", 50)), new Result<>());
+        assertEquals(3, observer.calls);
+    }
+
+    @Test
+    public void observeMessages_deliversLateMessageWithOlderSendTimeAfterCursor() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        List<User> users = ChatWorkload.createUsers(2);
+        User alice = users.get(0);
+        User bob = users.get(1);
+        RecordingMessageObserver observer = new RecordingMessageObserver();
+        ChatBackend.Subscription subscription = backend.observeMessages(alice.id, bob.id, 0, observer);
+        backend.sendMessages(Collections.singletonList(outgoing("fast", bob, alice, "clock ahead", 5_000)), new Result<>());
+        long cursor = observer.added.get(0).serverTimestamp; // What the sync engine persists
+        subscription.remove();
+
+        // Sent before the cursor moved, or from a slow clock, but written to the server afterwards
+        backend.sendMessages(Collections.singletonList(outgoing("late", alice, bob, "drained late", 1_000)), new Result<>());
+
+        RecordingMessageObserver reopened = new RecordingMessageObserver();
+        backend.observeMessages(alice.id, bob.id, cursor, reopened);
+        assertEquals(1, reopened.added.size());
+        assertEquals("late", reopened.added.get(0).documentId);
+        assertTrue(reopened.added.get(0).timestamp < 5_000);
+        assertTrue(reopened.added.get(0).serverTimestamp > cursor);
+    }
+
+    @Test
+    public void getMessagesBefore_returnsNewestPageInChronologicalOrder() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        List<User> users = ChatWorkload.createUsers(2);
+        List<OutgoingMessage> workload = new ArrayList<>();
+        for (int i = 99; i >= 0; i--) { // Written newest first
+            workload.add(outgoing("m" + i, users.get(i % 2), users.get(1 - i % 2), "text", 1000 + i));
+        }
+        backend.replay(workload, 10);
+
+        Result<List<ChatMessage>> newest = new Result<>();
+        backend.getMessagesBefore(users.get(0).id, users.get(1).id, 0, 30, newest);
+        assertEquals(30, newest.value.size());
+        assertEquals(1070, newest.value.get(0).timestamp);
+        assertEquals(1099, newest.value.get(29).timestamp);
+
+        Result<List<ChatMessage>> older = new Result<>();
+        backend.getMessagesBefore(users.get(1).id, users.get(0).id, 1070, 1000, older);
+        assertEquals(70, older.value.size());
+        assertEquals(1000, older.value.get(0).timestamp);
+        assertEquals(1069, older.value.get(69).timestamp);
+    }
+
+    @Test
+    public void observeConversations_keepsNewestWithinLimit() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        List<User> users = ChatWorkload.createUsers(4);
+        User me = users.get(0);
+        backend.sendMessages(Collections.singletonList(outgoing("a", me, users.get(1), "one", 10)), new Result<>());
+        backend.sendMessages(Collections.singletonList(outgoing("b", users.get(2), me, "two", 20)), new Result<>());
+
+        RecordingConversationObserver observer = new RecordingConversationObserver();
+        backend.observeConversations(me.id, 2, observer);
+        assertEquals(2, observer.changed.size());
+        assertEquals(users.get(2).id, observer.changed.get(0).userId); // Newest first
+        assertEquals(users.get(2).name, observer.changed.get(0).name);
+
+        backend.sendMessages(Collections.singletonList(outgoing("c", me, users.get(3), "three", 30)), new Result<>());
+        assertEquals(3, observer.changed.size());
+        assertEquals(Collections.singletonList("user-0000_user-0001"), observer.removedIds);
+    }
+
+    @Test
+    public void sendMessages_entryMarkedLateKeepsSummary() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        List<User> users = ChatWorkload.createUsers(2);
+        User me = users.get(0);
+        User peer = users.get(1);
+        backend.sendMessages(Collections.singletonList(outgoing("new", peer, me, "newer", 50)), new Result<>());
+        OutgoingMessage stale = outgoing("stale", me, peer, "drained late", 10);
+        stale.keepSummary = true; // As the outbox marks it when a newer message is stored locally
+        backend.sendMessages(Collections.singletonList(stale), new Result<>());
+
+        RecordingConversationObserver observer = new RecordingConversationObserver();
+        backend.observeConversations(me.id, 10, observer);
+        assertEquals(1, observer.changed.size());
+        assertEquals("newer", observer.changed.get(0).lastMessage);
+        assertEquals(50, observer.changed.get(0).timestamp);
+        assertEquals(2, backend.getMessageCount()); // The late message itself is still written
+    }
+
+    @Test
+    public void replay_100kMessagesKeepsEveryMessageInOrder() {
+        InMemoryChatBackend backend = new InMemoryChatBackend();
+        List<User> users = ChatWorkload.createUsers(2);
+        List<OutgoingMessage> workload = ChatWorkload.createConversation(users.get(0), users.get(1), 100_000, 42);
+        RecordingMessageObserver observer = new RecordingMessageObserver();
+        backend.observeMessages(users.get(0).id, users.get(1).id, 0, observer);
+
+        backend.replay(workload, 100);
+
+        assertEquals(100_000, backend.getMessageCount());
+        assertEquals(100_000, observer.added.size());
+        assertEquals(1000, observer.calls); // One notification per batch
+        for (int i = 0; i < workload.size(); i++) { // Delivered in write order
+            assertEquals(workload.get(i).message.documentId, observer.added.get(i).documentId);
+        }
+
+        ChatMessage newest = workload.get(0).message;
+        for (OutgoingMessage outgoingMessage : workload) {
+            if (SortedMessageBuffer.ORDER.compare(outgoingMessage.message, newest) > 0) {
+                newest = outgoingMessage.message;
+            }
+        }
+        Result<List<ChatMessage>> page = new Result<>();
+        backend.getMessagesBefore(users.get(0).id, users.get(1).id, 0, 500, page);
+        assertEquals(500, page.value.size());
+        for (int i = 1; i < page.value.size(); i++) { // Chronological despite late messages
+            assertTrue(SortedMessageBuffer.ORDER.compare(page.value.get(i - 1), page.value.get(i)) < 0);
+        }
+        assertEquals(newest.documentId, page.value.get(499).documentId);
+    }
+}
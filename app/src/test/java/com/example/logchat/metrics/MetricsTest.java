@@ -0,0 +1,109 @@
+package com.example.logchat.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link Histogram} and the {@link Metrics} registry.
+ */
+public class MetricsTest {
+
+    @Test
+    public void buckets_coverEveryValueWithBoundedError() {
+        int previous = -1;
+        for (long value = 0; value < 1 << 20; value++) {
+            int bucket = Histogram.bucketOf(value);
+            assertTrue(bucket == previous || bucket == previous + 1); // Contiguous and ordered
+            long upperBound = Histogram.upperBoundOf(bucket);
+            assertTrue(upperBound >= value);
+            assertTrue(upperBound - value <= value / 16);
+            previous = bucket;
+        }
+        assertEquals(Histogram.BUCKET_COUNT - 1, Histogram.bucketOf((1L << 40) - 1));
+    }
+
+    @Test
+    public void snapshot_reportsPercentilesWithinError() {
+        Histogram histogram = new Histogram("test");
+        for (long value = 1; value <= 10_000; value++) {
+            histogram.record(value);
+        }
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.count);
+        assertEquals(5000.5, snapshot.mean, 0.001);
+        assertEquals(10_000, snapshot.max);
+        assertInRange(5000, snapshot.p50);
+        assertInRange(9000, snapshot.p90);
+        assertInRange(9900, snapshot.p99);
+    }
+
+    @Test
+    public void record_clampsNegativeAndHugeValues() {
+        Histogram histogram = new Histogram("test");
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.count);
+        assertEquals(0, snapshot.p50);
+        assertEquals(Long.MAX_VALUE, snapshot.max);
+    }
+
+    @Test
+    public void record_countsEveryValueFromConcurrentThreads() throws InterruptedException {
+        Histogram histogram = new Histogram("test");
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            long seed = i;
+            threads[i] = new Thread(() -> {
+                Random random = new Random(seed);
+                for (int j = 0; j < 100_000; j++) {
+                    histogram.record(random.nextInt(1_000_000));
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.snapshot().count);
+    }
+
+    @Test
+    public void registry_returnsOneInstancePerName() {
+        Metrics metrics = new Metrics();
+        assertSame(metrics.timer("a.timer"), metrics.timer("a.timer"));
+        assertSame(metrics.counter("a.counter"), metrics.counter("a.counter"));
+        metrics.histogram("a.histogram");
+        try {
+            metrics.timer("a.histogram");
+            fail("A histogram must not be returned as a timer");
+        } catch (IllegalArgumentException expected) {
+            // Names are unique across histograms and timers
+        }
+    }
+
+    @Test
+    public void report_listsRecordedMetricsByName() {
+        Metrics metrics = new Metrics();
+        metrics.timer("b.timer").recordMillis(12);
+        metrics.counter("a.counter").add(3);
+        metrics.histogram("c.unused");
+
+        assertEquals("a.counter 3\n"
+                + "b.timer n=1 p50=12.0 p90=12.0 p99=12.0 max=12.0 mean=12.0 ms\n", metrics.report());
+
+        metrics.reset();
+        assertEquals("", metrics.report());
+    }
+
+    // A reported percentile may exceed the exact one by at most 1/16
+    private static void assertInRange(long expected, long actual) {
+        assertTrue("expected about " + expected + " but was " + actual,
+                actual >= expected && actual <= expected + expected / 16);
+    }
+}
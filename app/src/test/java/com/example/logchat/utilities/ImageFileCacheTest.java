@@ -0,0 +1,58 @@
+package com.example.logchat.utilities;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for the key checks of {@link ImageFileCache}.
+ */
+public class ImageFileCacheTest {
+    private static final String HASH = HashUtils.sha256Hex(new byte[]{1, 2, 3});
+
+    @Test
+    public void isValidKey_acceptsHashesAndRenditionKeysOnly() {
+        assertTrue(ImageFileCache.isValidKey(HASH));
+        assertTrue(ImageFileCache.isValidKey(ImageFileCache.getKey(HASH, ImageRendition.THUMBNAIL)));
+        assertTrue(ImageFileCache.isValidKey(ImageFileCache.getKey(HASH, ImageRendition.BUBBLE)));
+
+        assertFalse(ImageFileCache.isValidKey(null));
+        assertFalse(ImageFileCache.isValidKey(""));
+        assertFalse(ImageFileCache.isValidKey("../shared_prefs/x"));
+        assertFalse(ImageFileCache.isValidKey(HASH.substring(1)));
+        assertFalse(ImageFileCache.isValidKey(HASH.toUpperCase()));
+        assertFalse(ImageFileCache.isValidKey(HASH + "0"));
+        assertFalse(ImageFileCache.isValidKey(HASH + "-full"));
+        assertFalse(ImageFileCache.isValidKey(HASH + "-thumbnail/../../x"));
+        assertFalse(ImageFileCache.isValidKey(HASH.substring(0, 62) + "/x"));
+    }
+
+    @Test
+    public void invalidKeys_neverTouchFilesOutsideTheDirectory() throws IOException {
+        File root = Files.createTempDirectory("cache").toFile();
+        root.deleteOnExit();
+        File directory = new File(root, "images");
+        File outside = new File(root, "secret");
+        try (FileOutputStream output = new FileOutputStream(outside)) {
+            output.write(42);
+        }
+        outside.deleteOnExit();
+        directory.deleteOnExit();
+        ImageFileCache cache = new ImageFileCache(directory);
+
+        assertNull(cache.getFile("../secret"));
+        assertFalse(cache.put("../secret", new byte[]{7, 7}));
+        assertEquals(1, outside.length()); // Not overwritten
+
+        assertTrue(cache.put(HASH, new byte[]{1, 2, 3}));
+        File stored = cache.getFile(HASH);
+        assertNotNull(stored);
+        assertEquals(directory, stored.getParentFile());
+        stored.deleteOnExit();
+    }
+}
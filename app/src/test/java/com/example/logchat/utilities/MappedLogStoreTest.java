@@ -0,0 +1,132 @@
+package com.example.logchat.utilities;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link MappedLogStore}.
+ */
+public class MappedLogStoreTest {
+
+    @Test
+    public void editor_changesSurviveReopen() throws IOException {
+        File file = newLogFile();
+        MappedLogStore store = new MappedLogStore(file, Runnable::run);
+        store.edit()
+                .putString("name", "Ada")
+                .putBoolean("signedIn", true)
+                .putString("removed", "x")
+                .apply();
+        store.edit().remove("removed").putString("name", "Ada L.").commit();
+
+        MappedLogStore reopened = new MappedLogStore(file, Runnable::run);
+        assertEquals("Ada L.", reopened.getString("name", null));
+        assertTrue(reopened.getBoolean("signedIn", false));
+        assertNull(reopened.getString("removed", null));
+        assertEquals("fallback", reopened.getString("signedIn", "fallback")); // Wrong type reads the default
+    }
+
+    @Test
+    public void clear_dropsEarlierValuesOnly() throws IOException {
+        File file = newLogFile();
+        MappedLogStore store = new MappedLogStore(file, Runnable::run);
+        store.edit().putString("old", "1").apply();
+        store.edit().putString("new", "2").clear().apply(); // Clear runs before the puts, as in SharedPreferences
+
+        MappedLogStore reopened = new MappedLogStore(file, Runnable::run);
+        assertNull(reopened.getString("old", null));
+        assertEquals("2", reopened.getString("new", null));
+    }
+
+    @Test
+    public void tornRecord_isIgnoredOnLoad() throws IOException {
+        File file = newLogFile();
+        MappedLogStore store = new MappedLogStore(file, Runnable::run);
+        store.edit().putString("kept", "yes").commit();
+        int firstRecordEnd = store.getLogSize();
+        store.edit().putString("torn", "no").commit();
+
+        try (RandomAccessFile raw = new RandomAccessFile(file, "rw")) {
+            raw.seek(firstRecordEnd + 8); // Corrupt the payload of the second record
+            raw.write(0x7f);
+        }
+        MappedLogStore reopened = new MappedLogStore(file, Runnable::run);
+        assertEquals("yes", reopened.getString("kept", null));
+        assertNull(reopened.getString("torn", null));
+
+        reopened.edit().putString("after", "ok").commit(); // Appends over the torn record
+        assertEquals("ok", new MappedLogStore(file, Runnable::run).getString("after", null));
+    }
+
+    @Test
+    public void log_isCompactedAsItGrows() throws IOException {
+        File file = newLogFile();
+        MappedLogStore store = new MappedLogStore(file, Runnable::run);
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            value.append("0123456789");
+        }
+        for (int i = 0; i < 2000; i++) {
+            store.edit().putString("key" + (i % 10), value.toString() + i).apply();
+        }
+        assertTrue("log size " + store.getLogSize(), store.getLogSize() < 64 * 1024);
+
+        MappedLogStore reopened = new MappedLogStore(file, Runnable::run);
+        for (int i = 0; i < 10; i++) {
+            assertEquals(value.toString() + (1990 + i), reopened.getString("key" + i, null));
+        }
+    }
+
+    @Test
+    public void compaction_runsOnTheExecutorAndKeepsLaterWrites() throws IOException {
+        File file = newLogFile();
+        List<Runnable> pending = new ArrayList<>();
+        MappedLogStore store = new MappedLogStore(file, pending::add);
+        char[] value = new char[1000];
+        java.util.Arrays.fill(value, 'v');
+        int writes = 0;
+        while (pending.isEmpty()) {
+            store.edit().putString("key" + (writes++ % 10), new String(value)).apply();
+        }
+        store.edit().putString("late", "kept").clear().putString("key0", "last").apply();
+        assertEquals(1, pending.size()); // Scheduled once, nothing compacted on the caller
+        int grownSize = store.getLogSize();
+
+        pending.remove(0).run();
+        assertTrue("log size " + store.getLogSize(), store.getLogSize() < grownSize);
+        store.edit().putString("after", "ok").commit();
+
+        MappedLogStore reopened = new MappedLogStore(file, Runnable::run);
+        assertEquals("kept", reopened.getString("late", null));
+        assertEquals("last", reopened.getString("key0", null));
+        assertNull(reopened.getString("key1", null));
+        assertEquals("ok", reopened.getString("after", null));
+    }
+
+    @Test
+    public void largeValue_growsTheMapping() throws IOException {
+        File file = newLogFile();
+        MappedLogStore store = new MappedLogStore(file, Runnable::run);
+        char[] image = new char[200 * 1024];
+        java.util.Arrays.fill(image, 'a');
+        store.edit().putString("image", new String(image)).apply();
+
+        assertEquals(image.length, new MappedLogStore(file, Runnable::run).getString("image", "").length());
+    }
+
+    // A fresh log file that is removed when the JVM exits
+    private static File newLogFile() throws IOException {
+        File file = File.createTempFile("prefs", ".kvlog");
+        file.deleteOnExit();
+        new File(file.getPath() + ".tmp").deleteOnExit();
+        assertTrue(file.delete());
+        return file;
+    }
+}
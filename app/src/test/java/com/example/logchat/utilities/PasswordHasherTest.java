@@ -0,0 +1,31 @@
+package com.example.logchat.utilities;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link PasswordHasher}.
+ */
+public class PasswordHasherTest {
+
+    @Test
+    public void verify_acceptsCorrectPasswordOnly() {
+        String salt = PasswordHasher.newSalt();
+        String hash = PasswordHasher.hash("correct horse", salt, 1000);
+
+        assertTrue(PasswordHasher.verify("correct horse", salt, 1000, hash));
+        assertFalse(PasswordHasher.verify("correct horse!", salt, 1000, hash));
+        assertFalse(PasswordHasher.verify("correct horse", salt, 999, hash));
+        assertFalse(PasswordHasher.verify(null, salt, 1000, hash));
+    }
+
+    @Test
+    public void hash_dependsOnSalt() {
+        String first = PasswordHasher.newSalt();
+        String second = PasswordHasher.newSalt();
+
+        assertNotEquals(first, second);
+        assertNotEquals(PasswordHasher.hash("secret", first, 1000), PasswordHasher.hash("secret", second, 1000));
+    }
+}
@@ -0,0 +1,90 @@
+package com.example.logchat.utilities;
+
+import com.example.logchat.models.ChatMessage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Local unit tests for {@link SortedMessageBuffer}.
+ */
+public class SortedMessageBufferTest {
+
+    private static ChatMessage message(String documentId, long timestamp) {
+        return new ChatMessage(documentId, "sender", "receiver", null, timestamp, "sender");
+    }
+
+    @Test
+    public void insert_keepsChronologicalOrderAndReportsPositions() {
+        SortedMessageBuffer buffer = new SortedMessageBuffer();
+        assertEquals(0, buffer.insert(message("a", 10)));
+        assertEquals(1, buffer.insert(message("b", 30)));
+        assertEquals(1, buffer.insert(message("c", 20)));
+        assertEquals(0, buffer.insert(message("d", 5)));
+        assertEquals(4, buffer.insert(message("e", 30)));
+
+        List<ChatMessage> messages = buffer.getMessages();
+        assertEquals("d", messages.get(0).documentId);
+        assertEquals("a", messages.get(1).documentId);
+        assertEquals("c", messages.get(2).documentId);
+        assertEquals("b", messages.get(3).documentId);
+        assertEquals("e", messages.get(4).documentId);
+    }
+
+    @Test
+    public void insert_ignoresDuplicateDocuments() {
+        SortedMessageBuffer buffer = new SortedMessageBuffer();
+        buffer.insert(message("a", 10));
+        assertEquals(-1, buffer.insert(message("a", 10)));
+        assertEquals(1, buffer.size());
+    }
+
+    @Test
+    public void update_movesEditedMessageAndRemoveDeletesIt() {
+        SortedMessageBuffer buffer = new SortedMessageBuffer();
+        buffer.insert(message("a", 10));
+        buffer.insert(message("b", 20));
+        buffer.insert(message("c", 30));
+
+        assertEquals(2, buffer.update(message("a", 40)));
+        assertEquals("b", buffer.getMessages().get(0).documentId);
+        assertEquals(0, buffer.remove("b"));
+        assertEquals(-1, buffer.remove("b"));
+        assertEquals(2, buffer.size());
+        assertEquals(0, buffer.insert(message("b", 20)));
+    }
+
+    @Test
+    public void insertAll_mergesBothListenerStreams() {
+        SortedMessageBuffer buffer = new SortedMessageBuffer();
+        List<ChatMessage> sent = new ArrayList<>();
+        List<ChatMessage> received = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sent.add(message("s" + i, i * 2));
+            received.add(message("r" + i, i * 2 + 1));
+        }
+        buffer.insertAll(sent);
+        int[] positions = buffer.insertAll(received);
+
+        assertEquals(50, positions.length);
+        List<ChatMessage> messages = buffer.getMessages();
+        for (int i = 1; i < messages.size(); i++) {
+            assertTrue(messages.get(i - 1).timestamp <= messages.get(i).timestamp);
+        }
+    }
+
+    @Test
+    public void insertAll_appendedBatchHasConsecutivePositions() {
+        SortedMessageBuffer buffer = new SortedMessageBuffer();
+        buffer.insert(message("a", 1));
+        List<ChatMessage> batch = new ArrayList<>();
+        batch.add(message("c", 3));
+        batch.add(message("b", 2));
+
+        assertArrayEquals(new int[]{1, 2}, buffer.insertAll(batch));
+    }
+}
@@ -0,0 +1,134 @@
+import java.util.Properties
+
+plugins {
+    java
+    alias(libs.plugins.jmh)
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// The benchmarks run on a plain JVM against the app's own platform-independent sources,
+// so they measure the code the app ships without a device or emulator.
+sourceSets {
+    main {
+        java {
+            setSrcDirs(listOf("../app/src/main/java"))
+            include(
+                "com/example/logchat/models/**",
+                "com/example/logchat/backend/ChatBackend.java",
+                "com/example/logchat/backend/ChatWorkload.java",
+                "com/example/logchat/backend/InMemoryChatBackend.java",
+                "com/example/logchat/metrics/Counter.java",
+                "com/example/logchat/metrics/Histogram.java",
+                "com/example/logchat/metrics/Metrics.java",
+                "com/example/logchat/metrics/Timer.java",
+                "com/example/logchat/utilities/Constants.java",
+                "com/example/logchat/utilities/ConversationIndex.java",
+                "com/example/logchat/utilities/ConversationUtils.java",
+                "com/example/logchat/utilities/DateFormatter.java",
+                "com/example/logchat/utilities/HashUtils.java",
+                "com/example/logchat/utilities/ImageRendition.java",
+                "com/example/logchat/utilities/KeyValueStore.java",
+                "com/example/logchat/utilities/MappedLogStore.java",
+                "com/example/logchat/utilities/PasswordHasher.java",
+                "com/example/logchat/utilities/SortedMessageBuffer.java"
+            )
+        }
+    }
+}
+
+// MappedLogStore and HashUtils only touch Context, Log and Base64 outside the measured paths,
+// so the platform stubs are needed to compile them but never end up on the benchmark classpath.
+// The SDK is looked up only when the benchmarks are compiled, so builds without one still configure.
+val androidJar: Provider<File> = providers.provider {
+    val properties = Properties()
+    val localProperties = rootProject.file("local.properties")
+    if (localProperties.exists()) {
+        localProperties.inputStream().use { properties.load(it) }
+    }
+    val sdkDir = properties.getProperty("sdk.dir")
+        ?: providers.environmentVariable("ANDROID_HOME").orNull
+        ?: providers.environmentVariable("ANDROID_SDK_ROOT").orNull
+        ?: throw GradleException("Set sdk.dir in local.properties, ANDROID_HOME or ANDROID_SDK_ROOT")
+    file("$sdkDir/platforms/android-34/android.jar")
+}
+
+dependencies {
+    compileOnly(files(androidJar))
+    "jmhCompileOnly"(files(androidJar))
+}
+
+// Fixed settings so that runs on the same machine are comparable. A single benchmark can be
+// selected with -PjmhIncludes=<regex>, e.g. -PjmhIncludes=DateFormatterBenchmark.
+jmh {
+    jmhVersion.set(libs.versions.jmh)
+    benchmarkMode.set(listOf("avgt"))
+    timeUnit.set("us")
+    warmupIterations.set(3)
+    warmup.set("1s")
+    iterations.set(5)
+    timeOnIteration.set("1s")
+    fork.set(2)
+    profilers.set(listOf("gc")) // Allocation rate per operation
+    resultFormat.set("JSON")
+    resultsFile.set(layout.buildDirectory.file("results/jmh/results.json"))
+    failOnError.set(true)
+    providers.gradleProperty("jmhIncludes").orNull?.let { includes.set(listOf(it)) }
+}
+
+val baselineFile = layout.projectDirectory.file("baseline.json")
+val resultsFile = layout.buildDirectory.file("results/jmh/results.json")
+val tolerance = providers.gradleProperty("benchmarkTolerance").map { it.toDouble() }.getOrElse(0.15)
+
+// Average time per benchmark and parameter combination, keyed like "Class.method(messages=100)"
+fun readScores(file: File): Map<String, Double> {
+    @Suppress("UNCHECKED_CAST")
+    val runs = groovy.json.JsonSlurper().parse(file) as List<Map<String, Any?>>
+    return runs.associate { run ->
+        val params = (run["params"] as Map<*, *>?)
+            ?.entries
+            ?.sortedBy { it.key.toString() }
+            ?.joinToString(",", "(", ")") { "${it.key}=${it.value}" }
+            ?: ""
+        val metric = run["primaryMetric"] as Map<*, *>
+        "${run["benchmark"]}$params" to (metric["score"] as Number).toDouble()
+    }
+}
+
+tasks.register<Copy>("recordBenchmarkBaseline") {
+    group = "benchmark"
+    description = "Runs the benchmarks and stores the results as the baseline for checkBenchmarks."
+    dependsOn("jmh")
+    from(resultsFile)
+    into(layout.projectDirectory)
+    rename { baselineFile.asFile.name }
+}
+
+tasks.register("checkBenchmarks") {
+    group = "verification"
+    description = "Runs the benchmarks and fails if one is slower than the baseline by more than the tolerance."
+    dependsOn("jmh")
+    doLast {
+        val baseline = baselineFile.asFile
+        if (!baseline.exists()) {
+            throw GradleException("No baseline at $baseline; record one with recordBenchmarkBaseline")
+        }
+        val expected = readScores(baseline)
+        val regressions = readScores(resultsFile.get().asFile).mapNotNull { (key, score) ->
+            val reference = expected[key] ?: return@mapNotNull null // New benchmark, nothing to compare
+            if (score > reference * (1 + tolerance)) {
+                String.format("%s: %.3f us/op, baseline %.3f us/op (+%.0f%%)", key, score, reference,
+                    (score / reference - 1) * 100)
+            } else {
+                null
+            }
+        }
+        if (regressions.isNotEmpty()) {
+            throw GradleException("Benchmarks slower than baseline by more than ${(tolerance * 100).toInt()}%:\n"
+                    + regressions.joinToString("\n"))
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.logchat.backend;
+
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+import com.example.logchat.utilities.Constants;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures turning message documents into {@link ChatMessage} instances.
+ *
+ * {@link #mapDocuments()} runs {@link ChatMessage#fromDocument}, the mapping
+ * {@code FirestoreChatBackend} applies to every document, on data shaped like a Firestore
+ * snapshot, with both timestamps as {@link Date}s. {@link #pageThroughHistory()} reads a whole conversation
+ * backwards in message pages from an {@link InMemoryChatBackend}, which maps every stored
+ * message into a fresh instance per read like a query does.
+ */
+@State(Scope.Thread)
+public class SnapshotMappingBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int messages;
+
+    private List<String> documentIds;
+    private List<Map<String, Object>> documents;
+    private boolean[] pendingWrites; // Snapshot metadata, kept beside the document data
+    private InMemoryChatBackend backend;
+    private User me;
+    private User other;
+
+    @Setup
+    public void setUp() {
+        List<User> users = ChatWorkload.createUsers(2);
+        me = users.get(0);
+        other = users.get(1);
+        List<OutgoingMessage> workload = ChatWorkload.createConversation(me, other, messages, 42);
+
+        documentIds = new ArrayList<>(messages);
+        documents = new ArrayList<>(messages);
+        pendingWrites = new boolean[messages];
+        for (OutgoingMessage outgoingMessage : workload) {
+            ChatMessage chatMessage = outgoingMessage.message;
+            Map<String, Object> document = new HashMap<>();
+            document.put(Constants.KEY_SENDER_ID, new String(chatMessage.senderId)); // Fresh strings, as deserialized
+            document.put(Constants.KEY_RECEIVER_ID, new String(chatMessage.receiverId));
+            document.put(Constants.KEY_MESSAGE, chatMessage.message);
+            document.put(Constants.KEY_TIMESTAMP, new Date(chatMessage.timestamp));
+            document.put(Constants.KEY_SERVER_TIMESTAMP, new Date(chatMessage.timestamp));
+            documentIds.add(chatMessage.documentId);
+            documents.add(document);
+        }
+
+        backend = new InMemoryChatBackend();
+        backend.replay(workload, Constants.MESSAGE_PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<ChatMessage> mapDocuments() {
+        List<ChatMessage> mapped = new ArrayList<>();
+        for (int i = 0; i < documents.size(); i++) {
+            Map<String, Object> document = documents.get(i);
+            ChatMessage chatMessage = ChatMessage.fromDocument(
+                    documentIds.get(i),
+                    (String) document.get(Constants.KEY_SENDER_ID),
+                    (String) document.get(Constants.KEY_RECEIVER_ID),
+                    (String) document.get(Constants.KEY_MESSAGE),
+                    (Date) document.get(Constants.KEY_TIMESTAMP),
+                    (Date) document.get(Constants.KEY_SERVER_TIMESTAMP),
+                    me.id,
+                    pendingWrites[i]);
+            if (chatMessage != null) {
+                mapped.add(chatMessage);
+            }
+        }
+        return mapped;
+    }
+
+    @Benchmark
+    public int pageThroughHistory() {
+        PageReader reader = new PageReader();
+        do {
+            backend.getMessagesBefore(me.id, other.id, reader.before, Constants.MESSAGE_PAGE_SIZE, reader);
+        } while (reader.lastPageSize == Constants.MESSAGE_PAGE_SIZE);
+        return reader.total;
+    }
+
+    // Follows the cursor of each delivered page; the in-memory backend calls back synchronously
+    private static final class PageReader implements ChatBackend.Callback<List<ChatMessage>> {
+        long before;
+        int lastPageSize;
+        int total;
+
+        @Override
+        public void onSuccess(List<ChatMessage> page) {
+            lastPageSize = page.size();
+            total += page.size();
+            if (!page.isEmpty()) {
+                before = page.get(0).timestamp;
+            }
+        }
+
+        @Override
+        public void onFailure(Exception exception) {
+            throw new IllegalStateException(exception);
+        }
+    }
+}
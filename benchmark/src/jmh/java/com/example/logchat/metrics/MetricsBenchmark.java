@@ -0,0 +1,47 @@
+package com.example.logchat.metrics;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the cost the instrumentation adds to a hot path: timing one operation,
+ * recording a value and counting an event, alone and with four threads recording into the
+ * same metrics. The gc profiler should report no allocation for any of them.
+ */
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+    private final Metrics metrics = new Metrics();
+    private final Timer timer = metrics.timer("benchmark.timer");
+    private final Histogram histogram = metrics.histogram("benchmark.histogram");
+    private final Counter counter = metrics.counter("benchmark.counter");
+    private long value;
+
+    @Benchmark
+    public void time() {
+        timer.stop(Timer.start());
+    }
+
+    @Benchmark
+    public void record() {
+        histogram.record(value++ & 0xFFFFF); // Spread over many buckets
+    }
+
+    @Benchmark
+    public void increment() {
+        counter.increment();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void timeContended() {
+        timer.stop(Timer.start());
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void incrementContended() {
+        counter.increment();
+    }
+}
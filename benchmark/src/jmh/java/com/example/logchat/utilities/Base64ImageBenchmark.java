@@ -0,0 +1,48 @@
+package com.example.logchat.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+/**
+ * Measures Base64 encoding and decoding of profile images at the size budget of each
+ * {@link ImageRendition}, as done when an avatar is uploaded and when an encoded image from
+ * Firestore is cached or decoded.
+ *
+ * {@code android.util.Base64} only exists on a device, so the JVM codec stands in for it,
+ * configured like {@code Base64.DEFAULT}: lines of 76 characters separated by '\n'.
+ */
+@State(Scope.Thread)
+public class Base64ImageBenchmark {
+
+    @Param({"THUMBNAIL", "BUBBLE", "FULL"})
+    public ImageRendition rendition;
+
+    private final Base64.Encoder encoder = Base64.getMimeEncoder(76, new byte[]{'\n'});
+    private final Base64.Decoder decoder = Base64.getMimeDecoder();
+    private byte[] image;
+    private String encodedImage;
+
+    @Setup
+    public void setUp() {
+        image = new byte[rendition.maxBytes];
+        new Random(42).nextBytes(image); // Compressed image data is close to random
+        encodedImage = new String(encoder.encode(image), StandardCharsets.US_ASCII);
+    }
+
+    @Benchmark
+    public String encode() {
+        return encoder.encodeToString(image);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        return decoder.decode(encodedImage);
+    }
+}
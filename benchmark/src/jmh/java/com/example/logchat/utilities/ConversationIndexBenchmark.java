@@ -0,0 +1,60 @@
+package com.example.logchat.utilities;
+
+import com.example.logchat.backend.ChatWorkload;
+import com.example.logchat.models.Conversation;
+import com.example.logchat.models.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures moving a conversation to the top of the recent-conversations list when it
+ * receives a new message, as {@link ConversationIndex} does for every summary snapshot.
+ */
+@State(Scope.Thread)
+public class ConversationIndexBenchmark {
+
+    @Param({"20", "200"})
+    public int conversations;
+
+    private ConversationIndex index;
+    private List<Conversation> fixtures;
+    private Random random;
+    private long clock;
+
+    @Setup
+    public void setUp() {
+        index = new ConversationIndex();
+        fixtures = new ArrayList<>(conversations);
+        random = new Random(42);
+        for (User user : ChatWorkload.createUsers(conversations)) {
+            Conversation conversation = new Conversation();
+            conversation.conversationId = ConversationUtils.getConversationId("me", user.id);
+            conversation.userId = user.id;
+            conversation.name = user.name;
+            conversation.lastMessage = "hello";
+            conversation.timestamp = ++clock;
+            fixtures.add(conversation);
+            index.upsert(conversation);
+        }
+    }
+
+    @Benchmark
+    public int[] moveToTop() {
+        Conversation fixture = fixtures.get(random.nextInt(fixtures.size()));
+        Conversation conversation = new Conversation(); // A fresh copy, as mapped from a snapshot
+        conversation.conversationId = fixture.conversationId;
+        conversation.userId = fixture.userId;
+        conversation.name = fixture.name;
+        conversation.lastMessage = fixture.lastMessage;
+        conversation.timestamp = ++clock;
+        return index.upsert(conversation);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.logchat.utilities;
+
+import com.example.logchat.backend.ChatWorkload;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Measures formatting the timestamps of a whole thread, as when every row of a chat is bound
+ * once. {@link #formatThread(Blackhole)} goes through {@link DateFormatter} and its per-minute
+ * cache; {@link #formatUncached(Blackhole)} is the reference of formatting every timestamp
+ * with one reused {@link SimpleDateFormat}.
+ */
+@State(Scope.Thread)
+public class DateFormatterBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    public int messages;
+
+    private long[] timestamps;
+    private SimpleDateFormat format;
+
+    @Setup
+    public void setUp() {
+        Locale.setDefault(Locale.US); // Results must not depend on the machine's locale
+        List<User> users = ChatWorkload.createUsers(2);
+        List<OutgoingMessage> workload = ChatWorkload.createConversation(users.get(0), users.get(1), messages, 42);
+        timestamps = new long[messages];
+        for (int i = 0; i < messages; i++) {
+            timestamps[i] = workload.get(i).message.timestamp;
+        }
+        format = new SimpleDateFormat("MMMM dd, yyyy - hh:mm a", Locale.US);
+    }
+
+    @Benchmark
+    public void formatThread(Blackhole blackhole) {
+        for (long timestamp : timestamps) {
+            blackhole.consume(DateFormatter.format(timestamp));
+        }
+    }
+
+    @Benchmark
+    public void formatUncached(Blackhole blackhole) {
+        for (long timestamp : timestamps) {
+            blackhole.consume(format.format(new Date(timestamp)));
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.logchat.utilities;
+
+import com.example.logchat.backend.ChatWorkload;
+import com.example.logchat.models.ChatMessage;
+import com.example.logchat.models.OutgoingMessage;
+import com.example.logchat.models.User;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures keeping a chat thread ordered in a {@link SortedMessageBuffer}: building it message
+ * by message and snapshot by snapshot, and merging a single live or late message into a full
+ * thread. {@link #sortAll()} is the reference of sorting the arrived messages once, and
+ * {@link #resortLateMessage()} the earlier approach of appending a message and sorting the
+ * whole thread again.
+ */
+@State(Scope.Thread)
+public class MessageOrderingBenchmark {
+    private static final int LATE_OFFSET = 30_000; // A message older than the last 30 in the thread
+
+    @Param({"100", "10000", "100000"})
+    public int messages;
+
+    private List<ChatMessage> arrivals; // Send order, with some late messages
+    private SortedMessageBuffer thread; // Every arrival, merged
+    private List<ChatMessage> sortedThread; // Every arrival, as a plain sorted list
+    private ChatMessage liveMessage;
+    private ChatMessage lateMessage;
+
+    @Setup
+    public void setUp() {
+        List<User> users = ChatWorkload.createUsers(2);
+        arrivals = new ArrayList<>(messages);
+        for (OutgoingMessage outgoingMessage : ChatWorkload.createConversation(users.get(0), users.get(1), messages, 42)) {
+            arrivals.add(outgoingMessage.message);
+        }
+        thread = new SortedMessageBuffer();
+        for (ChatMessage chatMessage : arrivals) {
+            thread.insert(chatMessage);
+        }
+        List<ChatMessage> sorted = thread.getMessages();
+        sortedThread = new ArrayList<>(sorted);
+        ChatMessage newest = sorted.get(sorted.size() - 1);
+        liveMessage = new ChatMessage("live", newest.senderId, newest.receiverId, "live", newest.timestamp + 1000, newest.senderId);
+        lateMessage = new ChatMessage("late", newest.senderId, newest.receiverId, "late", newest.timestamp - LATE_OFFSET, newest.senderId);
+    }
+
+    @Benchmark
+    public int insertEach() {
+        SortedMessageBuffer buffer = new SortedMessageBuffer();
+        for (ChatMessage chatMessage : arrivals) {
+            buffer.insert(chatMessage);
+        }
+        return buffer.size();
+    }
+
+    @Benchmark
+    public int insertSnapshots() {
+        SortedMessageBuffer buffer = new SortedMessageBuffer();
+        for (int start = 0; start < arrivals.size(); start += Constants.MESSAGE_PAGE_SIZE) {
+            int end = Math.min(start + Constants.MESSAGE_PAGE_SIZE, arrivals.size());
+            buffer.insertAll(new ArrayList<>(arrivals.subList(start, end)));
+        }
+        return buffer.size();
+    }
+
+    @Benchmark
+    public List<ChatMessage> sortAll() {
+        List<ChatMessage> sorted = new ArrayList<>(arrivals);
+        Collections.sort(sorted, SortedMessageBuffer.ORDER);
+        return sorted;
+    }
+
+    @Benchmark
+    public int mergeLiveMessage() {
+        int position = thread.insert(liveMessage);
+        thread.remove(liveMessage.documentId);
+        return position;
+    }
+
+    @Benchmark
+    public int mergeLateMessage() {
+        int position = thread.insert(lateMessage);
+        thread.remove(lateMessage.documentId);
+        return position;
+    }
+
+    @Benchmark
+    public boolean resortLateMessage() {
+        sortedThread.add(lateMessage);
+        Collections.sort(sortedThread, SortedMessageBuffer.ORDER);
+        return sortedThread.remove(lateMessage);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.logchat.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the cost of one password hash for several iteration counts around
+ * {@link Constants#PASSWORD_HASH_ITERATIONS}. Low-end devices are roughly an order of
+ * magnitude slower than a desktop JVM, which is how that default was chosen.
+ */
+@State(Scope.Thread)
+public class PasswordHashBenchmark {
+
+    @Param({"5000", "10000", "20000", "50000"})
+    public int iterations;
+
+    private String salt;
+
+    @Setup
+    public void setUp() {
+        salt = PasswordHasher.newSalt();
+    }
+
+    @Benchmark
+    public String hash() {
+        return PasswordHasher.hash("benchmark password", salt, iterations);
+    }
+}
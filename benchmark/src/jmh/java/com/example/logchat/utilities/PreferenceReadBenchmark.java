@@ -0,0 +1,75 @@
+package com.example.logchat.utilities;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Measures preference reads from a {@link MappedLogStore} holding the session fields, an
+ * encoded avatar and unrelated settings: a single key, a missing key, and the four session
+ * fields {@link PreferenceManager#getSession()} reads when its snapshot is rebuilt.
+ * Loading and writing the store are covered on a device by {@code KeyValueStoreBenchmark}.
+ */
+@State(Scope.Thread)
+public class PreferenceReadBenchmark {
+
+    private File file;
+    private MappedLogStore store;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = File.createTempFile("preferences", ".kvlog");
+        store = new MappedLogStore(file, Runnable::run); // Only reads are measured, so compactions never run
+        KeyValueStore.Editor editor = store.edit()
+                .putBoolean(Constants.KEY_IS_SIGNED_IN, true)
+                .putString(Constants.KEY_USER_ID, "user-0000")
+                .putString(Constants.KEY_NAME, "Benchmark User")
+                .putString(Constants.KEY_IMAGE, newImage())
+                .putString(Constants.KEY_IMAGE_HASH, "hash")
+                .putString(Constants.KEY_SESSION_TOKEN, "0:signature");
+        for (int i = 0; i < 20; i++) {
+            editor.putString("setting" + i, "value" + i);
+        }
+        if (!editor.commit()) {
+            throw new IllegalStateException("Unable to populate " + file);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Benchmark
+    public String readString() {
+        return store.getString(Constants.KEY_USER_ID, null);
+    }
+
+    @Benchmark
+    public String readMissing() {
+        return store.getString(Constants.KEY_SYNCED_FCM_TOKEN, null);
+    }
+
+    @Benchmark
+    public void readSession(Blackhole blackhole) {
+        blackhole.consume(store.getBoolean(Constants.KEY_IS_SIGNED_IN, false));
+        blackhole.consume(store.getString(Constants.KEY_USER_ID, null));
+        blackhole.consume(store.getString(Constants.KEY_NAME, null));
+        blackhole.consume(store.getString(Constants.KEY_IMAGE_HASH, null));
+    }
+
+    // Roughly the size of a Base64-encoded profile thumbnail
+    private static String newImage() {
+        char[] chars = new char[40 * 1024];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = (char) ('A' + i % 26);
+        }
+        return new String(chars);
+    }
+}
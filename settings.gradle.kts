@@ -21,3 +21,4 @@ dependencyResolutionManagement {
 
 rootProject.name = "LogChat"
 include(":app")
+include(":benchmark")